@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.benchmarks;
+
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.demo.scalar.DemoFloatAutogradValueImpl;
+import org.ml4j.autograd.demo.scalarwrapper.DemoFloatOperations;
+import org.ml4j.autograd.demo.scalarwrapper.DemoFloatOperationsAutogradValueImpl;
+import org.ml4j.autograd.demo.tape.DemoFloatOperationsTapeAutogradValueImpl;
+import org.ml4j.autograd.demo.tape.DemoFloatTapeAutogradValueImpl;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.tape.ArithmeticOperationsTape;
+import org.ml4j.autograd.tape.FloatTape;
+
+/**
+ * Creates the leaf DemoAutogradValues of the benchmarked graphs for each of the demo engines:
+ *
+ * scalar - DemoFloatAutogradValueImpl, an object graph over boxed Floats.
+ * scalarwrapper - DemoFloatOperationsAutogradValueImpl, an object graph over DemoFloatOperations.
+ * tape - DemoFloatOperationsTapeAutogradValueImpl, recorded on an ArithmeticOperationsTape.
+ * floattape - DemoFloatTapeAutogradValueImpl, recorded on a FloatTape.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <D> The type of data wrapped by the DemoAutogradValues.
+ */
+public abstract class DemoEngine<D> {
+
+    public static final String SCALAR = "scalar";
+    public static final String SCALAR_WRAPPER = "scalarwrapper";
+    public static final String TAPE = "tape";
+    public static final String FLOAT_TAPE = "floattape";
+
+    protected static final DemoSize SIZE = new DemoSize() { };
+
+    protected final AutogradValueRegistry registry = new DiscardingAutogradValueRegistry();
+
+    /**
+     * Create a leaf DemoAutogradValue.
+     *
+     * @param value The value.
+     * @param requires_grad Whether the value requires a gradient.
+     * @return The leaf DemoAutogradValue.
+     */
+    public abstract DemoAutogradValue<D> create(float value, boolean requires_grad);
+
+    /**
+     * Discard any state retained from previously constructed graphs, eg. the entries recorded on a tape.
+     */
+    public void reset() {
+    }
+
+    protected AutogradValueProperties<DemoSize> properties(boolean requires_grad) {
+        return new AutogradValueProperties<DemoSize>().setContext(SIZE).setRegistry(registry).setRequires_grad(requires_grad);
+    }
+
+    /**
+     * Create the DemoEngine with the specified name.
+     *
+     * @param name The name of the engine.
+     * @return The DemoEngine.
+     */
+    public static DemoEngine<?> create(String name) {
+        switch (name) {
+            case SCALAR:
+                return new DemoEngine<Float>() {
+                    @Override
+                    public DemoAutogradValue<Float> create(float value, boolean requires_grad) {
+                        return new DemoFloatAutogradValueImpl(properties(requires_grad), () -> value);
+                    }
+                };
+            case SCALAR_WRAPPER:
+                return new DemoEngine<DemoFloatOperations>() {
+                    @Override
+                    public DemoAutogradValue<DemoFloatOperations> create(float value, boolean requires_grad) {
+                        return new DemoFloatOperationsAutogradValueImpl(properties(requires_grad), value);
+                    }
+                };
+            case TAPE:
+                return new DemoEngine<DemoFloatOperations>() {
+
+                    private final ArithmeticOperationsTape<DemoFloatOperations> tape = new ArithmeticOperationsTape<>();
+
+                    @Override
+                    public DemoAutogradValue<DemoFloatOperations> create(float value, boolean requires_grad) {
+                        return new DemoFloatOperationsTapeAutogradValueImpl(properties(requires_grad), tape, new DemoFloatOperations(value, SIZE));
+                    }
+
+                    @Override
+                    public void reset() {
+                        tape.truncate(0);
+                    }
+                };
+            case FLOAT_TAPE:
+                return new DemoEngine<Float>() {
+
+                    private final FloatTape tape = new FloatTape();
+
+                    @Override
+                    public DemoAutogradValue<Float> create(float value, boolean requires_grad) {
+                        return new DemoFloatTapeAutogradValueImpl(properties(requires_grad), tape, value);
+                    }
+
+                    @Override
+                    public void reset() {
+                        tape.truncate(0);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown engine:" + name);
+        }
+    }
+}
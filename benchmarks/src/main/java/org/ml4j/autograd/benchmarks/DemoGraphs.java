@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.benchmarks;
+
+import org.ml4j.autograd.demo.DemoAutogradValue;
+
+import java.util.List;
+
+/**
+ * Builds the shapes of computation graph used by the benchmarks.
+ *
+ * chain - a long chain of operations applied to a single leaf.
+ * fanout - a single leaf consumed by many operations, whose results are summed.
+ * mlp - a scalar multi-layer perceptron with a single hidden layer of relu units.
+ *
+ * @author Michael Lavelle
+ */
+public class DemoGraphs {
+
+    public static final String CHAIN = "chain";
+    public static final String FAN_OUT = "fanout";
+    public static final String MLP = "mlp";
+
+    private static final int CHAIN_LENGTH = 256;
+    private static final int FAN_OUT_WIDTH = 256;
+    private static final int MLP_INPUTS = 8;
+    private static final int MLP_HIDDEN = 16;
+
+    private DemoGraphs() {
+    }
+
+    /**
+     * Build a graph of the specified shape, whose leaves require gradients.
+     *
+     * @param engine The engine with which to create the leaves of the graph.
+     * @param shape The shape of the graph.
+     * @param leaves A list to which the leaves requiring gradients are added.
+     * @param <D> The type of data wrapped by the DemoAutogradValues.
+     * @return The root of the graph.
+     */
+    public static <D> DemoAutogradValue<D> build(DemoEngine<D> engine, String shape, List<DemoAutogradValue<D>> leaves) {
+        engine.reset();
+        switch (shape) {
+            case CHAIN:
+                return chain(engine, leaves);
+            case FAN_OUT:
+                return fanOut(engine, leaves);
+            case MLP:
+                return mlp(engine, leaves);
+            default:
+                throw new IllegalArgumentException("Unknown shape:" + shape);
+        }
+    }
+
+    private static <D> DemoAutogradValue<D> chain(DemoEngine<D> engine, List<DemoAutogradValue<D>> leaves) {
+        DemoAutogradValue<D> x = engine.create(0.5f, true);
+        leaves.add(x);
+        DemoAutogradValue<D> value = x;
+        for (int i = 0; i < CHAIN_LENGTH; i++) {
+            value = value.mul(0.5f).add(x);
+        }
+        return value;
+    }
+
+    private static <D> DemoAutogradValue<D> fanOut(DemoEngine<D> engine, List<DemoAutogradValue<D>> leaves) {
+        DemoAutogradValue<D> x = engine.create(0.5f, true);
+        leaves.add(x);
+        DemoAutogradValue<D> sum = x.mul(x);
+        for (int i = 0; i < FAN_OUT_WIDTH; i++) {
+            sum = sum.add(x.mul(engine.create(i / (float) FAN_OUT_WIDTH, false)));
+        }
+        return sum;
+    }
+
+    private static <D> DemoAutogradValue<D> mlp(DemoEngine<D> engine, List<DemoAutogradValue<D>> leaves) {
+        DemoAutogradValue<D> output = null;
+        for (int j = 0; j < MLP_HIDDEN; j++) {
+            DemoAutogradValue<D> bias = engine.create(0.1f, true);
+            leaves.add(bias);
+            DemoAutogradValue<D> activation = bias;
+            for (int i = 0; i < MLP_INPUTS; i++) {
+                DemoAutogradValue<D> weight = engine.create(((i + j) % 5 - 2) / 10f, true);
+                leaves.add(weight);
+                activation = activation.add(weight.mul(engine.create(i / (float) MLP_INPUTS, false)));
+            }
+            DemoAutogradValue<D> outputWeight = engine.create((j % 3 - 1) / 10f, true);
+            leaves.add(outputWeight);
+            DemoAutogradValue<D> contribution = outputWeight.mul(activation.relu());
+            output = output == null ? contribution : output.add(contribution);
+        }
+        return output;
+    }
+}
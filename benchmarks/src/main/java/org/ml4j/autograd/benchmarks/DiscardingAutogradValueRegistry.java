@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.benchmarks;
+
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * An AutogradValueRegistry that does not retain the values registered with it, so that long running
+ * benchmarks measure the engines rather than the growth of a registry.
+ *
+ * @author Michael Lavelle
+ */
+public class DiscardingAutogradValueRegistry implements AutogradValueRegistry {
+
+    @Override
+    public void registerAutogradValue(AutogradValue<?, ?, ?> autogradValue) {
+        // Values are intentionally not retained.
+    }
+
+    @Override
+    public Iterator<AutogradValue<?, ?, ?>> iterator() {
+        return Collections.emptyIterator();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.benchmarks;
+
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the retrieval of the gradients of the parameters of an MLP-shaped graph after back propagation.
+ *
+ * @author Michael Lavelle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GradBenchmark {
+
+    @Param({DemoEngine.SCALAR, DemoEngine.SCALAR_WRAPPER, DemoEngine.TAPE, DemoEngine.FLOAT_TAPE})
+    private String engine;
+
+    private List<? extends DemoAutogradValue<?>> parameters;
+
+    @Setup
+    public void setUp() {
+        parameters = backward(DemoEngine.create(engine));
+    }
+
+    private static <D> List<DemoAutogradValue<D>> backward(DemoEngine<D> engine) {
+        List<DemoAutogradValue<D>> leaves = new ArrayList<>();
+        DemoGraphs.build(engine, DemoGraphs.MLP, leaves).backward();
+        return leaves;
+    }
+
+    @Benchmark
+    public void grad(Blackhole blackhole) {
+        for (DemoAutogradValue<?> parameter : parameters) {
+            blackhole.consume(parameter.grad().data().get());
+        }
+    }
+}
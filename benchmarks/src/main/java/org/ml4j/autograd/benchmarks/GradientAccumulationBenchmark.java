@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.benchmarks;
+
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.demo.scalarwrapper.DemoFloatOperations;
+import org.ml4j.autograd.demo.scalarwrapper.DemoFloatOperationsAutogradValueImpl;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.node.GradNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of gradient accumulation into a single GradNode from many threads, as happens
+ * for a heavily fanned-out value during a parallel backward pass.
+ *
+ * The monitor benchmark serialises the same accumulation behind a lock, for comparison with the
+ * lock-free accumulation performed by GradNodeImpl.
+ *
+ * @author Michael Lavelle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GradientAccumulationBenchmark {
+
+    private static final DemoSize SIZE = new DemoSize() { };
+
+    private AutogradValueRegistry registry;
+    private DemoAutogradValue<DemoFloatOperations> accumulator;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        registry = AutogradValueRegistry.create(GradientAccumulationBenchmark.class.getName());
+        accumulator = create(0f, true);
+    }
+
+    private DemoAutogradValue<DemoFloatOperations> create(float value, boolean requires_grad) {
+        return new DemoFloatOperationsAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(SIZE).setRegistry(registry).setRequires_grad(requires_grad), value);
+    }
+
+    @State(Scope.Thread)
+    public static class Delta {
+
+        private DemoAutogradValue<DemoFloatOperations> delta;
+
+        @Setup(Level.Iteration)
+        public void setUp(GradientAccumulationBenchmark benchmark) {
+            delta = benchmark.create(1f, false);
+        }
+    }
+
+    @Benchmark
+    public GradNode<DemoAutogradValue<DemoFloatOperations>> lockFree(Delta delta) {
+        return accumulator.getGradNode().add_(delta.delta, (f, s) -> f.add(s), (f, s) -> f.add_(s));
+    }
+
+    @Benchmark
+    public GradNode<DemoAutogradValue<DemoFloatOperations>> monitor(Delta delta) {
+        GradNode<DemoAutogradValue<DemoFloatOperations>> gradNode = accumulator.getGradNode();
+        synchronized (gradNode) {
+            return gradNode.add_(delta.delta, (f, s) -> f.add(s), (f, s) -> f.add_(s));
+        }
+    }
+}
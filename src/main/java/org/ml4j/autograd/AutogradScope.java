@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A scope within which AutogradValues are created, and which closes these AutogradValues in bulk when it is closed,
+ * eg.
+ *
+ * <pre>
+ * try (AutogradScope scope = AutogradScope.open()) {
+ *     var loss = model.forward(input).sub(target);
+ *     loss.backward();
+ *     return scope.keep(loss);
+ * }
+ * </pre>
+ *
+ * Scopes are confined to the thread that opened them and may be nested.  AutogradValues created on a thread
+ * while a scope is open are registered with the innermost open scope, except for those created by a backward pass,
+ * such as gradients, which outlive the scope within which backward is called.  When a scope is closed, all of its
+ * AutogradValues are closed, except for those marked as uncloseable and those passed to {@link #keep}, which
+ * are handed on to the enclosing scope (if any).
+ *
+ * @author Michael Lavelle
+ */
+public class AutogradScope implements AutoCloseable {
+
+    private static final ThreadLocal<AutogradScope> current = new ThreadLocal<>();
+
+    private static final Suspension NONE = new Suspension(null);
+
+    private final AutogradScope parent;
+    private final Thread owner;
+    private final List<AutogradValue<?, ?, ?>> values;
+    private final Set<AutogradValue<?, ?, ?>> kept;
+    private boolean closed;
+
+    private AutogradScope(AutogradScope parent) {
+        this.parent = parent;
+        this.owner = Thread.currentThread();
+        this.values = new ArrayList<>();
+        this.kept = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Open a new scope on the current thread, nested within the current scope if there is one.
+     *
+     * @return The new scope.
+     */
+    public static AutogradScope open() {
+        AutogradScope scope = new AutogradScope(current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return The innermost open scope on the current thread, or null if there is none.
+     */
+    public static AutogradScope current() {
+        return current.get();
+    }
+
+    /**
+     * Suspend the scopes open on the current thread until the returned Suspension is closed, so that AutogradValues
+     * created in the meantime are not registered with any scope, eg. the gradients created by a backward pass, which
+     * outlive the scope within which backward is called.
+     *
+     * @return The Suspension, which restores the current scope when closed.
+     */
+    public static Suspension suspend() {
+        AutogradScope scope = current.get();
+        if (scope == null) {
+            return NONE;
+        }
+        current.remove();
+        return new Suspension(scope);
+    }
+
+    /**
+     * Register the AutogradValue with the innermost open scope on the current thread, if there is one.
+     *
+     * @param autogradValue The AutogradValue.
+     */
+    public static void registerWithCurrent(AutogradValue<?, ?, ?> autogradValue) {
+        AutogradScope scope = current.get();
+        if (scope != null) {
+            scope.values.add(autogradValue);
+        }
+    }
+
+    /**
+     * Exclude the AutogradValue from being closed by this scope, handing it on to the enclosing scope if there is one.
+     *
+     * The data of the AutogradValue is evaluated, as it may be computed lazily from AutogradValues which are closed,
+     * and whose data is released, when this scope is closed.
+     *
+     * @param autogradValue The AutogradValue to keep.
+     * @param <V> The type of AutogradValue.
+     * @return The AutogradValue.
+     */
+    public <V extends AutogradValue<?, ?, ?>> V keep(V autogradValue) {
+        autogradValue.data().get();
+        if (kept.add(autogradValue) && parent != null) {
+            parent.values.add(autogradValue);
+        }
+        return autogradValue;
+    }
+
+    /**
+     * @return The number of AutogradValues registered with this scope.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close all AutogradValues registered with this scope which have not been kept and are not uncloseable,
+     * and restore the enclosing scope as the current scope.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (Thread.currentThread() != owner || current.get() != this) {
+            throw new IllegalStateException("Scopes must be closed by their owning thread, innermost first");
+        }
+        closed = true;
+        if (parent == null) {
+            current.remove();
+        } else {
+            current.set(parent);
+        }
+        for (AutogradValue<?, ?, ?> autogradValue : values) {
+            if (!autogradValue.isClosed() && !kept.contains(autogradValue)
+                    && !autogradValue.properties().isUncloseable()) {
+                autogradValue.close();
+            }
+        }
+        values.clear();
+        kept.clear();
+    }
+
+    /**
+     * Restores the scope that was current when it was created.
+     */
+    public static final class Suspension implements AutoCloseable {
+
+        private final AutogradScope scope;
+
+        private Suspension(AutogradScope scope) {
+            this.scope = scope;
+        }
+
+        @Override
+        public void close() {
+            if (scope != null) {
+                current.set(scope);
+            }
+        }
+    }
+}
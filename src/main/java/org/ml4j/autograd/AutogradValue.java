@@ -75,6 +75,23 @@ public interface AutogradValue<V, D, C> extends Value<V, D, C>, Accumulatable<V>
      */
     V grad(boolean close);
 
+    /**
+     * Zero the gradient of this AutogradValue ahead of a new backward pass, reusing the gradient's storage
+     * where the implementation supports this.
+     */
+    default void zero_grad() {
+        getGradNode().clear();
+    }
+
+    /**
+     * Accumulate a gradient computed elsewhere, eg. by a replica of this AutogradValue, into the gradient of this
+     * AutogradValue, as if it had been back propagated to this AutogradValue.  The gradient is ignored if this
+     * AutogradValue does not require a gradient.
+     *
+     * @param gradient The gradient to accumulate.
+     */
+    void accumulate_grad(V gradient);
+
     boolean isClosed();
 
     boolean isClosing();
@@ -1,15 +1,100 @@
 package org.ml4j.autograd;
 
+import org.ml4j.autograd.impl.ConcurrentAutogradValueRegistry;
 import org.ml4j.autograd.impl.DefaultAutogradValueRegistry;
+import org.ml4j.autograd.impl.WeakAutogradValueRegistry;
+import org.ml4j.autograd.management.RegistryStatistics;
 
 public interface AutogradValueRegistry extends Iterable<AutogradValue<?, ?, ?>> {
 
     void registerAutogradValue(AutogradValue<?, ?, ?> autogradValue);
 
+    /**
+     * Notification that a registered AutogradValue has been closed (or re-opened), allowing registries to maintain
+     * counts of closed values rather than scanning all values.
+     *
+     * @param autogradValue The AutogradValue.
+     * @param closed Whether the AutogradValue is now closed.
+     */
+    default void notifyClosed(AutogradValue<?, ?, ?> autogradValue, boolean closed) {
+    }
+
+    /**
+     * Notification that a registered AutogradValue has been made uncloseable (or closeable), allowing registries to
+     * count uncloseable values by the flag they currently have rather than the flag they had when registered.
+     *
+     * @param autogradValue The AutogradValue.
+     * @param uncloseable Whether the AutogradValue is now uncloseable.
+     */
+    default void notifyUncloseable(AutogradValue<?, ?, ?> autogradValue, boolean uncloseable) {
+    }
+
+    /**
+     * @return The statistics of this registry, which are registered as its MXBean, or null if this registry does not
+     * maintain statistics.
+     */
+    default RegistryStatistics statistics() {
+        return null;
+    }
+
+    default boolean allClosedLocal() {
+        for (AutogradValue<?, ?, ?> autogradValue : this) {
+            if (!autogradValue.isClosed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    default void closeLocal() {
+        for (AutogradValue<?, ?, ?> autogradValue : this) {
+            if (!autogradValue.isClosed() && !autogradValue.properties().isUncloseable()) {
+                autogradValue.close();
+            }
+        }
+    }
+
+    default void clearLocal() {
+    }
+
+    default void statusLocal(boolean print) {
+        int notYetClosed = 0;
+        for (AutogradValue<?, ?, ?> autogradValue : this) {
+            if (!autogradValue.isClosed() && !autogradValue.properties().isUncloseable()) {
+                notYetClosed++;
+            }
+        }
+        if (print) {
+            System.out.println("Not yet closed total:" + notYetClosed);
+        }
+    }
+
     static AutogradValueRegistry create(String name) {
         return DefaultAutogradValueRegistry.create(name);
     }
 
+    /**
+     * Create a registry that references its values weakly, so that neither the registry nor any values that
+     * are no longer otherwise reachable are retained.
+     *
+     * @param name The name of the registry.
+     * @return The registry.
+     */
+    static AutogradValueRegistry createWeak(String name) {
+        return WeakAutogradValueRegistry.create(name);
+    }
+
+    /**
+     * Create a registry in which values may be registered by several threads concurrently, each thread registering
+     * into its own segment without taking a shared lock.
+     *
+     * @param name The name of the registry.
+     * @return The registry.
+     */
+    static AutogradValueRegistry createConcurrent(String name) {
+        return ConcurrentAutogradValueRegistry.create(name);
+    }
+
     static void status(boolean print) {
         DefaultAutogradValueRegistry.status(print);
     }
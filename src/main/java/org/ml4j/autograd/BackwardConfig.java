@@ -14,6 +14,8 @@
 
 package org.ml4j.autograd;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Encapsulates the configuration parameters we use to control the behaviour of a backward pass.
  *
@@ -23,6 +25,8 @@ public class BackwardConfig {
 
     private boolean keep_graph;
     private boolean zero_grad;
+    private boolean parallel;
+    private ForkJoinPool fork_join_pool;
 
     public BackwardConfig with_keep_graph(boolean keep_graph) {
         this.keep_graph = keep_graph;
@@ -34,6 +38,28 @@ public class BackwardConfig {
         return this;
     }
 
+    /**
+     * Whether to back propagate through independent branches of the computation graph in parallel.
+     *
+     * @param parallel Whether to use the parallel backward engine.
+     * @return This BackwardConfig.
+     */
+    public BackwardConfig with_parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * The ForkJoinPool on which the parallel backward engine schedules Nodes - defaults to the common pool.
+     *
+     * @param fork_join_pool The ForkJoinPool to use for parallel back propagation.
+     * @return This BackwardConfig.
+     */
+    public BackwardConfig with_fork_join_pool(ForkJoinPool fork_join_pool) {
+        this.fork_join_pool = fork_join_pool;
+        return this;
+    }
+
     public boolean zero_grad() {
         return zero_grad;
     }
@@ -41,4 +67,12 @@ public class BackwardConfig {
     public boolean keep_graph() {
         return keep_graph;
     }
+
+    public boolean parallel() {
+        return parallel;
+    }
+
+    public ForkJoinPool fork_join_pool() {
+        return fork_join_pool == null ? ForkJoinPool.commonPool() : fork_join_pool;
+    }
 }
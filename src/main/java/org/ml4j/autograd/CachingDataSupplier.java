@@ -6,4 +6,11 @@ public interface CachingDataSupplier<T> extends Supplier<T> {
 
     void clearCache();
 
+    /**
+     * @return Whether the data has been obtained and cached - false where this is not known.
+     */
+    default boolean isEvaluated() {
+        return false;
+    }
+
 }
@@ -6,7 +6,7 @@ public class CachingDataSupplierImpl<T> implements CachingDataSupplier<T> {
 
     private Supplier<T> supplier;
     private T value;
-    private boolean calc;
+    private volatile boolean calc;
 
     public CachingDataSupplierImpl(Supplier<T> supplierT) {
         this.supplier = supplierT;
@@ -18,6 +18,11 @@ public class CachingDataSupplierImpl<T> implements CachingDataSupplier<T> {
         this.value = null;
     }
 
+    @Override
+    public boolean isEvaluated() {
+        return calc;
+    }
+
     @Override
     public T get() {
         if (calc) {
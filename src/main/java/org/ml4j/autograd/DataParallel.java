@@ -0,0 +1,334 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A data-parallel driver for a ParameterSet, with a Pytorch-like API, eg.
+ *
+ * <pre>
+ * var parallel = new DataParallel&lt;&gt;(parameters, p -&gt; createLeaf(p.data(), registry), executor);
+ * parameters.zero_grad();
+ * parallel.backward(shards, (replicas, shard) -&gt; model.forward(replicas, shard).loss());
+ * optimiser.step(parameters);
+ * </pre>
+ *
+ * For each shard of a mini-batch, a worker replicates every parameter as a new leaf, builds its own computation
+ * graph from the replicas and calls backward on its loss.  The gradients of the replicas of each parameter are then
+ * summed by a tree reduction over Accumulatable.add on a ForkJoinPool, and the sums are accumulated into the
+ * gradients of the parameters with accumulate_grad, so that the parameters receive the same gradients as if backward
+ * had been called on the loss of each shard in turn.  Parameters which do not require a gradient are not updated.
+ *
+ * Each worker builds its graph within its own AutogradScope, so that the replicas and the rest of its graph are
+ * closed once backward has been called, keeping only its loss and the gradients of the replicas.  The gradients are
+ * closed once they have been accumulated, unless adopted as the gradient of a parameter.
+ *
+ * Workers may block, eg. on I/O while loading their shards, so they are run on an ExecutorService supplied by the
+ * caller, which must be separate from the ForkJoinPool on which the CPU-bound reduction runs.  Unless a ForkJoinPool
+ * is supplied, reductions run on a pool shared by all DataParallel drivers, rather than on the common ForkJoinPool.
+ *
+ * Workers register values concurrently, so replicas should be created with a registry created by
+ * AutogradValueRegistry.createConcurrent.  Gradient tracking and scopes are per-thread, so
+ * each worker's graph is independent of the others.
+ *
+ * @param <V> The type of the parameters.
+ *
+ * @author Michael Lavelle
+ */
+public class DataParallel<V extends AutogradValue<V, ?, ?>> {
+
+    private final ParameterSet<V> parameters;
+    private final Replicator<V> replicator;
+    private final ExecutorService executor;
+    private final ForkJoinPool fork_join_pool;
+
+    /**
+     * @param parameters The parameters to replicate.
+     * @param replicator Creates a replica of a parameter.
+     * @param executor The ExecutorService on which to run the workers, eg. one platform or virtual thread per worker.
+     */
+    public DataParallel(ParameterSet<V> parameters, Replicator<V> replicator, ExecutorService executor) {
+        this(parameters, replicator, executor, ReductionPool.POOL);
+    }
+
+    /**
+     * @param parameters The parameters to replicate.
+     * @param replicator Creates a replica of a parameter.
+     * @param executor The ExecutorService on which to run the workers, eg. one platform or virtual thread per worker.
+     * @param fork_join_pool The ForkJoinPool on which to reduce the gradients of the replicas, which must not also
+     *                       run the workers.
+     */
+    public DataParallel(ParameterSet<V> parameters, Replicator<V> replicator, ExecutorService executor,
+            ForkJoinPool fork_join_pool) {
+        if (executor == null || fork_join_pool == null) {
+            throw new IllegalArgumentException("Executor and ForkJoinPool must not be null");
+        }
+        if (executor == fork_join_pool) {
+            throw new IllegalArgumentException("Workers and reductions must run on separate pools");
+        }
+        this.parameters = parameters;
+        this.replicator = replicator;
+        this.executor = executor;
+        this.fork_join_pool = fork_join_pool;
+    }
+
+    /**
+     * @return The parameters which are replicated by this driver.
+     */
+    public ParameterSet<V> parameters() {
+        return parameters;
+    }
+
+    /**
+     * Back propagate the loss of each shard on its own worker, and accumulate the summed gradients of the replicas
+     * into the gradients of the parameters.  As with backward, the gradients are accumulated, so should be zeroed
+     * between steps with ParameterSet.zero_grad().
+     *
+     * @param shards The shards of the mini-batch, one per worker.
+     * @param worker Builds the graph of a worker from the replicas of the parameters and a shard, returning its loss.
+     * @param <S> The type of the shards.
+     * @return The loss of each shard, in the order of the shards.
+     */
+    public <S> List<V> backward(List<S> shards, Worker<V, S> worker) {
+        return backward(shards, worker, new BackwardConfig());
+    }
+
+    /**
+     * Back propagate the loss of each shard on its own worker, and accumulate the summed gradients of the replicas
+     * into the gradients of the parameters.
+     *
+     * @param shards The shards of the mini-batch, one per worker.
+     * @param worker Builds the graph of a worker from the replicas of the parameters and a shard, returning its loss.
+     * @param config The BackwardConfig with which each worker back propagates its loss.
+     * @param <S> The type of the shards.
+     * @return The loss of each shard, in the order of the shards.
+     */
+    @SuppressWarnings("try")
+    public <S> List<V> backward(List<S> shards, Worker<V, S> worker, BackwardConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config must not be null");
+        }
+        List<Future<Replica<V>>> futures = new ArrayList<>(shards.size());
+        for (S shard : shards) {
+            futures.add(executor.submit(() -> replicate(shard, worker, config)));
+        }
+        List<Replica<V>> replicas = await(futures);
+
+        List<V> losses = new ArrayList<>(replicas.size());
+        for (Replica<V> replica : replicas) {
+            losses.add(replica.loss);
+        }
+        // Submit the reductions of all parameters before joining any, so that they run in parallel
+        List<List<V>> gradients = new ArrayList<>(parameters.size());
+        List<Reduction<V>> reductions = new ArrayList<>(parameters.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            List<V> parameterGradients = new ArrayList<>(replicas.size());
+            for (Replica<V> replica : replicas) {
+                V gradient = replica.gradients.get(i);
+                if (gradient != null) {
+                    parameterGradients.add(gradient);
+                }
+            }
+            gradients.add(parameterGradients);
+            Reduction<V> reduction = null;
+            if (!parameterGradients.isEmpty()) {
+                reduction = new Reduction<>(parameterGradients, 0, parameterGradients.size());
+                fork_join_pool.execute(reduction);
+            }
+            reductions.add(reduction);
+        }
+        List<V> sums = new ArrayList<>(parameters.size());
+        // As with backward, gradients are accumulated without tracking, so that the accumulated values are not
+        // registered
+        try (GradMode.Guard guard = GradMode.no_grad()) {
+            for (int i = 0; i < parameters.size(); i++) {
+                Reduction<V> reduction = reductions.get(i);
+                if (reduction != null) {
+                    V sum = reduction.join();
+                    parameters.parameters().get(i).accumulate_grad(sum);
+                    if (gradients.get(i).size() > 1) {
+                        sums.add(sum);
+                    }
+                }
+            }
+        }
+        // A gradient may be shared by several replicas, so the gradients of the replicas and their sums are only
+        // closed once all have been accumulated, unless adopted as the gradient of a parameter
+        Set<V> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (V parameter : parameters) {
+            V adopted = parameter.getGradNode().getValue().get();
+            if (adopted != null) {
+                retained.add(adopted);
+            }
+        }
+        for (List<V> parameterGradients : gradients) {
+            parameterGradients.forEach(gradient -> close(gradient, retained));
+        }
+        sums.forEach(sum -> close(sum, retained));
+        return losses;
+    }
+
+    private <S> Replica<V> replicate(S shard, Worker<V, S> worker, BackwardConfig config) {
+        // The replicas and the graph of the worker are closed with its scope, keeping only the loss and gradients
+        try (AutogradScope scope = AutogradScope.open()) {
+            List<V> replicas = new ArrayList<>(parameters.size());
+            for (V parameter : parameters) {
+                replicas.add(replicator.replicate(parameter).requires_grad_(parameter.requires_grad()));
+            }
+            ParameterSet<V> replicated = new ParameterSet<>(replicas);
+            V loss = worker.loss(replicated, shard);
+            loss.backward(config);
+            // Evaluate the gradients on the worker, rather than deferring their evaluation to the reduction.
+            List<V> gradients = new ArrayList<>(replicas.size());
+            for (V replica : replicated) {
+                V gradient = replica.grad();
+                if (gradient != null) {
+                    gradient.data().get();
+                }
+                gradients.add(gradient);
+            }
+            return new Replica<>(gradients, scope.keep(loss));
+        }
+    }
+
+    private static <V extends AutogradValue<V, ?, ?>> void close(V gradient, Set<V> retained) {
+        if (retained.add(gradient) && !gradient.properties().isUncloseable()) {
+            gradient.close();
+        }
+    }
+
+    private static <T> List<T> await(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while awaiting workers", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
+    /**
+     * Creates a replica of a parameter - a new leaf AutogradValue with the data of the parameter, on which the
+     * graph of a worker can be built independently of the graphs of the other workers.
+     *
+     * @param <V> The type of the parameters.
+     */
+    @FunctionalInterface
+    public interface Replicator<V> {
+
+        V replicate(V parameter);
+    }
+
+    /**
+     * Builds the computation graph of a worker from the replicas of the parameters and a shard of a mini-batch.
+     *
+     * @param <V> The type of the parameters.
+     * @param <S> The type of the shards.
+     */
+    @FunctionalInterface
+    public interface Worker<V extends AutogradValue<V, ?, ?>, S> {
+
+        V loss(ParameterSet<V> replicas, S shard);
+    }
+
+    private static class Replica<V extends AutogradValue<V, ?, ?>> {
+
+        private final List<V> gradients;
+        private final V loss;
+
+        Replica(List<V> gradients, V loss) {
+            this.gradients = gradients;
+            this.loss = loss;
+        }
+    }
+
+    /**
+     * The ForkJoinPool shared by DataParallel drivers which are not supplied with one, created on first use.
+     */
+    private static class ReductionPool {
+
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sums a range of gradients, by splitting the range in two and adding the sums of each half, so that the sums
+     * at each level of the tree are evaluated in parallel.  Partial sums are closed once they have been added.
+     */
+    private static class Reduction<V extends AutogradValue<V, ?, ?>> extends RecursiveTask<V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<V> gradients;
+        private final int from;
+        private final int to;
+
+        Reduction(List<V> gradients, int from, int to) {
+            this.gradients = gradients;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("try")
+        protected V compute() {
+            if (to - from == 1) {
+                return gradients.get(from);
+            }
+            int mid = (from + to) >>> 1;
+            Reduction<V> left = new Reduction<>(gradients, from, mid);
+            left.fork();
+            V right = new Reduction<>(gradients, mid, to).compute();
+            V leftSum = left.join();
+            V sum;
+            try (GradMode.Guard guard = GradMode.no_grad()) {
+                sum = leftSum.add(right).self();
+                sum.data().get();
+            }
+            closePartial(leftSum, mid - from);
+            closePartial(right, to - mid);
+            return sum;
+        }
+
+        private static <V extends AutogradValue<V, ?, ?>> void closePartial(V sum, int count) {
+            if (count > 1 && !sum.properties().isUncloseable()) {
+                sum.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd;
+
+/**
+ * Controls whether gradient tracking is enabled on the current thread, with a Pytorch-like API, eg.
+ *
+ * <pre>
+ * try (GradMode.Guard guard = GradMode.no_grad()) {
+ *     var prediction = model.forward(input);
+ * }
+ * </pre>
+ *
+ * While gradient tracking is disabled, operators only apply their forward operation and wrap the result.  No Nodes
+ * are linked into a computation graph, no backward functions are created, and the results do not require grad.
+ *
+ * @author Michael Lavelle
+ */
+public final class GradMode {
+
+    private static final ThreadLocal<Boolean> enabled = ThreadLocal.withInitial(() -> Boolean.TRUE);
+
+    // Guards are immutable, so one instance per previous mode is shared to keep mode switches allocation-free
+    private static final Guard RESTORE_ENABLED = new Guard(true);
+    private static final Guard RESTORE_DISABLED = new Guard(false);
+
+    private GradMode() {
+    }
+
+    /**
+     * @return Whether gradient tracking is enabled on the current thread.
+     */
+    public static boolean is_enabled() {
+        return enabled.get();
+    }
+
+    /**
+     * Enable or disable gradient tracking on the current thread, until the returned Guard is closed.
+     *
+     * @param enable Whether to enable gradient tracking.
+     * @return A Guard which restores the previous mode when closed.
+     */
+    public static Guard set_enabled(boolean enable) {
+        Guard guard = enabled.get() ? RESTORE_ENABLED : RESTORE_DISABLED;
+        enabled.set(enable);
+        return guard;
+    }
+
+    /**
+     * Disable gradient tracking on the current thread, until the returned Guard is closed.
+     *
+     * @return A Guard which restores the previous mode when closed.
+     */
+    public static Guard no_grad() {
+        return set_enabled(false);
+    }
+
+    /**
+     * Restores the gradient tracking mode that was in effect when it was created.
+     */
+    public static final class Guard implements AutoCloseable {
+
+        private final boolean previous;
+
+        private Guard(boolean previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            enabled.set(previous);
+        }
+    }
+}
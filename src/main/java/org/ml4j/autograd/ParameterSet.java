@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A declared set of parameters - the leaf AutogradValues whose gradients are accumulated across a training step -
+ * allowing their gradients to be zeroed in bulk ahead of the next step, eg.
+ *
+ * <pre>
+ * var parameters = ParameterSet.of(w1, b1, w2, b2);
+ * for (...) {
+ *     parameters.zero_grad();
+ *     loss(parameters).backward();
+ *     ...
+ * }
+ * </pre>
+ *
+ * Gradients are zeroed by each parameter's zero_grad(), so the gradient storage of each parameter is retained and
+ * reused by the next backward pass where the implementation supports this.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <V> The type of the parameters.
+ */
+public class ParameterSet<V extends AutogradValue<V, ?, ?>> implements Iterable<V> {
+
+    /**
+     * The number of parameters below which zero_grad(ForkJoinPool) zeroes the parameters on the calling thread.
+     */
+    public static final int PARALLEL_THRESHOLD = 1024;
+
+    private final List<V> parameters;
+
+    public ParameterSet(Collection<? extends V> parameters) {
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+    }
+
+    @SafeVarargs
+    public static <V extends AutogradValue<V, ?, ?>> ParameterSet<V> of(V... parameters) {
+        List<V> list = new ArrayList<>(parameters.length);
+        for (V parameter : parameters) {
+            list.add(parameter);
+        }
+        return new ParameterSet<>(list);
+    }
+
+    /**
+     * @return The number of parameters in this ParameterSet.
+     */
+    public int size() {
+        return parameters.size();
+    }
+
+    /**
+     * @return The parameters in this ParameterSet.
+     */
+    public List<V> parameters() {
+        return parameters;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return parameters.iterator();
+    }
+
+    /**
+     * Zero the gradients of all the parameters, on the calling thread.
+     */
+    public void zero_grad() {
+        zero_grad(0, parameters.size());
+    }
+
+    /**
+     * Zero the gradients of all the parameters, partitioning the parameters across the ForkJoinPool when there
+     * are at least PARALLEL_THRESHOLD of them.
+     *
+     * @param fork_join_pool The ForkJoinPool on which to zero the gradients.
+     */
+    public void zero_grad(ForkJoinPool fork_join_pool) {
+        if (parameters.size() < PARALLEL_THRESHOLD) {
+            zero_grad();
+        } else {
+            fork_join_pool.invoke(new ZeroGrad(0, parameters.size()));
+        }
+    }
+
+    private void zero_grad(int from, int to) {
+        for (int i = from; i < to; i++) {
+            parameters.get(i).zero_grad();
+        }
+    }
+
+    /**
+     * Zeroes the gradients of a range of the parameters, splitting the range until it is below the threshold.
+     */
+    private class ZeroGrad extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        ZeroGrad(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                zero_grad(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ZeroGrad(from, mid), new ZeroGrad(mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.direct;
+
+import org.ml4j.autograd.pool.BufferPoolMetrics;
+import org.ml4j.autograd.pool.SizeBucketedBufferPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A pool of direct ByteBuffers, bucketed by the number of float elements they hold - the context of the values
+ * whose data they back - so that training loops requesting the same sizes every step recycle the off-heap memory
+ * released by closed values rather than allocating it again.
+ *
+ * At most maxRetainedBytes are held by the pool; buffers released beyond this are dropped and reclaimed by the
+ * garbage collector.
+ *
+ * @author Michael Lavelle
+ */
+public class DirectBufferPool {
+
+    private static final DirectBufferPool SHARED = new DirectBufferPool(256L * 1024 * 1024);
+
+    private final SizeBucketedBufferPool<ByteBuffer, Integer> buffers;
+
+    /**
+     * @param maxRetainedBytes The maximum number of bytes of released buffers to retain.
+     */
+    public DirectBufferPool(long maxRetainedBytes) {
+        this.buffers = new SizeBucketedBufferPool<>(ByteBuffer::capacity, maxRetainedBytes);
+    }
+
+    /**
+     * @return A pool shared by default by off-heap values, retaining up to 256MB.
+     */
+    public static DirectBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Obtain a native-ordered direct ByteBuffer able to hold the specified number of floats, whose contents are
+     * undefined.
+     *
+     * @param length The number of floats.
+     * @return The ByteBuffer.
+     */
+    public ByteBuffer acquire(int length) {
+        ByteBuffer buffer = buffers.acquire(length);
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(length * Float.BYTES).order(ByteOrder.nativeOrder());
+        }
+        return buffer;
+    }
+
+    /**
+     * Return a buffer obtained from acquire to this pool.  The buffer must no longer be used by the caller.
+     *
+     * @param buffer The buffer.
+     */
+    public void release(ByteBuffer buffer) {
+        buffers.release(buffer.capacity() / Float.BYTES, buffer);
+    }
+
+    /**
+     * @return The number of bytes of released buffers currently held by this pool.
+     */
+    public long retainedBytes() {
+        return buffers.retainedBytes();
+    }
+
+    /**
+     * @return The hit, miss and retention metrics of this pool.
+     */
+    public BufferPoolMetrics metrics() {
+        return buffers.metrics();
+    }
+}
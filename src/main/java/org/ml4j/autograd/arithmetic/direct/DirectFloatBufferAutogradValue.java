@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.direct;
+
+import org.ml4j.autograd.arithmetic.operations.DifferentiableWrappedArithmeticOperations;
+import org.ml4j.autograd.impl.AutogradValueImpl;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+
+import java.util.function.Supplier;
+
+/**
+ * An AutogradValue wrapping off-heap DirectFloatBufferOperations, whose context is the number of elements.
+ *
+ * The data of this value is released to its DirectBufferPool by close(DirectFloatBufferOperations), and the
+ * results, gradients and identities it creates are allocated from the same pool.
+ *
+ * @author Michael Lavelle
+ */
+public class DirectFloatBufferAutogradValue extends AutogradValueImpl<DirectFloatBufferAutogradValue, DirectFloatBufferOperations, Integer>
+        implements DifferentiableWrappedArithmeticOperations<DirectFloatBufferAutogradValue, DirectFloatBufferOperations, Integer> {
+
+    private final DirectBufferPool pool;
+
+    public DirectFloatBufferAutogradValue(AutogradValueProperties<Integer> properties, DirectBufferPool pool, Supplier<DirectFloatBufferOperations> data) {
+        super(properties, data);
+        this.pool = pool;
+    }
+
+    /**
+     * @param properties The properties, whose context is set to the length of the data, and which are marked as
+     * owning the off-heap copy, so that it is released when this value is closed.
+     * @param pool The pool from which to allocate off-heap data.
+     * @param data The floats to copy off-heap.
+     */
+    public DirectFloatBufferAutogradValue(AutogradValueProperties<Integer> properties, DirectBufferPool pool, float[] data) {
+        this(properties.setContext(data.length).setView(false), pool, () -> new DirectFloatBufferOperations(pool, data));
+    }
+
+    public DirectFloatBufferAutogradValue relu() {
+        return applyUnaryOperator(DirectFloatBufferOperations::relu, (g, v) -> g.mul(v.gt(0)), "relu", s -> s);
+    }
+
+    public DirectBufferPool pool() {
+        return pool;
+    }
+
+    @Override
+    protected void close(DirectFloatBufferOperations data) {
+        data.release();
+    }
+
+    @Override
+    protected long sizeInBytes(DirectFloatBufferOperations data) {
+        return (long) data.length() * Float.BYTES;
+    }
+
+    @Override
+    protected boolean fill_(DirectFloatBufferOperations data, float value) {
+        data.fill_(value);
+        return true;
+    }
+
+    @Override
+    protected DirectFloatBufferAutogradValue createAutogradValue(Supplier<DirectFloatBufferOperations> data, AutogradValueProperties<Integer> properties) {
+        return new DirectFloatBufferAutogradValue(properties, pool, data);
+    }
+
+    @Override
+    protected DirectFloatBufferAutogradValue getInitialInstance() {
+        return this;
+    }
+
+    @Override
+    protected Supplier<DirectFloatBufferOperations> multiplicativeIdentity() {
+        return () -> DirectFloatBufferOperations.filled(pool, context(), 1f);
+    }
+
+    @Override
+    protected Supplier<DirectFloatBufferOperations> additiveIdentity() {
+        return () -> DirectFloatBufferOperations.filled(pool, context(), 0f);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.direct;
+
+import org.ml4j.autograd.arithmetic.operations.ArithmeticOperations;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * ArithmeticOperations on floats held outside the Java heap, in a native-ordered direct ByteBuffer obtained from a
+ * DirectBufferPool, so that large data does not add to garbage collection pauses and can be handed to native code
+ * without copying.
+ *
+ * The results of operations are allocated from the same pool.  Once released, the buffer is returned to the pool
+ * and this data may no longer be used.
+ *
+ * @author Michael Lavelle
+ */
+public class DirectFloatBufferOperations implements ArithmeticOperations<DirectFloatBufferOperations> {
+
+    private final DirectBufferPool pool;
+    private final int length;
+    private ByteBuffer bytes;
+    private FloatBuffer floats;
+
+    /**
+     * Create data backed by a buffer acquired from the pool, whose contents are undefined.
+     *
+     * @param pool The pool.
+     * @param length The number of floats.
+     */
+    public DirectFloatBufferOperations(DirectBufferPool pool, int length) {
+        this.pool = pool;
+        this.length = length;
+        this.bytes = pool.acquire(length);
+        this.floats = bytes.asFloatBuffer();
+    }
+
+    /**
+     * Create data backed by a buffer acquired from the pool, holding a copy of the specified floats.
+     *
+     * @param pool The pool.
+     * @param data The floats.
+     */
+    public DirectFloatBufferOperations(DirectBufferPool pool, float[] data) {
+        this(pool, data.length);
+        floats.duplicate().put(data);
+    }
+
+    /**
+     * Create data backed by a buffer acquired from the pool, with every element set to a value.
+     *
+     * @param pool The pool.
+     * @param length The number of floats.
+     * @param value The value of every element.
+     * @return The data.
+     */
+    public static DirectFloatBufferOperations filled(DirectBufferPool pool, int length, float value) {
+        return new DirectFloatBufferOperations(pool, length).fill_(value);
+    }
+
+    /**
+     * @return The number of elements.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Obtain a view of the off-heap floats, without copying, eg. to hand to native code.
+     *
+     * @return The view.
+     */
+    public FloatBuffer buffer() {
+        return floats().duplicate();
+    }
+
+    /**
+     * @return Whether the buffer has been returned to the pool.
+     */
+    public boolean isReleased() {
+        return bytes == null;
+    }
+
+    /**
+     * Return the buffer to the pool, if not already released.
+     */
+    public synchronized void release() {
+        if (bytes != null) {
+            ByteBuffer released = bytes;
+            this.bytes = null;
+            this.floats = null;
+            pool.release(released);
+        }
+    }
+
+    @Override
+    public float[] getDataAsFloatArray() {
+        float[] data = new float[length];
+        floats().duplicate().get(data);
+        return data;
+    }
+
+    @Override
+    public DirectFloatBufferOperations add(DirectFloatBufferOperations other) {
+        FloatBuffer first = floats();
+        FloatBuffer second = other(other);
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) + second.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations add(float other) {
+        FloatBuffer first = floats();
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) + other);
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations sub(DirectFloatBufferOperations other) {
+        FloatBuffer first = floats();
+        FloatBuffer second = other(other);
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) - second.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations sub(float other) {
+        return add(-other);
+    }
+
+    @Override
+    public DirectFloatBufferOperations mul(DirectFloatBufferOperations other) {
+        FloatBuffer first = floats();
+        FloatBuffer second = other(other);
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) * second.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations mul(float other) {
+        FloatBuffer first = floats();
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) * other);
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations div(DirectFloatBufferOperations other) {
+        FloatBuffer first = floats();
+        FloatBuffer second = other(other);
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) / second.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations div(float other) {
+        FloatBuffer first = floats();
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) / other);
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations neg() {
+        FloatBuffer first = floats();
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, -first.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations gt(float value) {
+        FloatBuffer first = floats();
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) > value ? 1f : 0f);
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations gte(float value) {
+        FloatBuffer first = floats();
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, first.get(i) >= value ? 1f : 0f);
+        }
+        return result;
+    }
+
+    public DirectFloatBufferOperations relu() {
+        FloatBuffer first = floats();
+        DirectFloatBufferOperations result = new DirectFloatBufferOperations(pool, length);
+        FloatBuffer out = result.floats;
+        for (int i = 0; i < length; i++) {
+            out.put(i, Math.max(first.get(i), 0f));
+        }
+        return result;
+    }
+
+    @Override
+    public DirectFloatBufferOperations add_(DirectFloatBufferOperations other) {
+        FloatBuffer first = floats();
+        FloatBuffer second = other(other);
+        for (int i = 0; i < length; i++) {
+            first.put(i, first.get(i) + second.get(i));
+        }
+        return this;
+    }
+
+    @Override
+    public DirectFloatBufferOperations sub_(DirectFloatBufferOperations other) {
+        FloatBuffer first = floats();
+        FloatBuffer second = other(other);
+        for (int i = 0; i < length; i++) {
+            first.put(i, first.get(i) - second.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Set every element of this data to a value.
+     *
+     * @param value The value.
+     * @return This data.
+     */
+    public DirectFloatBufferOperations fill_(float value) {
+        FloatBuffer first = floats();
+        for (int i = 0; i < length; i++) {
+            first.put(i, value);
+        }
+        return this;
+    }
+
+    private FloatBuffer floats() {
+        FloatBuffer current = floats;
+        if (current == null) {
+            throw new IllegalStateException("Data has been released");
+        }
+        return current;
+    }
+
+    private FloatBuffer other(DirectFloatBufferOperations other) {
+        if (other.length != length) {
+            throw new IllegalArgumentException("Length mismatch:" + length + ":" + other.length);
+        }
+        return other.floats();
+    }
+}
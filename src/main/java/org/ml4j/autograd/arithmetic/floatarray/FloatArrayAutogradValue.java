@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.floatarray;
+
+import org.ml4j.autograd.arithmetic.operations.DifferentiableWrappedArithmeticOperations;
+import org.ml4j.autograd.fusion.ElementwiseOp;
+import org.ml4j.autograd.fusion.ElementwiseUnaryOperator;
+import org.ml4j.autograd.impl.AutogradValueImpl;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.pool.BufferPool;
+import org.ml4j.autograd.pool.SizeBucketedBufferPool;
+
+import java.util.function.Supplier;
+
+/**
+ * An AutogradValue wrapping dense FloatArrayOperations, whose context is the number of elements.
+ *
+ * Forward and backward operations are applied by the FloatArrayKernels, and chains of elementwise operations are
+ * fused, as FloatArrayOperations implements ElementwiseData.  Gradients are accumulated and zeroed in place.
+ *
+ * If created with a BufferPool, the arrays of closed values are recycled as the results of fused operations and as
+ * identities by the values derived from this value.
+ *
+ * @author Michael Lavelle
+ */
+public class FloatArrayAutogradValue extends AutogradValueImpl<FloatArrayAutogradValue, FloatArrayOperations, Integer>
+        implements DifferentiableWrappedArithmeticOperations<FloatArrayAutogradValue, FloatArrayOperations, Integer> {
+
+    private final BufferPool<FloatArrayOperations, Integer> pool;
+
+    public FloatArrayAutogradValue(AutogradValueProperties<Integer> properties, Supplier<FloatArrayOperations> data) {
+        this(properties, null, data);
+    }
+
+    /**
+     * @param properties The properties.
+     * @param pool The pool from which to recycle data, or null if data is always to be newly allocated.
+     * @param data The data.
+     */
+    public FloatArrayAutogradValue(AutogradValueProperties<Integer> properties, BufferPool<FloatArrayOperations, Integer> pool,
+                                   Supplier<FloatArrayOperations> data) {
+        super(properties, data);
+        this.pool = pool;
+    }
+
+    /**
+     * @param properties The properties, whose context is set to the length of the data.
+     * @param data The data, which is adopted rather than copied.
+     */
+    public FloatArrayAutogradValue(AutogradValueProperties<Integer> properties, float[] data) {
+        this(properties.setContext(data.length), () -> new FloatArrayOperations(data));
+    }
+
+    /**
+     * @param maxRetainedBytes The maximum number of bytes of released arrays to retain.
+     * @return A new BufferPool for FloatArrayOperations, bucketed by length.
+     */
+    public static SizeBucketedBufferPool<FloatArrayOperations, Integer> createBufferPool(long maxRetainedBytes) {
+        return new SizeBucketedBufferPool<>(d -> (long) d.length() * Float.BYTES, maxRetainedBytes);
+    }
+
+    public FloatArrayAutogradValue relu() {
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.RELU, 0, FloatArrayOperations::relu), (g, v) -> g.mul(v.gt(0)), "relu", s -> s);
+    }
+
+    public FloatArrayAutogradValue mul_(FloatArrayAutogradValue other) {
+        return applyInlineBinaryOperator(other, FloatArrayOperations::mul_, "mul");
+    }
+
+    public FloatArrayAutogradValue div_(FloatArrayAutogradValue other) {
+        return applyInlineBinaryOperator(other, FloatArrayOperations::div_, "div");
+    }
+
+    public FloatArrayAutogradValue mul_(float other) {
+        return applyInlineUnaryOperator(d -> d.mul_(other), "mul");
+    }
+
+    public FloatArrayAutogradValue relu_() {
+        return applyInlineUnaryOperator(FloatArrayOperations::relu_, "relu");
+    }
+
+    @Override
+    protected void close(FloatArrayOperations data) {
+        // Heap arrays are reclaimed by the garbage collector
+    }
+
+    @Override
+    protected long sizeInBytes(FloatArrayOperations data) {
+        return (long) data.length() * Float.BYTES;
+    }
+
+    @Override
+    protected boolean fill_(FloatArrayOperations data, float value) {
+        data.fill_(value);
+        return true;
+    }
+
+    @Override
+    protected BufferPool<FloatArrayOperations, Integer> bufferPool() {
+        return pool;
+    }
+
+    @Override
+    protected FloatArrayAutogradValue createAutogradValue(Supplier<FloatArrayOperations> data, AutogradValueProperties<Integer> properties) {
+        return new FloatArrayAutogradValue(properties, pool, data);
+    }
+
+    @Override
+    protected FloatArrayAutogradValue getInitialInstance() {
+        return this;
+    }
+
+    @Override
+    protected Supplier<FloatArrayOperations> multiplicativeIdentity() {
+        return () -> FloatArrayOperations.filled(context(), 1f);
+    }
+
+    @Override
+    protected Supplier<FloatArrayOperations> additiveIdentity() {
+        return () -> FloatArrayOperations.filled(context(), 0f);
+    }
+}
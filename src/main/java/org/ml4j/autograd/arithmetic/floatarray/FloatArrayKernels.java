@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.floatarray;
+
+/**
+ * Elementwise kernels over dense float arrays.
+ *
+ * On JDK 17 and later, when the jdk.incubator.vector module has been added to the JVM with
+ * --add-modules jdk.incubator.vector, the kernels are implemented with the Vector API, using the preferred vector
+ * species of the host, eg. AVX2 or AVX-512.  The Vector API implementation is compiled from src/main/java17 into
+ * the META-INF/versions/17 entry of the multi-release jar by the vector-api build profile, which is activated when
+ * building on JDK 17 or later, and can be disabled at runtime by setting the org.ml4j.autograd.vector system
+ * property to false.
+ *
+ * Otherwise, each kernel is a single counted loop over unit-stride arrays, with no calls or data-dependent branches
+ * in its body, which is the form the JIT compiler's superword optimisation vectorizes to the SIMD instructions
+ * available on the host.  The output array may be the same array as an input, for in-place operations.
+ *
+ * @author Michael Lavelle
+ */
+public final class FloatArrayKernels {
+
+    private static final String VECTOR_KERNELS = "org.ml4j.autograd.arithmetic.floatarray.VectorFloatArrayKernels";
+
+    // A constant, so that the JIT compiler can inline the kernels of the implementation in use
+    private static final Kernels KERNELS = load();
+
+    private FloatArrayKernels() {
+    }
+
+    /**
+     * @return Whether the kernels are implemented with the Vector API.
+     */
+    public static boolean isVectorized() {
+        return !(KERNELS instanceof ScalarKernels);
+    }
+
+    public static void add(float[] first, float[] second, float[] out, int length) {
+        KERNELS.add(first, second, out, length);
+    }
+
+    public static void sub(float[] first, float[] second, float[] out, int length) {
+        KERNELS.sub(first, second, out, length);
+    }
+
+    public static void mul(float[] first, float[] second, float[] out, int length) {
+        KERNELS.mul(first, second, out, length);
+    }
+
+    public static void div(float[] first, float[] second, float[] out, int length) {
+        KERNELS.div(first, second, out, length);
+    }
+
+    public static void add(float[] first, float scalar, float[] out, int length) {
+        KERNELS.add(first, scalar, out, length);
+    }
+
+    public static void mul(float[] first, float scalar, float[] out, int length) {
+        KERNELS.mul(first, scalar, out, length);
+    }
+
+    public static void div(float[] first, float scalar, float[] out, int length) {
+        KERNELS.div(first, scalar, out, length);
+    }
+
+    public static void neg(float[] first, float[] out, int length) {
+        KERNELS.neg(first, out, length);
+    }
+
+    public static void gt(float[] first, float scalar, float[] out, int length) {
+        KERNELS.gt(first, scalar, out, length);
+    }
+
+    public static void gte(float[] first, float scalar, float[] out, int length) {
+        KERNELS.gte(first, scalar, out, length);
+    }
+
+    public static void relu(float[] first, float[] out, int length) {
+        KERNELS.relu(first, out, length);
+    }
+
+    private static Kernels load() {
+        if (Runtime.version().feature() >= 17 && !"false".equals(System.getProperty("org.ml4j.autograd.vector"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // The Vector API implementation was not built, so fall back to the scalar kernels
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * An implementation of the kernels.
+     */
+    interface Kernels {
+
+        void add(float[] first, float[] second, float[] out, int length);
+
+        void sub(float[] first, float[] second, float[] out, int length);
+
+        void mul(float[] first, float[] second, float[] out, int length);
+
+        void div(float[] first, float[] second, float[] out, int length);
+
+        void add(float[] first, float scalar, float[] out, int length);
+
+        void mul(float[] first, float scalar, float[] out, int length);
+
+        void div(float[] first, float scalar, float[] out, int length);
+
+        void neg(float[] first, float[] out, int length);
+
+        void gt(float[] first, float scalar, float[] out, int length);
+
+        void gte(float[] first, float scalar, float[] out, int length);
+
+        void relu(float[] first, float[] out, int length);
+    }
+
+    /**
+     * The kernels implemented as scalar loops, for the JIT compiler to vectorize.
+     */
+    static final class ScalarKernels implements Kernels {
+
+        @Override
+        public void add(float[] first, float[] second, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] + second[i];
+            }
+        }
+
+        @Override
+        public void sub(float[] first, float[] second, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] - second[i];
+            }
+        }
+
+        @Override
+        public void mul(float[] first, float[] second, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] * second[i];
+            }
+        }
+
+        @Override
+        public void div(float[] first, float[] second, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] / second[i];
+            }
+        }
+
+        @Override
+        public void add(float[] first, float scalar, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] + scalar;
+            }
+        }
+
+        @Override
+        public void mul(float[] first, float scalar, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] * scalar;
+            }
+        }
+
+        @Override
+        public void div(float[] first, float scalar, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] / scalar;
+            }
+        }
+
+        @Override
+        public void neg(float[] first, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = -first[i];
+            }
+        }
+
+        @Override
+        public void gt(float[] first, float scalar, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] > scalar ? 1f : 0f;
+            }
+        }
+
+        @Override
+        public void gte(float[] first, float scalar, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = first[i] >= scalar ? 1f : 0f;
+            }
+        }
+
+        @Override
+        public void relu(float[] first, float[] out, int length) {
+            for (int i = 0; i < length; i++) {
+                out[i] = Math.max(first[i], 0f);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.floatarray;
+
+import org.ml4j.autograd.arithmetic.operations.ArithmeticOperations;
+import org.ml4j.autograd.fusion.ElementwiseData;
+
+import java.util.Arrays;
+
+/**
+ * Dense float array backed ArithmeticOperations, applying the elementwise kernels of FloatArrayKernels.
+ *
+ * Out-of-place operations allocate a single result array, and in-place operations write into the backing array
+ * of this instance.  The operands of binary operations must have the same length.
+ *
+ * @author Michael Lavelle
+ */
+public class FloatArrayOperations implements ArithmeticOperations<FloatArrayOperations>, ElementwiseData<FloatArrayOperations> {
+
+    private final float[] data;
+
+    /**
+     * @param data The backing array, which is adopted rather than copied.
+     */
+    public FloatArrayOperations(float[] data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data can not be null");
+        }
+        this.data = data;
+    }
+
+    /**
+     * Create FloatArrayOperations of the specified length, with every element set to a value.
+     *
+     * @param length The length.
+     * @param value The value of every element.
+     * @return The FloatArrayOperations.
+     */
+    public static FloatArrayOperations filled(int length, float value) {
+        float[] data = new float[length];
+        if (value != 0f) {
+            Arrays.fill(data, value);
+        }
+        return new FloatArrayOperations(data);
+    }
+
+    /**
+     * @return The number of elements.
+     */
+    public int length() {
+        return data.length;
+    }
+
+    /**
+     * Obtain the backing array of this data, which is not copied.
+     *
+     * @return The backing array.
+     */
+    @Override
+    public float[] getDataAsFloatArray() {
+        return data;
+    }
+
+    @Override
+    public float[] getWritableFloatArray() {
+        return data;
+    }
+
+    @Override
+    public FloatArrayOperations fromFloatArray(float[] data) {
+        return new FloatArrayOperations(data);
+    }
+
+    @Override
+    public FloatArrayOperations add(FloatArrayOperations other) {
+        float[] out = new float[checkLength(other)];
+        FloatArrayKernels.add(data, other.data, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations add(float other) {
+        float[] out = new float[data.length];
+        FloatArrayKernels.add(data, other, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations sub(FloatArrayOperations other) {
+        float[] out = new float[checkLength(other)];
+        FloatArrayKernels.sub(data, other.data, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations sub(float other) {
+        return add(-other);
+    }
+
+    @Override
+    public FloatArrayOperations mul(FloatArrayOperations other) {
+        float[] out = new float[checkLength(other)];
+        FloatArrayKernels.mul(data, other.data, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations mul(float other) {
+        float[] out = new float[data.length];
+        FloatArrayKernels.mul(data, other, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations div(FloatArrayOperations other) {
+        float[] out = new float[checkLength(other)];
+        FloatArrayKernels.div(data, other.data, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations div(float other) {
+        float[] out = new float[data.length];
+        FloatArrayKernels.div(data, other, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations neg() {
+        float[] out = new float[data.length];
+        FloatArrayKernels.neg(data, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations gt(float value) {
+        float[] out = new float[data.length];
+        FloatArrayKernels.gt(data, value, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations gte(float value) {
+        float[] out = new float[data.length];
+        FloatArrayKernels.gte(data, value, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    public FloatArrayOperations relu() {
+        float[] out = new float[data.length];
+        FloatArrayKernels.relu(data, out, out.length);
+        return new FloatArrayOperations(out);
+    }
+
+    @Override
+    public FloatArrayOperations add_(FloatArrayOperations other) {
+        FloatArrayKernels.add(data, other.data, data, checkLength(other));
+        return this;
+    }
+
+    @Override
+    public FloatArrayOperations sub_(FloatArrayOperations other) {
+        FloatArrayKernels.sub(data, other.data, data, checkLength(other));
+        return this;
+    }
+
+    public FloatArrayOperations mul_(FloatArrayOperations other) {
+        FloatArrayKernels.mul(data, other.data, data, checkLength(other));
+        return this;
+    }
+
+    public FloatArrayOperations div_(FloatArrayOperations other) {
+        FloatArrayKernels.div(data, other.data, data, checkLength(other));
+        return this;
+    }
+
+    public FloatArrayOperations mul_(float other) {
+        FloatArrayKernels.mul(data, other, data, data.length);
+        return this;
+    }
+
+    public FloatArrayOperations relu_() {
+        FloatArrayKernels.relu(data, data, data.length);
+        return this;
+    }
+
+    /**
+     * Set every element of this data to zero.
+     *
+     * @return This data.
+     */
+    public FloatArrayOperations zero_() {
+        return fill_(0f);
+    }
+
+    /**
+     * Set every element of this data to a value.
+     *
+     * @param value The value.
+     * @return This data.
+     */
+    public FloatArrayOperations fill_(float value) {
+        Arrays.fill(data, value);
+        return this;
+    }
+
+    private int checkLength(FloatArrayOperations other) {
+        if (other.data.length != data.length) {
+            throw new IllegalArgumentException("Length mismatch:" + data.length + ":" + other.data.length);
+        }
+        return data.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(data);
+    }
+}
@@ -17,6 +17,9 @@ package org.ml4j.autograd.arithmetic.operations;
 import org.apache.commons.lang3.tuple.Pair;
 import org.ml4j.autograd.AutogradValue;
 import org.ml4j.autograd.Value;
+import org.ml4j.autograd.fusion.ElementwiseOp;
+import org.ml4j.autograd.fusion.ElementwiseBinaryOperator;
+import org.ml4j.autograd.fusion.ElementwiseUnaryOperator;
 
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
@@ -24,6 +27,9 @@ import java.util.function.UnaryOperator;
 
 /**
  * Wraps an ArithmeticOperations instance with differentiation.
+ *
+ * The forward operations are applied as ElementwiseUnaryOperators and ElementwiseBinaryOperators, so that chains
+ * of these operations can be fused when the wrapped data implements ElementwiseData.
  * 
  * @author Michael Lavelle
  */
@@ -36,12 +42,12 @@ public interface DifferentiableWrappedArithmeticOperations<V extends ArithmeticO
  
     @Override
     default V add(V other) {
-        return applyBinaryOperator(other, D::add, (g, p) -> g, (g, p) -> g, "add:" + this.context() + ":" + other.context(), (f, s) -> getMappedContext(f, s));
+        return applyBinaryOperator(other, new ElementwiseBinaryOperator<>(ElementwiseOp.ADD, D::add), (g, p) -> g, (g, p) -> g, "add:" + this.context() + ":" + other.context(), (f, s) -> getMappedContext(f, s));
     }
    
     @Override
     default V add(float other) {
-        return applyUnaryOperator(D::add, other, (g, v) -> g, "add", s -> s);
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.ADD_SCALAR, other, d -> d.add(other)), (g, v) -> g, "add", s -> s);
     }
 
     default C getMappedContext(C f, C s) {
@@ -50,22 +56,22 @@ public interface DifferentiableWrappedArithmeticOperations<V extends ArithmeticO
 
     @Override
     default V div(V other) {
-        return applyBinaryOperator(other, D::div, (g, p) -> g.div(p.getRight()), (g, p) -> g.neg().mul(p.getLeft()).div(p.getRight().mul(p.getRight())), "div", (f, s) -> getMappedContext(f, s));
+        return applyBinaryOperator(other, new ElementwiseBinaryOperator<>(ElementwiseOp.DIV, D::div), (g, p) -> g.div(p.getRight()), (g, p) -> g.neg().mul(p.getLeft()).div(p.getRight().mul(p.getRight())), "div", (f, s) -> getMappedContext(f, s));
     }
     
     @Override
     default V div(float other) {
-        return applyUnaryOperator(D::div, other, (g, v) -> g.div(other), "div", s -> s);
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.DIV_SCALAR, other, d -> d.div(other)), (g, v) -> g.div(other), "div", s -> s);
     }
 
     @Override
     default V mul(V other) {
-        return applyBinaryOperator(other, D::mul, (g, p) -> g.mul(p.getRight()), (g, p) -> g.mul(p.getLeft()), "mult", (f, s) ->  getMappedContext(f, s));
+        return applyBinaryOperator(other, new ElementwiseBinaryOperator<>(ElementwiseOp.MUL, D::mul), (g, p) -> g.mul(p.getRight()), (g, p) -> g.mul(p.getLeft()), "mult", (f, s) ->  getMappedContext(f, s));
     }
     
     @Override
     default V mul(float other) {
-        return applyUnaryOperator(D::mul, other, (g, v) -> g.mul(other), "muls", s -> s);
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.MUL_SCALAR, other, d -> d.mul(other)), (g, v) -> g.mul(other), "muls", s -> s);
     }
     
     private UnaryOperator<D> unary(BiFunction<D, Float, D> op, float other) {
@@ -86,17 +92,17 @@ public interface DifferentiableWrappedArithmeticOperations<V extends ArithmeticO
 
     @Override
     default V neg() {
-        return applyUnaryOperator(D::neg, (g, v) -> g.neg(), "neg", s -> s);
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.NEG, 0, D::neg), (g, v) -> g.neg(), "neg", s -> s);
     }
 
     @Override
     default V sub(V other) {
-        return applyBinaryOperator(other,  D::sub, (g, p) -> g, (g, p) -> g.neg(), "sub", (f, s) -> f);
+        return applyBinaryOperator(other, new ElementwiseBinaryOperator<>(ElementwiseOp.SUB, D::sub), (g, p) -> g, (g, p) -> g.neg(), "sub", (f, s) -> f);
     }
 
     @Override
     default V sub(float other) {
-        return applyUnaryOperator(D::sub, other, (g, v) -> g, "sub", s -> s);
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.SUB_SCALAR, other, d -> d.sub(other)), (g, v) -> g, "sub", s -> s);
     }
 
     @Override
@@ -111,11 +117,11 @@ public interface DifferentiableWrappedArithmeticOperations<V extends ArithmeticO
 
     @Override
     default V gt(float value) {
-        return applyUnaryOperator(D::gt, value, (g, v) -> g.mul(v.gt(value)), "gt", s -> s);
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.GT, value, d -> d.gt(value)), (g, v) -> g.mul(v.gt(value)), "gt", s -> s);
     }
 
     @Override
     default V gte(float value) {
-        return applyUnaryOperator(D::gte, value, (g, v) -> g.mul(v.gte(value)), "gt", s -> s);
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.GTE, value, d -> d.gte(value)), (g, v) -> g.mul(v.gte(value)), "gt", s -> s);
     }
 }
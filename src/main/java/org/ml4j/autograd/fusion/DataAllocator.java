@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.fusion;
+
+import java.util.function.Supplier;
+
+/**
+ * Supplies recycled data, such as from a BufferPool, into which a fused evaluation may write its result.
+ *
+ * @param <D> The type of data.
+ *
+ * @author Michael Lavelle
+ */
+public interface DataAllocator<D> extends Supplier<D> {
+
+    /**
+     * Obtain recycled data.
+     *
+     * @return The data, or null if none is available.
+     */
+    @Override
+    D get();
+
+    /**
+     * Return data obtained from this allocator which could not hold the result, eg. because it does not have the
+     * required length.  Does nothing by default.
+     *
+     * @param data The data.
+     */
+    default void release(D data) {
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.fusion;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * A BinaryOperator on data of type D which is known to apply an elementwise operation, identified by an
+ * ElementwiseOp, so that it can be fused with adjacent elementwise operations.
+ *
+ * @param <D> The type of data.
+ *
+ * @author Michael Lavelle
+ */
+public class ElementwiseBinaryOperator<D> implements BinaryOperator<D> {
+
+    private final ElementwiseOp op;
+    private final BinaryOperator<D> forward;
+
+    /**
+     * @param op The elementwise operation.
+     * @param forward The unfused operation, applied when the data cannot be fused.
+     */
+    public ElementwiseBinaryOperator(ElementwiseOp op, BinaryOperator<D> forward) {
+        this.op = op;
+        this.forward = forward;
+    }
+
+    public ElementwiseOp op() {
+        return op;
+    }
+
+    @Override
+    public D apply(D left, D right) {
+        return forward.apply(left, right);
+    }
+}
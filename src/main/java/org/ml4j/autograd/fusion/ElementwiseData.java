@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.fusion;
+
+/**
+ * Implemented by data types whose elementwise operations can be fused, exposing their elements as a float array
+ * and allowing a new instance of the same shape to be created from the result of a fused evaluation.
+ *
+ * @param <D> The concrete type of the data.
+ *
+ * @author Michael Lavelle
+ */
+public interface ElementwiseData<D> {
+
+    /**
+     * Obtain the elements of this data.  The returned array is only read.
+     *
+     * @return The elements of this data.
+     */
+    float[] getDataAsFloatArray();
+
+    /**
+     * Obtain the elements of this data for writing, so that recycled data may hold the result of a fused
+     * evaluation without a new array being allocated.
+     *
+     * @return The array backing this data, or null if the elements are not backed by a writable array.
+     */
+    default float[] getWritableFloatArray() {
+        return null;
+    }
+
+    /**
+     * Create data of the same shape as this data from the specified elements.
+     *
+     * @param data The elements.
+     * @return The new data.
+     */
+    D fromFloatArray(float[] data);
+}
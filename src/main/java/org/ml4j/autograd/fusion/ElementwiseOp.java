@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.fusion;
+
+/**
+ * The elementwise operations which can be fused with adjacent elementwise operations by a FusedKernel.
+ *
+ * @author Michael Lavelle
+ */
+public enum ElementwiseOp {
+
+    ADD, SUB, MUL, DIV,
+
+    /**
+     * Operations with a scalar operand, which is held by the ElementwiseUnaryOperator.
+     */
+    ADD_SCALAR, SUB_SCALAR, MUL_SCALAR, DIV_SCALAR,
+
+    NEG, GT, GTE, RELU
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.fusion;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * A UnaryOperator on data of type D which is known to apply an elementwise operation, identified by an
+ * ElementwiseOp, so that it can be fused with adjacent elementwise operations.
+ *
+ * @param <D> The type of data.
+ *
+ * @author Michael Lavelle
+ */
+public class ElementwiseUnaryOperator<D> implements UnaryOperator<D> {
+
+    private final ElementwiseOp op;
+    private final float scalar;
+    private final UnaryOperator<D> forward;
+
+    /**
+     * @param op The elementwise operation.
+     * @param scalar The scalar operand for scalar operations.
+     * @param forward The unfused operation, applied when the data cannot be fused.
+     */
+    public ElementwiseUnaryOperator(ElementwiseOp op, float scalar, UnaryOperator<D> forward) {
+        this.op = op;
+        this.scalar = scalar;
+        this.forward = forward;
+    }
+
+    public ElementwiseOp op() {
+        return op;
+    }
+
+    public float scalar() {
+        return scalar;
+    }
+
+    @Override
+    public D apply(D data) {
+        return forward.apply(data);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.fusion;
+
+import org.ml4j.autograd.CachingDataSupplier;
+
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A lazily evaluated CachingDataSupplier for the result of an elementwise operation.
+ *
+ * When the data is requested, the chain of elementwise operations leading to it, back to the nearest operands
+ * which have already been evaluated or are not the result of an elementwise operation, is evaluated by a single
+ * FusedKernel.  If the operands implement ElementwiseData and are large enough, this is a single blocked pass over
+ * their elements, and the intermediate results of the chain are never materialised.  Otherwise the unfused
+ * operations are applied in turn, and the intermediate results are cached.
+ *
+ * Operands are obtained from suppliers of data suppliers, so that, as with an unfused lazy operation, the current
+ * data of an AutogradValue is used at the time of evaluation.
+ *
+ * An allocator may be specified to provide recycled data, such as from a BufferPool, into which a fused evaluation
+ * writes its result when the allocated data exposes a writable float array of the required length.  Data is only
+ * allocated for fused evaluations, so when an allocator is specified, evaluation is fused even for a single
+ * operation on evaluated operands.
+ *
+ * @param <D> The type of data.
+ *
+ * @author Michael Lavelle
+ */
+public class FusedDataSupplier<D> implements CachingDataSupplier<D> {
+
+    private final ElementwiseOp op;
+    private final float scalar;
+    private final UnaryOperator<D> unary;
+    private final BinaryOperator<D> binary;
+    private final Supplier<? extends Supplier<D>> left;
+    private final Supplier<? extends Supplier<D>> right;
+    private final DataAllocator<D> allocator;
+    private final int depth;
+    private D value;
+    private volatile boolean calc;
+
+    private FusedDataSupplier(ElementwiseOp op, float scalar, UnaryOperator<D> unary, BinaryOperator<D> binary,
+                              Supplier<? extends Supplier<D>> left, Supplier<? extends Supplier<D>> right,
+                              DataAllocator<D> allocator) {
+        this.op = op;
+        this.scalar = scalar;
+        this.unary = unary;
+        this.binary = binary;
+        this.left = left;
+        this.right = right;
+        this.allocator = allocator;
+        this.depth = 1 + Math.max(depth(left.get()), right == null ? 0 : depth(right.get()));
+    }
+
+    /**
+     * Create a supplier of the result of applying a unary operator, which is fused with adjacent operations
+     * if the operator is an ElementwiseUnaryOperator.
+     *
+     * @param forward The operator.
+     * @param operand The supplier of the data supplier of the operand.
+     * @param <D> The type of data.
+     * @return The supplier of the result.
+     */
+    public static <D> Supplier<D> of(UnaryOperator<D> forward, Supplier<? extends Supplier<D>> operand) {
+        return of(forward, operand, null);
+    }
+
+    /**
+     * Create a supplier of the result of applying a unary operator, which is fused with adjacent operations
+     * if the operator is an ElementwiseUnaryOperator.
+     *
+     * @param forward The operator.
+     * @param operand The supplier of the data supplier of the operand.
+     * @param allocator The allocator of recycled data for the result, returning null if none is available,
+     *                  or null if results are not to be written into recycled data.
+     * @param <D> The type of data.
+     * @return The supplier of the result.
+     */
+    public static <D> Supplier<D> of(UnaryOperator<D> forward, Supplier<? extends Supplier<D>> operand,
+                                     DataAllocator<D> allocator) {
+        if (forward instanceof ElementwiseUnaryOperator) {
+            ElementwiseUnaryOperator<D> elementwise = (ElementwiseUnaryOperator<D>) forward;
+            return new FusedDataSupplier<>(elementwise.op(), elementwise.scalar(), forward, null, operand, null, allocator);
+        }
+        return () -> forward.apply(operand.get().get());
+    }
+
+    /**
+     * Create a supplier of the result of applying a binary operator, which is fused with adjacent operations
+     * if the operator is an ElementwiseBinaryOperator.
+     *
+     * @param forward The operator.
+     * @param left The supplier of the data supplier of the first operand.
+     * @param right The supplier of the data supplier of the second operand.
+     * @param <D> The type of data.
+     * @return The supplier of the result.
+     */
+    public static <D> Supplier<D> of(BinaryOperator<D> forward, Supplier<? extends Supplier<D>> left,
+                                     Supplier<? extends Supplier<D>> right) {
+        return of(forward, left, right, null);
+    }
+
+    /**
+     * Create a supplier of the result of applying a binary operator, which is fused with adjacent operations
+     * if the operator is an ElementwiseBinaryOperator.
+     *
+     * @param forward The operator.
+     * @param left The supplier of the data supplier of the first operand.
+     * @param right The supplier of the data supplier of the second operand.
+     * @param allocator The allocator of recycled data for the result, returning null if none is available,
+     *                  or null if results are not to be written into recycled data.
+     * @param <D> The type of data.
+     * @return The supplier of the result.
+     */
+    public static <D> Supplier<D> of(BinaryOperator<D> forward, Supplier<? extends Supplier<D>> left,
+                                     Supplier<? extends Supplier<D>> right, DataAllocator<D> allocator) {
+        if (forward instanceof ElementwiseBinaryOperator) {
+            return new FusedDataSupplier<>(((ElementwiseBinaryOperator<D>) forward).op(), 0, null, forward, left, right, allocator);
+        }
+        return () -> forward.apply(left.get().get(), right.get().get());
+    }
+
+    @Override
+    public D get() {
+        if (calc) {
+            return value;
+        } else {
+            Supplier<D> l = left();
+            Supplier<D> r = right();
+            if (isPending(l) || isPending(r) || allocator != null) {
+                value = new FusedKernel<>(this).evaluate();
+            } else {
+                value = applyUnfused(l.get(), r == null ? null : r.get());
+            }
+            calc = true;
+            return value;
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        this.calc = false;
+        this.value = null;
+    }
+
+    /**
+     * @return Whether the data has been evaluated and cached.
+     */
+    @Override
+    public boolean isEvaluated() {
+        return calc;
+    }
+
+    ElementwiseOp op() {
+        return op;
+    }
+
+    float scalar() {
+        return scalar;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    Supplier<D> left() {
+        return left.get();
+    }
+
+    Supplier<D> right() {
+        return right == null ? null : right.get();
+    }
+
+    D allocate() {
+        return allocator == null ? null : allocator.get();
+    }
+
+    void release(D data) {
+        allocator.release(data);
+    }
+
+    void cache(D data) {
+        this.value = data;
+        this.calc = true;
+    }
+
+    D applyUnfused(D leftData, D rightData) {
+        return binary == null ? unary.apply(leftData) : binary.apply(leftData, rightData);
+    }
+
+    static boolean isPending(Supplier<?> supplier) {
+        return supplier instanceof FusedDataSupplier && !((FusedDataSupplier<?>) supplier).calc;
+    }
+
+    private static int depth(Supplier<?> supplier) {
+        return isPending(supplier) ? ((FusedDataSupplier<?>) supplier).depth : 0;
+    }
+}
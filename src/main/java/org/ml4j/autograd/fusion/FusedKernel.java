@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.fusion;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates a chain of pending elementwise operations, ending at a FusedDataSupplier.
+ *
+ * The chain is compiled without recursion into a program of slots in topological order, each of which is either
+ * a leaf operand or an elementwise instruction.  Fused evaluation runs the whole program over one block of
+ * elements at a time, so that intermediate results only occupy a small number of reused block-sized registers.
+ *
+ * Data with fewer than MIN_FUSED_LENGTH elements gains little from fusion, so is evaluated by applying the
+ * unfused operations, caching each intermediate result.  To bound the cost of evaluating intermediate results
+ * that are later requested individually, a chain is only fused back as far as every MAX_DEPTH'th operation,
+ * which is evaluated and cached separately.
+ *
+ * @param <D> The type of data.
+ *
+ * @author Michael Lavelle
+ */
+class FusedKernel<D> {
+
+    static final int BLOCK_SIZE = 1024;
+    static final int MAX_DEPTH = 64;
+    static final int MIN_FUSED_LENGTH = 64;
+
+    private Object[] sources;
+    private boolean[] leaf;
+    private int[] left;
+    private int[] right;
+    private int size;
+
+    FusedKernel(FusedDataSupplier<D> root) {
+        this.sources = new Object[16];
+        this.leaf = new boolean[16];
+        this.left = new int[16];
+        this.right = new int[16];
+        compile(root);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void compile(FusedDataSupplier<D> root) {
+        Map<Supplier<D>, Integer> slots = new IdentityHashMap<>();
+        Deque<FusedDataSupplier<D>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            FusedDataSupplier<D> node = stack.peek();
+            if (slots.containsKey(node)) {
+                stack.pop();
+                continue;
+            }
+            Supplier<D> l = node.left();
+            Supplier<D> r = node.right();
+            boolean ready = true;
+            if (isExpandable(l) && !slots.containsKey(l)) {
+                stack.push((FusedDataSupplier<D>) l);
+                ready = false;
+            }
+            if (r != null && isExpandable(r) && !slots.containsKey(r)) {
+                stack.push((FusedDataSupplier<D>) r);
+                ready = false;
+            }
+            if (ready) {
+                stack.pop();
+                int leftSlot = slotOf(l, slots);
+                int rightSlot = r == null ? -1 : slotOf(r, slots);
+                slots.put(node, add(node, false, leftSlot, rightSlot));
+            }
+        }
+    }
+
+    private static boolean isExpandable(Supplier<?> supplier) {
+        return FusedDataSupplier.isPending(supplier) && ((FusedDataSupplier<?>) supplier).depth() % MAX_DEPTH != 0;
+    }
+
+    private int slotOf(Supplier<D> supplier, Map<Supplier<D>, Integer> slots) {
+        Integer slot = slots.get(supplier);
+        if (slot == null) {
+            slot = add(supplier, true, -1, -1);
+            slots.put(supplier, slot);
+        }
+        return slot;
+    }
+
+    private int add(Object source, boolean isLeaf, int leftSlot, int rightSlot) {
+        if (size == sources.length) {
+            sources = Arrays.copyOf(sources, size * 2);
+            leaf = Arrays.copyOf(leaf, size * 2);
+            left = Arrays.copyOf(left, size * 2);
+            right = Arrays.copyOf(right, size * 2);
+        }
+        sources[size] = source;
+        leaf[size] = isLeaf;
+        left[size] = leftSlot;
+        right[size] = rightSlot;
+        return size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    D evaluate() {
+        Object[] values = new Object[size];
+        float[][] arrays = new float[size][];
+        int[] lastUse = new int[size];
+        boolean fusible = true;
+        int length = -1;
+        for (int i = 0; i < size; i++) {
+            if (leaf[i]) {
+                values[i] = ((Supplier<D>) sources[i]).get();
+                if (values[i] instanceof ElementwiseData) {
+                    arrays[i] = ((ElementwiseData<D>) values[i]).getDataAsFloatArray();
+                    fusible &= length == -1 || arrays[i].length == length;
+                    length = arrays[i].length;
+                } else {
+                    fusible = false;
+                }
+            } else {
+                lastUse[left[i]] = i;
+                if (right[i] >= 0) {
+                    lastUse[right[i]] = i;
+                }
+            }
+        }
+        return fusible && length >= MIN_FUSED_LENGTH ? evaluateFused(values, arrays, lastUse, length)
+                : evaluateUnfused(values, lastUse);
+    }
+
+    @SuppressWarnings("unchecked")
+    private D evaluateUnfused(Object[] values, int[] lastUse) {
+        for (int i = 0; i < size; i++) {
+            if (!leaf[i]) {
+                FusedDataSupplier<D> node = (FusedDataSupplier<D>) sources[i];
+                values[i] = node.applyUnfused((D) values[left[i]], right[i] < 0 ? null : (D) values[right[i]]);
+                node.cache((D) values[i]);
+                release(values, lastUse, left[i], i);
+                if (right[i] >= 0) {
+                    release(values, lastUse, right[i], i);
+                }
+            }
+        }
+        return (D) values[size - 1];
+    }
+
+    private static void release(Object[] values, int[] lastUse, int slot, int instruction) {
+        if (lastUse[slot] == instruction) {
+            values[slot] = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private D evaluateFused(Object[] values, float[][] arrays, int[] lastUse, int length) {
+        ElementwiseData<D> template = null;
+        int block = Math.max(1, Math.min(length, BLOCK_SIZE));
+
+        // Assign a register to each instruction, reusing registers whose values are no longer required.
+        Deque<float[]> free = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (leaf[i]) {
+                if (template == null) {
+                    template = (ElementwiseData<D>) values[i];
+                }
+            } else {
+                freeRegister(free, arrays, lastUse, left[i], i);
+                if (right[i] >= 0 && right[i] != left[i]) {
+                    freeRegister(free, arrays, lastUse, right[i], i);
+                }
+                float[] register = free.poll();
+                arrays[i] = register == null ? new float[block] : register;
+            }
+        }
+
+        FusedDataSupplier<D> output = (FusedDataSupplier<D>) sources[size - 1];
+        D target = output.allocate();
+        float[] result = target instanceof ElementwiseData ? ((ElementwiseData<D>) target).getWritableFloatArray() : null;
+        if (result == null || result.length != length) {
+            if (target != null) {
+                // Return the recycled data, as the result can not be written into it
+                output.release(target);
+            }
+            target = null;
+            result = new float[length];
+        }
+        FusedDataSupplier<?>[] nodes = new FusedDataSupplier<?>[size];
+        for (int i = 0; i < size; i++) {
+            if (!leaf[i]) {
+                nodes[i] = (FusedDataSupplier<?>) sources[i];
+            }
+        }
+        for (int start = 0; start < length; start += block) {
+            int n = Math.min(block, length - start);
+            for (int i = 0; i < size; i++) {
+                if (!leaf[i]) {
+                    int l = left[i];
+                    int r = right[i];
+                    apply(nodes[i].op(), nodes[i].scalar(), arrays[l], leaf[l] ? start : 0,
+                            r < 0 ? null : arrays[r], r < 0 || !leaf[r] ? 0 : start, arrays[i], n);
+                }
+            }
+            System.arraycopy(arrays[size - 1], 0, result, start, n);
+        }
+        return target == null ? template.fromFloatArray(result) : target;
+    }
+
+    private void freeRegister(Deque<float[]> free, float[][] arrays, int[] lastUse, int slot, int instruction) {
+        if (!leaf[slot] && lastUse[slot] == instruction) {
+            free.push(arrays[slot]);
+        }
+    }
+
+    private static void apply(ElementwiseOp op, float s, float[] x, int xb, float[] y, int yb, float[] out, int n) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] + y[yb + i];
+                }
+                break;
+            case SUB:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] - y[yb + i];
+                }
+                break;
+            case MUL:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] * y[yb + i];
+                }
+                break;
+            case DIV:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] / y[yb + i];
+                }
+                break;
+            case ADD_SCALAR:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] + s;
+                }
+                break;
+            case SUB_SCALAR:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] - s;
+                }
+                break;
+            case MUL_SCALAR:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] * s;
+                }
+                break;
+            case DIV_SCALAR:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] / s;
+                }
+                break;
+            case NEG:
+                for (int i = 0; i < n; i++) {
+                    out[i] = -x[xb + i];
+                }
+                break;
+            case GT:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] > s ? 1f : 0f;
+                }
+                break;
+            case GTE:
+                for (int i = 0; i < n; i++) {
+                    out[i] = x[xb + i] >= s ? 1f : 0f;
+                }
+                break;
+            case RELU:
+                for (int i = 0; i < n; i++) {
+                    out[i] = Math.max(x[xb + i], 0f);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unsupported op:" + op);
+        }
+    }
+}
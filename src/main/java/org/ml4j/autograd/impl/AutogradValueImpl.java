@@ -16,17 +16,28 @@ package org.ml4j.autograd.impl;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
+import org.ml4j.autograd.AutogradScope;
 import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
 import org.ml4j.autograd.BackwardConfig;
 import org.ml4j.autograd.CachingDataSupplier;
 import org.ml4j.autograd.CachingDataSupplierImpl;
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.arithmetic.operations.ArithmeticOperations;
+import org.ml4j.autograd.fusion.DataAllocator;
+import org.ml4j.autograd.fusion.FusedDataSupplier;
+import org.ml4j.autograd.instrument.Instrumentation;
+import org.ml4j.autograd.instrument.OperationListener;
+import org.ml4j.autograd.jfr.OperationEvent;
 import org.ml4j.autograd.node.GradNode;
 import org.ml4j.autograd.node.Node;
 import org.ml4j.autograd.node.ValueNode;
 import org.ml4j.autograd.operators.DifferentiableBinaryOperator;
 import org.ml4j.autograd.operators.DifferentiableUnaryOperator;
+import org.ml4j.autograd.pool.BufferPool;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.*;
 
 /**
@@ -45,6 +56,10 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
     private ValueNode<V> valueNode;
     private CachingDataSupplier<D> data;
     private V cachedGrad;
+    // The closed state of a value whose Nodes have not yet been created
+    private boolean closed;
+    // The values sharing the Nodes of this value, or null if none
+    private List<AutogradValue<?, ?, ?>> sharing;
 
     public <X extends AutogradValue<X, Y, Z>, Y, Z> AutogradValueImpl(AutogradValue<X, Y, Z> other, Function<Y, D> dataMapper, Function<Z, C> contextMapper, Function<X, V> valueMapper, Function<V, X> valueReverseMapper, Supplier<Optional<V>> nativeGradientSupplier) {
         D otherDat = dataMapper.apply(other.data().get());
@@ -84,27 +99,204 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
         properties().register(this);
     }
 
+    /**
+     * Close this AutogradValue, releasing its data.
+     *
+     * On the first close, the cached data is cleared and passed to close(D) - unless this value is a view of data it
+     * does not own, such as the data supplied for a leaf, or the data was never obtained - the gradient is dropped,
+     * and the value Node is detached from the computation graph, so that a closed value retains no data or graph.
+     * Values created from the data of another value, such as gradients adopted by several values or values exchanged
+     * by swapWith, may share data, so backends that recycle memory in close(D) should release data at most once.
+     *
+     * If this value has a BufferPool, the data is offered to the pool for reuse, and only passed to close(D)
+     * if the pool does not retain it.
+     */
     public void close() {
+        if (isClosed()) {
+            return;
+        }
         setClosed(true);
+        CachingDataSupplier<D> closedData = data;
+        if (closedData.isEvaluated()) {
+            D value = closedData.get();
+            closedData.clearCache();
+            if (value != null && !properties.isView()) {
+                BufferPool<D, C> pool = bufferPool();
+                if (pool == null || !pool.release(context(), value)) {
+                    close(value);
+                }
+            }
+        } else {
+            closedData.clearCache();
+        }
+        if (gradNode != null) {
+            gradNode.clear();
+        }
+        if (valueNode instanceof NodeImpl) {
+            ((NodeImpl<V>) valueNode).detach();
+        }
+        properties.clearLinks();
     }
 
     @Override
     public void setClosed(boolean closed) {
-        this.valueNode.setClosed(closed);
+        boolean wasClosed = isClosed();
+        if (valueNode == null) {
+            this.closed = closed;
+        } else {
+            this.valueNode.setClosed(closed);
+        }
+        if (wasClosed != closed && properties.getRegistry() != null && !properties.isNo_grad()) {
+            if (sharing == null) {
+                properties.getRegistry().notifyClosed(this, closed);
+            } else {
+                // Values sharing the value Node are closed or reopened with this value
+                for (AutogradValue<?, ?, ?> value : sharing) {
+                    properties.getRegistry().notifyClosed(value, closed);
+                }
+            }
+        }
     }
 
     @Override
     public boolean isClosed() {
-        return valueNode.isClosed();
+        return valueNode == null ? closed : valueNode.isClosed();
     }
 
     @Override
     public boolean isClosing() {
-        return valueNode.isClosing();
+        return valueNode != null && valueNode.isClosing();
     }
 
     protected abstract void close(D data);
 
+    /**
+     * The BufferPool consulted by this value for the data of the results and identities it creates, and to which
+     * it releases its data when closed.
+     *
+     * @return The pool, or null by default, in which case data is always newly allocated.
+     */
+    protected BufferPool<D, C> bufferPool() {
+        return null;
+    }
+
+    /**
+     * Obtain data for the context of this value filled with an identity value, recycled from the BufferPool where
+     * possible.
+     *
+     * @param identity The supplier of newly allocated identity data, used on a miss.
+     * @param value The identity value with which to fill recycled data.
+     * @return The identity data.
+     */
+    protected final D identity(Supplier<D> identity, float value) {
+        BufferPool<D, C> pool = bufferPool();
+        if (pool != null) {
+            D data = pool.acquire(context());
+            if (data != null) {
+                if (fill_(data, value)) {
+                    return data;
+                }
+                if (!pool.release(context(), data)) {
+                    close(data);
+                }
+            }
+        }
+        return identity.get();
+    }
+
+    private DataAllocator<D> allocator(C context) {
+        BufferPool<D, C> pool = bufferPool();
+        if (pool == null) {
+            return null;
+        }
+        return new DataAllocator<D>() {
+
+            @Override
+            public D get() {
+                return pool.acquire(context);
+            }
+
+            @Override
+            public void release(D data) {
+                if (!pool.release(context, data)) {
+                    close(data);
+                }
+            }
+        };
+    }
+
+    /**
+     * A hook allowing the size of data to be reported to OperationListeners.
+     *
+     * @param data The data.
+     * @return The size of the data in bytes - -1 by default, if unknown.
+     */
+    protected long sizeInBytes(D data) {
+        return -1;
+    }
+
+    private V instrumented(V result, Supplier<D> resultData) {
+        if (resultData instanceof InstrumentedForward) {
+            ((InstrumentedForward<D>) resultData).created(result.getValueNode());
+        }
+        return result;
+    }
+
+    private BiConsumer<V, BackwardConfig> instrumented(OperationListener listener, String op, C context, Node<?> node,
+                                                       BiConsumer<V, BackwardConfig> backwardFunction) {
+        if (listener == null) {
+            return backwardFunction;
+        }
+        return (g, config) -> {
+            long start = System.nanoTime();
+            backwardFunction.accept(g, config);
+            listener.backward(op, node, context, start, System.nanoTime());
+        };
+    }
+
+    /**
+     * Evaluates the forward operation of a single, unfused operation, notifying an OperationListener.  The operands
+     * are evaluated before the operation is timed, so that the time of lazily evaluated operands is not included.
+     */
+    private static class InstrumentedForward<D> implements Supplier<D> {
+
+        private final OperationListener listener;
+        private final String op;
+        private final Object context;
+        private final BinaryOperator<D> forward;
+        private final Supplier<? extends Supplier<D>> left;
+        private final Supplier<? extends Supplier<D>> right;
+        private final ToLongFunction<D> sizeInBytes;
+        private Node<?> node;
+
+        InstrumentedForward(OperationListener listener, String op, Object context, BinaryOperator<D> forward,
+                            Supplier<? extends Supplier<D>> left, Supplier<? extends Supplier<D>> right,
+                            ToLongFunction<D> sizeInBytes) {
+            this.listener = listener;
+            this.op = op;
+            this.context = context;
+            this.forward = forward;
+            this.left = left;
+            this.right = right;
+            this.sizeInBytes = sizeInBytes;
+        }
+
+        void created(Node<?> resultNode) {
+            this.node = resultNode;
+            listener.create(op, resultNode, context, System.nanoTime());
+        }
+
+        @Override
+        public D get() {
+            D leftData = left.get().get();
+            D rightData = right == null ? null : right.get().get();
+            long start = System.nanoTime();
+            D result = forward.apply(leftData, rightData);
+            listener.forward(op, node, context, result == null ? -1 : sizeInBytes.applyAsLong(result), start, System.nanoTime());
+            return result;
+        }
+    }
+
     public boolean create_graph() {
         return properties.isCreate_graph();
     }
@@ -116,16 +308,25 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
         this.data = other.data();
         this.properties = other.properties();
         this.valueNode = other.getValueNode();
-        this.gradNode = other.getGradNode();;
+        this.gradNode = other.getGradNode();
         this.currentInstance = getInitialInstance();
+        if (other instanceof AutogradValueImpl) {
+            AutogradValueImpl<?, ?, ?> otherImpl = (AutogradValueImpl<?, ?, ?>) other;
+            if (otherImpl.sharing == null) {
+                otherImpl.sharing = new CopyOnWriteArrayList<>(List.of(otherImpl));
+            }
+            this.sharing = otherImpl.sharing;
+            sharing.add(this);
+        }
         properties().register(this);
     }
 
     protected AutogradValueImpl(AutogradValueProperties<C> properties, Supplier<D> data) {
-        this.data = new CachingDataSupplierImpl<>(data);
+        this.data = data instanceof FusedDataSupplier ? (FusedDataSupplier<D>) data : new CachingDataSupplierImpl<>(data);
         this.properties = properties;
-        this.valueNode = new NodeImpl<>(() -> self(), properties.getChildren(), properties.getNext());
-        this.gradNode = new GradNodeImpl<V>(() -> null, () -> Optional.empty());
+        if (!properties.isNo_grad()) {
+            createNodes();
+        }
         if (data == null) {
             throw new IllegalArgumentException("Data supplier can not be null");
         }
@@ -133,6 +334,17 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
             properties().register(this);
        }
 
+    /**
+     * Create the Nodes of this value - on construction, or for values created while gradient tracking was disabled,
+     * when the Nodes are first required.
+     */
+    private void createNodes() {
+        ValueNode<V> node = new NodeImpl<>(() -> self(), properties.getChildren(), properties.getNext());
+        node.setClosed(closed);
+        this.gradNode = new GradNodeImpl<V>(() -> null, () -> Optional.empty());
+        this.valueNode = node;
+    }
+
     @Override
     public V self() {
         return currentInstance;
@@ -159,26 +371,52 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
      */
     public V applyBinaryOperator(V other, BinaryOperator<D> forward, BiFunction<V, Pair<V, V>, V> backThis,
                                  BiFunction<V, Pair<V, V>, V> backOther, String op, BinaryOperator<C> contextMapper) {
-        V gradValue = createAutogradValue(() -> forward.apply(data().get(), other.data().get()),
-                new AutogradValueProperties<C>().setContext(contextMapper.apply(context(), other.context()))
+        OperationEvent event = OperationEvent.start();
+        V result = applyBinaryOperatorEagerly(other, forward, backThis, backOther, op, contextMapper);
+        if (event != null) {
+            event.complete(op, result.context(), 2);
+        }
+        ExecutionTrace<V, D, C> trace = ExecutionTrace.current();
+        if (trace != null) {
+            trace.recordBinary(self(), other, forward, backThis, backOther, result);
+        }
+        return result;
+    }
+
+    private V applyBinaryOperatorEagerly(V other, BinaryOperator<D> forward, BiFunction<V, Pair<V, V>, V> backThis,
+                                 BiFunction<V, Pair<V, V>, V> backOther, String op, BinaryOperator<C> contextMapper) {
+        C resultContext = contextMapper.apply(context(), other.context());
+        OperationListener listener = Instrumentation.listener();
+        Supplier<D> resultData = listener == null ? FusedDataSupplier.of(forward, this::data, other::data, allocator(resultContext))
+                : new InstrumentedForward<>(listener, op, resultContext, forward, this::data, other::data, this::sizeInBytes);
+        if (!GradMode.is_enabled()) {
+            return instrumented(createAutogradValue(resultData,
+                    new AutogradValueProperties<C>().setContext(resultContext)
+                            .setChildren(Collections.emptyList()).setRegistry(properties.getRegistry()).setName(op)
+                            .setView(false).setNo_grad(true)), resultData);
+        }
+        V gradValue = instrumented(createAutogradValue(resultData,
+                new AutogradValueProperties<C>().setContext(resultContext)
                         .setChildren(Arrays.asList(getValueNode(), other.getValueNode()))
                         .setRequires_grad(requires_grad() || other.requires_grad())
-                        .setRegistry(properties.getRegistry())
-                        .setName("resultOf:" + name() + op + other.name()));
+                        .setRegistry(properties.getRegistry()).setView(false)
+                        .setName("resultOf:" + name() + op + other.name())), resultData);
 
 
         for (Node<?> n :gradValue.getValueNode().prev()) {
-            n.next().add(gradValue.getValueNode());
+            addNext(n, gradValue.getValueNode());
         }
 
-        gradValue.getValueNode().setBackwardFunction(createBinaryBackwardFunction(other, backThis, backOther, properties.getContext(), other.context(), contextMapper.apply(context(), other.context()), op));
+        gradValue.getValueNode().setBackwardFunction(instrumented(listener, op, resultContext, gradValue.getValueNode(),
+                createBinaryBackwardFunction(other, backThis, backOther, op)));
 
         return gradValue;
     }
 
 
+    @SuppressWarnings("try")
     private BiConsumer<V, BackwardConfig> createBinaryBackwardFunction(V other, BiFunction<V, Pair<V, V>, V> backThis,
-                                                                       BiFunction<V, Pair<V, V>, V> backOther, C inputContext, C otherContext, C outputContext, String op) {
+                                                                       BiFunction<V, Pair<V, V>, V> backOther, String op) {
 
         BiFunction<V, Pair<V, V>, V> backThisAdapted = (g, p) -> backThis.apply(g, p);
 
@@ -206,21 +444,20 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
         final BiFunction<V, Pair<V, V>, V> backOtherAdaptedFinal = backOtherAdapted;
 
         UnaryOperator<V> backThisKeepGraph = g -> backThisAdaptedFinal.apply(g, new ImmutablePair<>(self(), other));
-        UnaryOperator<V> backThisNonKeepGraph = (g) -> backThisAdaptedFinal.apply(g, new ImmutablePair<>(addLink(createAutogradValue(this.data(), new AutogradValueProperties<C>().setRegistry(this.properties.getRegistry()).setContext(inputContext).setName("binaryBack3")).self()), addLink(createAutogradValue(other.data(), new AutogradValueProperties<C>().setContext(otherContext).setRegistry(this.properties.getRegistry()).setName("binaryBack1")).self())));
         UnaryOperator<V> backOtherKeepGraph = (g) -> backOtherAdaptedFinal.apply(g, new ImmutablePair<>(self(), other));
-        UnaryOperator<V> backOtherNonKeepGraph = g -> backOtherAdaptedFinal.apply(g, new ImmutablePair<>(addLink(createAutogradValue(this.data(), new AutogradValueProperties<C>().setRegistry(this.properties.getRegistry()).setContext(inputContext).setName("binaryBack4")).self()), addLink(createAutogradValue(other.data(), new AutogradValueProperties<C>().setContext(inputContext).setRegistry(this.properties.getRegistry()).setName("binaryBack2")).self())));
 
         Consumer<GradNode<V>> outBackwardKeepGraph = outGrad -> {
             addToGrad(backThisKeepGraph.apply(outGrad.getValue().get()));
             if (other.requires_grad()) {
-                other.getGradNode().add_(backOtherKeepGraph.apply(outGrad.getValue().get()), (f, s) -> f.add(s));
+                other.getGradNode().add_(backOtherKeepGraph.apply(outGrad.getValue().get()), (f, s) -> f.add(s), AutogradValueImpl::addInPlace);
             }
         };
 
         Consumer<V> outBackward = outGrad -> {
-            addToGrad(backThisNonKeepGraph.apply(outGrad));
+            Pair<V, V> operands = new ImmutablePair<>(self(), other);
+            addToGrad(backThisAdaptedFinal.apply(outGrad, operands));
             if (other.requires_grad()) {
-                other.getGradNode().add_(backOtherNonKeepGraph.apply(outGrad), (f, s) -> f.add(s)); // here1
+                other.getGradNode().add_(backOtherAdaptedFinal.apply(outGrad, operands), (f, s) -> f.add(s), AutogradValueImpl::addInPlace);
             }
         };
 
@@ -229,8 +466,11 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
                 outBackwardKeepGraph.accept(out1);
             } else {
                 if (out1 != null && out1.getValue() != null && out1.getValue().get() != null) {
-                    // HERE
-                    outBackward.accept(addLink(this.createAutogradValue(out1.getValue().get().data(), new AutogradValueProperties<C>().setContext(outputContext).setRegistry(properties().getRegistry()).setName("binaryBack5")).self())); //here2
+                    // The graph is not being kept, so apply the backward functions to the operands and the gradient
+                    // directly with gradient tracking disabled, rather than to detached copies of them
+                    try (GradMode.Guard guard = GradMode.no_grad()) {
+                        outBackward.accept(out1.getValue().get());
+                    }
                 }
             }
         };
@@ -258,8 +498,12 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
      * @return This AutogradValue.
      */
     public V applyInlineBinaryOperator(V other, BinaryOperator<D> forward, String op) {
-        D result = forward.apply(data().get(), other.data().get());
-        data_(() -> result);
+        ExecutionTrace.invalidateCurrent();
+        D current = data().get();
+        D result = forward.apply(current, other.data().get());
+        if (result != current) {
+            data_(() -> result);
+        }
         return self();
     }
 
@@ -276,14 +520,38 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
      * @return The resultant AutogradValue.
      */
     public V applyUnaryOperator(UnaryOperator<D> forward, BiFunction<V, V, V> backThis, String op, UnaryOperator<C> contextMapper) {
-        V autogradValue = createAutogradValue(() -> forward.apply(data().get()), new AutogradValueProperties<C>().setContext(contextMapper.apply(context())).setName("resultOf:" + name() + ":" + op).setChildren(Arrays.asList(getValueNode())).setRegistry(this.properties.getRegistry()).setRequires_grad(properties.isRequires_grad()).setCreate_graph(properties.isCreate_graph()));
+        OperationEvent event = OperationEvent.start();
+        V result = applyUnaryOperatorEagerly(forward, backThis, op, contextMapper);
+        if (event != null) {
+            event.complete(op, result.context(), 1);
+        }
+        ExecutionTrace<V, D, C> trace = ExecutionTrace.current();
+        if (trace != null) {
+            trace.recordUnary(self(), forward, backThis, result);
+        }
+        return result;
+    }
+
+    private V applyUnaryOperatorEagerly(UnaryOperator<D> forward, BiFunction<V, V, V> backThis, String op, UnaryOperator<C> contextMapper) {
+        C resultContext = contextMapper.apply(context());
+        OperationListener listener = Instrumentation.listener();
+        Supplier<D> resultData = listener == null ? FusedDataSupplier.of(forward, this::data, allocator(resultContext))
+                : new InstrumentedForward<D>(listener, op, resultContext, (d, unused) -> forward.apply(d), this::data, null,
+                        this::sizeInBytes);
+        if (!GradMode.is_enabled()) {
+            return instrumented(createAutogradValue(resultData,
+                    new AutogradValueProperties<C>().setContext(resultContext)
+                            .setChildren(Collections.emptyList()).setRegistry(properties.getRegistry()).setName(op)
+                            .setView(false).setNo_grad(true)), resultData);
+        }
+        V autogradValue = instrumented(createAutogradValue(resultData, new AutogradValueProperties<C>().setContext(resultContext).setName("resultOf:" + name() + ":" + op).setChildren(Arrays.asList(getValueNode())).setRegistry(this.properties.getRegistry()).setRequires_grad(properties.isRequires_grad()).setCreate_graph(properties.isCreate_graph()).setView(false)), resultData);
 
         for (Node<?> n :autogradValue.getValueNode().prev()) {
-            n.next().add(autogradValue.getValueNode());
+            addNext(n, autogradValue.getValueNode());
         }
 
-        BiConsumer<V, BackwardConfig> backwardFunction = createUnaryBackwardFunction(backThis, properties.getContext());
-        autogradValue.getValueNode().setBackwardFunction(backwardFunction);
+        BiConsumer<V, BackwardConfig> backwardFunction = createUnaryBackwardFunction(backThis);
+        autogradValue.getValueNode().setBackwardFunction(instrumented(listener, op, resultContext, autogradValue.getValueNode(), backwardFunction));
         return autogradValue;
     }
 
@@ -295,11 +563,98 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
      * @return This AutogradValue.
      */
     protected V applyInlineUnaryOperator(UnaryOperator<D> forward, String op) {
-        D result = forward.apply(data().get());
-        data_(() -> result);
+        ExecutionTrace.invalidateCurrent();
+        D current = data().get();
+        D result = forward.apply(current);
+        if (result != current) {
+            data_(() -> result);
+        }
         return self();
     }
 
+    /**
+     * Apply a segment of operations to an input value without retaining the activations of the segment.
+     *
+     * The segment is run under no_grad during the forward pass, so only its input and output are retained.
+     * During backward the segment is run again with grad enabled from the input's data, and the gradient is
+     * propagated through the recomputed activations into the input and into any leaf values the segment closes
+     * over, eg. its parameters. As these parameters are not known until the segment is recomputed, the resultant
+     * value requires grad whenever grad mode is enabled. The segment should only depend on its input and on
+     * leaf values, and must be deterministic.
+     *
+     * The segment is run within its own AutogradScope on each pass, so the values it creates are closed once its
+     * output has been evaluated, and once the gradients of the recomputation have been added to the input.
+     *
+     * For AutogradValues other than AutogradValueImpls, eg. values recorded on a tape, the segment is applied directly.
+     *
+     * @param segment The segment of operations to apply.
+     * @param input The input to the segment.
+     * @param <V> The concrete type of the AutogradValues.
+     * @param <D> The type of data wrapped by the AutogradValues.
+     * @param <C> The type of context of the AutogradValues.
+     * @return The output of the segment.
+     */
+    @SuppressWarnings({"unchecked", "try"})
+    public static <V extends AutogradValue<V, D, C>, D, C> V checkpoint(Function<V, V> segment, V input) {
+        if (!GradMode.is_enabled() || !(input instanceof AutogradValueImpl)) {
+            return segment.apply(input);
+        }
+        // Operations within the segment are neither graph nodes nor replayable steps
+        ExecutionTrace.invalidateCurrent();
+        AutogradValueImpl<V, D, C> inputImpl = (AutogradValueImpl<V, D, C>) input;
+        AutogradValueRegistry registry = inputImpl.properties().getRegistry();
+        V output;
+        D outputData;
+        boolean owned;
+        // The values created by the segment are discarded, so are closed by a scope of their own
+        try (GradMode.Guard guard = GradMode.no_grad(); AutogradScope scope = AutogradScope.open()) {
+            output = segment.apply(inputImpl.createAutogradValue(input.data(), new AutogradValueProperties<C>()
+                    .setContext(input.context()).setRegistry(registry).setView(true).setNo_grad(true)
+                    .setName("checkpointInput")));
+            outputData = output.data().get();
+            // The checkpointed value takes over data created by the segment, so that closing the output keeps it
+            owned = output.properties().isNo_grad() && !output.properties().isView();
+            if (owned) {
+                output.properties().setView(true);
+            }
+        }
+        // An input which does not require grad receives no gradient, so is not linked into the graph
+        List<Node<?>> children = input.requires_grad() ? Arrays.asList(input.getValueNode()) : Collections.emptyList();
+        V checkpointed = inputImpl.createAutogradValue(() -> outputData, new AutogradValueProperties<C>()
+                .setContext(output.context()).setChildren(children)
+                .setRequires_grad(true).setRegistry(registry).setView(!owned).setName("checkpointOf:" + input.name()));
+        if (input.requires_grad()) {
+            addNext(input.getValueNode(), checkpointed.getValueNode());
+        }
+        checkpointed.getValueNode().setBackwardFunction((v, config) -> {
+            V g = v.getGradNode().getValue() == null ? null : v.getGradNode().getValue().get();
+            if (g == null) {
+                return;
+            }
+            // Created outside of the scope of the recomputation, as gradients may adopt it
+            D gradData = g.data().get();
+            V recomputedGrad = inputImpl.createAutogradValue(() -> gradData, new AutogradValueProperties<C>()
+                    .setContext(g.context()).setRegistry(registry).setView(true).setNo_grad(!config.keep_graph())
+                    .setName("checkpointGrad"));
+            try (AutogradScope scope = AutogradScope.open()) {
+                V recomputedInput = inputImpl.createAutogradValue(input.data(), new AutogradValueProperties<C>()
+                        .setContext(input.context()).setRegistry(registry).setRequires_grad(input.requires_grad())
+                        .setView(true).setName("checkpointInput"));
+                V recomputedOutput = segment.apply(recomputedInput);
+                if (recomputedOutput.requires_grad()) {
+                    // Leaves were zeroed at the start of the enclosing pass, and may since have accumulated gradients
+                    recomputedOutput.backward(recomputedGrad, !config.zero_grad() ? config : new BackwardConfig()
+                            .with_keep_graph(config.keep_graph()).with_parallel(config.parallel())
+                            .with_fork_join_pool(config.fork_join_pool()));
+                    if (input.requires_grad() && recomputedInput.grad() != null) {
+                        inputImpl.addToGrad(recomputedInput.grad());
+                    }
+                }
+            }
+        });
+        return checkpointed;
+    }
+
     @Override
     public CachingDataSupplier<D> data() {
         return data;
@@ -341,14 +696,20 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
     }
 
     @Override
+    @SuppressWarnings("try")
     public void backward(BackwardConfig config) {
         if (config == null) {
             throw new IllegalArgumentException("Config must not be null");
         }
-        backward(createAutogradValue(() -> multiplicativeIdentity().get(), new AutogradValueProperties<C>().setContext(properties.getContext()).setRegistry(this.properties.getRegistry()).setName("backwardStart")).self(), config);
+        try (AutogradScope.Suspension suspension = AutogradScope.suspend()) {
+            // Unless the graph is kept, backward functions are applied with gradient tracking disabled, so the
+            // initial gradient, like the gradients they create, need not be registered or given Nodes
+            backward(createAutogradValue(() -> identity(multiplicativeIdentity(), 1f), new AutogradValueProperties<C>().setContext(properties.getContext()).setRegistry(this.properties.getRegistry()).setName("backwardStart").setView(false).setNo_grad(!config.keep_graph())).self(), config);
+        }
     }
 
     @Override
+    @SuppressWarnings("try")
     public void backward(V g, BackwardConfig config) {
         if (config == null) {
             throw new IllegalArgumentException("Config must not be null");
@@ -356,20 +717,42 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
         if (!requires_grad()) {
             throw new IllegalStateException("Cannot backprogate through node without requires_grad=true");
         }
+        // Gradients outlive the scope within which backward is called, so are not registered with it
+        try (AutogradScope.Suspension suspension = AutogradScope.suspend()) {
+            backpropagate(g, config);
+        }
+    }
+
+    private void backpropagate(V g, BackwardConfig config) {
         this.properties.setCreate_graph(config.keep_graph());
-        // topological order all of the children in the graph
-        List<Node<?>> topo = new ArrayList<>();
-        Set<Node<?>> visited = new HashSet<>();
-        build_topo(topo, visited, getValueNode(), config);
+        // topological order all of the children in the graph, reusing any ordering cached by a previous backward pass
+        List<Node<?>> reversed = reverseTopologicalOrder(config);
+
+        // Zero the gradients of the leaves to prevent previous values affecting the result.
+        if (config.zero_grad()) {
+            for (Node<?> value : reversed) {
+                if (value.prev().isEmpty()) {
+                    ((AutogradValue<?, ?, ?>) value.getValue().get()).zero_grad();
+                }
+            }
+        }
+
+        // clear the gradients of non-leaf nodes left over from any previous backward pass through this graph
+        for (Node<?> value : reversed) {
+            if (!value.prev().isEmpty()) {
+                ((AutogradValue<?, ?, ?>) value.getValue().get()).getGradNode().clear();
+            }
+        }
 
         // go one variable at a time and apply the chain rule to get its gradient
         getGradNode().setValue(() -> g);
 
-        List<Node<?>> reversed = new ArrayList<>();
-        reversed.addAll(topo);
-        Collections.reverse(reversed);
-        for (Node<?> value : reversed) {
-            value.backward(config);
+        if (config.parallel()) {
+            ParallelBackwardExecutor.backward(reversed, config);
+        } else {
+            for (Node<?> value : reversed) {
+                value.backward(config);
+            }
         }
     }
 
@@ -380,34 +763,92 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
 
     protected abstract Supplier<D> multiplicativeIdentity();
 
-    private void build_topo(List<Node<?>> topo, Set<Node<?>> visited, Node<?> v, BackwardConfig config) {
-        if (!visited.contains(v)) {
-            visited.add(v);
-
-            // Set to grad to zero to prevent previous values affecting the result.
-            if (config.zero_grad()) {
-                //v.grad_(create(zero.get(), prev(), "zero", requires_grad).self());
+    private List<Node<?>> reverseTopologicalOrder(BackwardConfig config) {
+        List<Node<?>> reversed = getValueNode().getReverseTopologicalOrder();
+        if (reversed == null) {
+            reversed = TopologicalOrdering.reverseTopologicalOrder(getValueNode());
+            if (config.keep_graph()) {
+                // The graph is being retained, so cache the ordering for subsequent backward passes
+                getValueNode().setReverseTopologicalOrder(reversed);
             }
-            for (Node<?> child : v.prev()) {
-                build_topo(topo, visited, child, config);
-            }
-            topo.add(v);
         }
+        return reversed;
+    }
+
+    @Override
+    public void accumulate_grad(V gradient) {
+        addToGrad(gradient);
     }
 
     public void addToGrad(V other) {
         if (this.requires_grad() || this.properties.isCreate_graph()) {
-            if (getGradNode().getValue() == null) {
-                getGradNode().setValue(() -> createAutogradValue(() -> additiveIdentity().get(), new AutogradValueProperties<C>().setContext(context()).setRegistry(this.properties.getRegistry()).setName("addToGrad")));
-            }
-            getGradNode().add_(other, (f, s) -> f.add(s).self());
+            // The first contribution is adopted as the gradient, and later contributions are added in place once
+            // the GradNode owns the accumulated value
+            getGradNode().add_(other, (f, s) -> f.add(s).self(), AutogradValueImpl::addInPlace);
+        }
+    }
+
+    /**
+     * Zero the gradient of this AutogradValue ahead of a new backward pass.
+     *
+     * A gradient value that was accumulated by this AutogradValue is zeroed in place where its data supports this,
+     * and then reused as the accumulator of the next backward pass, so that any reference obtained through grad()
+     * observes the new gradient.  Otherwise the gradient is cleared, and grad() returns null until a new gradient
+     * has been accumulated.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void zero_grad() {
+        boolean[] retained = new boolean[1];
+        getGradNode().zero_(g -> retained[0] = g instanceof AutogradValueImpl && ((AutogradValueImpl<V, D, C>) g).zero_(g.data().get()));
+        if (!retained[0]) {
+            cachedGrad = null;
+        }
+    }
+
+    /**
+     * A hook allowing data to be zeroed in place, so that gradient values may be reused across backward passes.
+     *
+     * @param data The data to zero.
+     * @return Whether the data was zeroed in place - by default, whether fill_(data, 0) filled the data.
+     */
+    protected boolean zero_(D data) {
+        return fill_(data, 0f);
+    }
+
+    /**
+     * A hook allowing every element of data to be set in place, so that recycled data may be reused as an identity.
+     *
+     * @param data The data to fill.
+     * @param value The value.
+     * @return Whether the data was filled in place - false by default, for data that can not be modified in place.
+     */
+    protected boolean fill_(D data, float value) {
+        return false;
+    }
+
+    /**
+     * Adds a delta to a gradient value that is exclusively owned by its GradNode, in place where the
+     * value supports in-place arithmetic.
+     *
+     * @param accumulated The gradient value being accumulated into.
+     * @param delta The delta to add.
+     * @return The accumulated gradient value.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V extends AutogradValue<V, ?, ?>> V addInPlace(V accumulated, V delta) {
+        if (accumulated instanceof ArithmeticOperations) {
+            return ((ArithmeticOperations<V>) accumulated).add_(delta);
+        } else {
+            return accumulated.add(delta).self();
         }
     }
 
 
     protected abstract Supplier<D> additiveIdentity();
 
-    private BiConsumer<V, BackwardConfig> createUnaryBackwardFunction(BiFunction<V, V, V> backThis, C inputContext) {
+    @SuppressWarnings("try")
+    private BiConsumer<V, BackwardConfig> createUnaryBackwardFunction(BiFunction<V, V, V> backThis) {
 
         BiFunction<V, V, V> backThisAdapted = (g, p) -> {
             D dat = g.data().get();
@@ -415,28 +856,33 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
             return adapted;
         };
 
-        UnaryOperator<V> backThisKeepGraph = (g) -> backThisAdapted.apply(g, self());
-        UnaryOperator<V> backThisNonKeepGraph = (g) -> backThisAdapted.apply(g, addLink(createAutogradValue(this.data(), new AutogradValueProperties<C>().setContext(inputContext).setRegistry(this.properties.getRegistry()).addLink(this.getValueNode()).setName("unaryBack1")).self()));
-
         Consumer<GradNode<V>> outBackwardKeepGraph = outGrad -> {
-            addToGrad(backThisKeepGraph.apply(outGrad.getValue().get()));
-        };
-
-        Consumer<V> outBackward = outGrad -> {
-            addToGrad(backThisNonKeepGraph.apply(outGrad));
+            addToGrad(backThisAdapted.apply(outGrad.getValue().get(), self()));
         };
 
         final BiConsumer<GradNode<V>, Boolean> backwardFunction = (out, keep_graph) -> {
             if (keep_graph) {
                 outBackwardKeepGraph.accept(out);
             } else {
-                outBackward.accept(out.getValue().get());
+                // The graph is not being kept, so apply the backward function to the operand and the gradient
+                // directly with gradient tracking disabled, rather than to detached copies of them
+                try (GradMode.Guard guard = GradMode.no_grad()) {
+                    addToGrad(backThisAdapted.apply(out.getValue().get(), self()));
+                }
             }
         };
 
         return convertBackward(wrapBackward(backwardFunction));
     }
 
+    private static void addNext(Node<?> node, Node<?> next) {
+        // Operators may be applied concurrently during a parallel backward pass
+        List<Node<?>> nextNodes = node.next();
+        synchronized (nextNodes) {
+            nextNodes.add(next);
+        }
+    }
+
     protected V addLink(V v) {
         this.properties.addLink(v.getValueNode());
         return v;
@@ -497,11 +943,17 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
 
     @Override
     public ValueNode<V> getValueNode() {
+        if (valueNode == null) {
+            createNodes();
+        }
         return valueNode;
     }
 
     @Override
     public GradNode<V> getGradNode() {
+        if (gradNode == null) {
+            createNodes();
+        }
         return gradNode;
     }
 
@@ -537,13 +989,23 @@ public abstract class AutogradValueImpl<V extends AutogradValue<V, D, C>, D, C>
     }
 
     protected void replaceValueNode(ValueNode<V> thisCurrentValueNode) {
+        graphMutated(this.valueNode);
+        graphMutated(thisCurrentValueNode);
         this.valueNode = thisCurrentValueNode;
     }
 
     protected void replaceGradNode(GradNode<V> otherCurrentGradNode) {
+        graphMutated(this.gradNode);
+        graphMutated(otherCurrentGradNode);
         this.gradNode = otherCurrentGradNode;
     }
 
+    private static void graphMutated(Node<?> node) {
+        if (node instanceof NodeImpl) {
+            ((NodeImpl<?>) node).graphMutated();
+        }
+    }
+
     protected void replaceInstance(V otherCurrentInstance) {
         this.currentInstance = otherCurrentInstance;
     }
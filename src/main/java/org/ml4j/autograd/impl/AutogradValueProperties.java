@@ -1,5 +1,6 @@
 package org.ml4j.autograd.impl;
 
+import org.ml4j.autograd.AutogradScope;
 import org.ml4j.autograd.AutogradValue;
 import org.ml4j.autograd.AutogradValueRegistry;
 import org.ml4j.autograd.node.Node;
@@ -18,10 +19,13 @@ public class AutogradValueProperties<C> {
     private List<Node<?>> links;
     private AutogradValueRegistry registry;
     private boolean uncloseable;
+    private boolean view = true;
+    private boolean no_grad;
+    private List<AutogradValue<?, ?, ?>> registered;
 
     public AutogradValueProperties() {
         this.children = new ArrayList<>();
-        this.next = new ArrayList<>();
+        this.next = new WeakNodeList();
         this.links = new ArrayList<>();
     }
 
@@ -30,7 +34,52 @@ public class AutogradValueProperties<C> {
     }
 
     public AutogradValueProperties<C> setUncloseable(boolean uncloseable) {
-        this.uncloseable = uncloseable;
+        List<AutogradValue<?, ?, ?>> notified;
+        synchronized (this) {
+            if (this.uncloseable == uncloseable) {
+                return this;
+            }
+            this.uncloseable = uncloseable;
+            notified = registered == null ? null : new ArrayList<>(registered);
+        }
+        if (notified != null) {
+            for (AutogradValue<?, ?, ?> value : notified) {
+                registry.notifyUncloseable(value, uncloseable);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return Whether the AutogradValue is a view of data it does not own, in which case closing it does not release
+     * the data.  True by default, as the data supplied for a leaf is owned by its caller - values whose data is
+     * allocated by an operation, such as results and gradient seeds, are created with view set to false.
+     */
+    public boolean isView() {
+        return view;
+    }
+
+    public AutogradValueProperties<C> setView(boolean view) {
+        this.view = view;
+        return this;
+    }
+
+    /**
+     * @return Whether the AutogradValue is the result of an operation applied while gradient tracking was disabled,
+     * in which case it is not registered with the registry, only with the current AutogradScope, and its Nodes are
+     * only created if it is used by a later operation while gradient tracking is enabled.
+     */
+    public boolean isNo_grad() {
+        return no_grad;
+    }
+
+    public AutogradValueProperties<C> setNo_grad(boolean no_grad) {
+        this.no_grad = no_grad;
+        return this;
+    }
+
+    public synchronized AutogradValueProperties<C> clearLinks() {
+        this.links.clear();
         return this;
     }
 
@@ -45,12 +94,29 @@ public class AutogradValueProperties<C> {
 
     public void register(AutogradValue<?, ?, ?> value) {
         if (registry != null) {
-            this.registry.registerAutogradValue(value);
+            if (!no_grad) {
+                this.registry.registerAutogradValue(value);
+                registered(value);
+            }
+            AutogradScope.registerWithCurrent(value);
         } else {
             throw new IllegalStateException();
         }
     }
 
+    /**
+     * Record that an AutogradValue with these properties has been registered with the registry, so that the registry
+     * is notified if these properties are later made uncloseable.
+     *
+     * @param value The AutogradValue.
+     */
+    public synchronized void registered(AutogradValue<?, ?, ?> value) {
+        if (registered == null) {
+            registered = new ArrayList<>(1);
+        }
+        registered.add(value);
+    }
+
     public AutogradValueProperties<C> setName(String name) {
         this.name = name;
         return this;
@@ -76,7 +142,7 @@ public class AutogradValueProperties<C> {
         return this;
     }
 
-    public AutogradValueProperties<C> addLink(Node<?> link) {
+    public synchronized AutogradValueProperties<C> addLink(Node<?> link) {
         this.links.add(link);
         return this;
     }
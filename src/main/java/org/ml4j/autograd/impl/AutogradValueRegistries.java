@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.management.RegistryStatistics;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps track of the AutogradValueRegistries that have been created, so that the static operations on
+ * AutogradValueRegistry can be applied to all of them.
+ *
+ * Registries created with {@link #addWeak(AutogradValueRegistry)} are only weakly referenced, so that a registry
+ * which is no longer in use can be garbage collected along with its values.
+ *
+ * The statistics of each registry are registered as its MXBean when it is added, and unregistered when the registry
+ * is removed with {@link #remove(AutogradValueRegistry)}, or once a weakly referenced registry has been garbage
+ * collected.  Strongly referenced registries, and their MXBeans, are therefore retained until they are removed.
+ *
+ * @author Michael Lavelle
+ */
+public class AutogradValueRegistries {
+
+    private static final List<AutogradValueRegistry> strongRegistries = new ArrayList<>();
+    private static final List<RegistryReference> weakRegistries = new ArrayList<>();
+    private static final ReferenceQueue<AutogradValueRegistry> queue = new ReferenceQueue<>();
+
+    private AutogradValueRegistries() {
+    }
+
+    public static synchronized void add(AutogradValueRegistry registry) {
+        strongRegistries.add(registry);
+        registerMBean(registry);
+    }
+
+    public static synchronized void addWeak(AutogradValueRegistry registry) {
+        expunge();
+        weakRegistries.add(new RegistryReference(registry, queue));
+        registerMBean(registry);
+    }
+
+    /**
+     * Remove a registry, so that the static operations on AutogradValueRegistry no longer apply to it, and unregister
+     * its MXBean.
+     *
+     * @param registry The registry.
+     * @return Whether the registry had been added.
+     */
+    public static synchronized boolean remove(AutogradValueRegistry registry) {
+        expunge();
+        boolean removed = strongRegistries.remove(registry);
+        Iterator<RegistryReference> iterator = weakRegistries.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() == registry) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        RegistryStatistics statistics = registry.statistics();
+        if (removed && statistics != null) {
+            statistics.unregisterMBean();
+        }
+        return removed;
+    }
+
+    private static void registerMBean(AutogradValueRegistry registry) {
+        RegistryStatistics statistics = registry.statistics();
+        if (statistics != null) {
+            statistics.registerMBean(AutogradValueRegistries::registryCount);
+        }
+    }
+
+    /**
+     * @return The number of registries which are currently reachable.
+     */
+    public static synchronized int registryCount() {
+        return strongRegistries.size() + weakRegistryCount();
+    }
+
+    /**
+     * Obtain a snapshot of the registries that are currently reachable.
+     *
+     * @return The registries.
+     */
+    public static synchronized List<AutogradValueRegistry> registries() {
+        expunge();
+        List<AutogradValueRegistry> registries = new ArrayList<>(strongRegistries);
+        for (RegistryReference reference : weakRegistries) {
+            AutogradValueRegistry registry = reference.get();
+            if (registry != null) {
+                registries.add(registry);
+            }
+        }
+        return registries;
+    }
+
+    /**
+     * @return The number of weakly referenced registries which have not yet been garbage collected.
+     */
+    public static synchronized int weakRegistryCount() {
+        expunge();
+        int count = 0;
+        for (RegistryReference reference : weakRegistries) {
+            if (reference.get() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void expunge() {
+        if (queue.poll() != null) {
+            while (queue.poll() != null) {
+                // Drain the queue, the cleared references are removed below.
+            }
+            Iterator<RegistryReference> iterator = weakRegistries.iterator();
+            while (iterator.hasNext()) {
+                RegistryReference reference = iterator.next();
+                if (reference.get() == null) {
+                    iterator.remove();
+                    if (reference.statistics != null) {
+                        reference.statistics.unregisterMBean();
+                    }
+                }
+            }
+        }
+    }
+
+    private static class RegistryReference extends WeakReference<AutogradValueRegistry> {
+
+        private final RegistryStatistics statistics;
+
+        RegistryReference(AutogradValueRegistry registry, ReferenceQueue<AutogradValueRegistry> queue) {
+            super(registry, queue);
+            this.statistics = registry.statistics();
+        }
+    }
+}
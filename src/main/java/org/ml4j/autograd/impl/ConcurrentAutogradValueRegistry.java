@@ -0,0 +1,242 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.impl;
+
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.jfr.RegistrySweepEvent;
+import org.ml4j.autograd.management.RegistryStatistics;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An AutogradValueRegistry for graphs which are constructed concurrently by several worker threads.
+ *
+ * Each thread registers values into its own segment, so that threads building graphs at the same time never
+ * contend for a shared lock - the lock of a segment is only otherwise taken by sweeps.  The segments are merged on
+ * demand when the registry is iterated, swept or checked, so those operations see a consistent snapshot of each
+ * segment and are safe to call while workers are still registering values.  Segments of threads which have
+ * terminated are discarded once they have been cleared.
+ *
+ * Each segment also holds the statistics counts of the values registered, closed and removed by its thread, which
+ * are updated under the lock of the segment and merged when the statistics of this registry are read.
+ *
+ * @author Michael Lavelle
+ */
+public class ConcurrentAutogradValueRegistry implements AutogradValueRegistry {
+
+    private final String name;
+    private final RegistryStatistics statistics;
+    private final List<Segment> segments;
+    private final ThreadLocal<Segment> segment;
+
+    public static AutogradValueRegistry create(String name) {
+        ConcurrentAutogradValueRegistry registry = new ConcurrentAutogradValueRegistry(name);
+        AutogradValueRegistries.add(registry);
+        return registry;
+    }
+
+    public ConcurrentAutogradValueRegistry(String name) {
+        this.name = name;
+        this.statistics = new RegistryStatistics(name);
+        this.segments = new CopyOnWriteArrayList<>();
+        this.segment = new ThreadLocal<>();
+    }
+
+    private Segment createSegment() {
+        Segment created = new Segment(statistics, Thread.currentThread());
+        segments.add(created);
+        statistics.add(created);
+        segment.set(created);
+        return created;
+    }
+
+    @Override
+    public RegistryStatistics statistics() {
+        return statistics;
+    }
+
+    @Override
+    public void registerAutogradValue(AutogradValue<?, ?, ?> autogradValue) {
+        Segment local = segment.get();
+        if (local == null) {
+            local = createSegment();
+        }
+        synchronized (local) {
+            local.values.add(autogradValue);
+            local.registered(autogradValue.context(), autogradValue.isClosed(),
+                    autogradValue.properties().isUncloseable());
+        }
+    }
+
+    @Override
+    public void notifyClosed(AutogradValue<?, ?, ?> autogradValue, boolean closed) {
+        Segment local = segment.get();
+        if (local == null) {
+            // Threads which only close values, eg. sweeps, are counted by the stripes of the statistics.
+            statistics.closed(autogradValue.context(), closed, autogradValue.properties().isUncloseable());
+            return;
+        }
+        synchronized (local) {
+            local.closed(autogradValue.context(), closed, autogradValue.properties().isUncloseable());
+        }
+    }
+
+    @Override
+    public void notifyUncloseable(AutogradValue<?, ?, ?> autogradValue, boolean uncloseable) {
+        Segment local = segment.get();
+        if (local == null) {
+            statistics.uncloseable(autogradValue.context(), autogradValue.isClosed(), uncloseable);
+            return;
+        }
+        synchronized (local) {
+            local.uncloseable(autogradValue.context(), autogradValue.isClosed(), uncloseable);
+        }
+    }
+
+    /**
+     * @return The number of values currently registered, across all segments.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                size += s.values.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return The number of segments, ie. the number of threads which have registered values and whose segments
+     * have not yet been discarded.
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public boolean allClosedLocal() {
+        for (Segment s : segments) {
+            synchronized (s) {
+                for (AutogradValue<?, ?, ?> autogradValue : s.values) {
+                    if (!autogradValue.isClosed()) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void closeLocal() {
+        RegistrySweepEvent event = new RegistrySweepEvent();
+        event.begin();
+        int closed = 0;
+        // Close outside of the segment locks, as closing may notify this registry.
+        for (AutogradValue<?, ?, ?> b : this) {
+            if (!b.isClosed() && !b.properties().isUncloseable()) {
+                b.close();
+                closed++;
+            }
+        }
+        event.complete("close", name, closed);
+    }
+
+    @Override
+    public void clearLocal() {
+        RegistrySweepEvent event = new RegistrySweepEvent();
+        event.begin();
+        int removed = 0;
+        for (Segment s : segments) {
+            boolean discard;
+            synchronized (s) {
+                int size = s.values.size();
+                s.values.removeIf(value -> {
+                    if (value.isClosed() && !value.properties().isUncloseable()) {
+                        s.removed(value.context(), true, false);
+                        return true;
+                    }
+                    return false;
+                });
+                removed += size - s.values.size();
+                discard = s.values.isEmpty() && s.isOwnerTerminated();
+            }
+            // Discard the counts outside of the segment lock, as reading the statistics takes the segment locks.
+            if (discard && segments.remove(s)) {
+                statistics.discard(s);
+            }
+        }
+        event.complete("clear", name, removed);
+    }
+
+    @Override
+    public void statusLocal(boolean print) {
+        if (!print) {
+            return;
+        }
+        int notYetClosed = 0;
+        int uncloseable = 0;
+        for (AutogradValue<?, ?, ?> b : this) {
+            if (!b.isClosed() && !b.properties().isUncloseable()) {
+                System.out.println(name + ":" + "Not yet closed:" + b.name() + ":" + b.requires_grad());
+                notYetClosed++;
+            } else if (!b.isClosed() && b.properties().isUncloseable()) {
+                uncloseable++;
+            }
+        }
+        System.out.println(name + ":" + "Not yet closed total:" + notYetClosed);
+        System.out.println(name + ":" + "Unclosable total:" + uncloseable);
+    }
+
+    /**
+     * Obtain an iterator over a snapshot of the values registered by all threads.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<AutogradValue<?, ?, ?>> iterator() {
+        List<AutogradValue<?, ?, ?>> values = new ArrayList<>();
+        for (Segment s : segments) {
+            synchronized (s) {
+                values.addAll(s.values);
+            }
+        }
+        return values.iterator();
+    }
+
+    private static class Segment extends RegistryStatistics.Counts {
+
+        private final List<AutogradValue<?, ?, ?>> values;
+        private final WeakReference<Thread> owner;
+
+        Segment(RegistryStatistics statistics, Thread owner) {
+            super(statistics);
+            this.values = new ArrayList<>();
+            this.owner = new WeakReference<>(owner);
+        }
+
+        boolean isOwnerTerminated() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+}
@@ -2,30 +2,58 @@ package org.ml4j.autograd.impl;
 
 import org.ml4j.autograd.AutogradValue;
 import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.jfr.RegistrySweepEvent;
+import org.ml4j.autograd.management.RegistryStatistics;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 public class DefaultAutogradValueRegistry implements AutogradValueRegistry, Iterable<AutogradValue<?, ?, ?>> {
 
     private List<AutogradValue<?, ?, ?>> registry;
-    private static List<DefaultAutogradValueRegistry> registries = new ArrayList<>();
+    private final Set<AutogradValue<?, ?, ?>> members;
     private String name;
+    private final RegistryStatistics statistics;
 
     public static AutogradValueRegistry create(String name) {
         DefaultAutogradValueRegistry registry = new DefaultAutogradValueRegistry(name);
-        registries.add(registry);
+        AutogradValueRegistries.add(registry);
         return registry;
     }
 
     public DefaultAutogradValueRegistry(String name) {
         this.registry = new ArrayList<>();
+        this.members = Collections.newSetFromMap(new IdentityHashMap<>());
         this.name = name;
+        this.statistics = new RegistryStatistics(name);
+    }
+
+    @Override
+    public RegistryStatistics statistics() {
+        return statistics;
+    }
+
+    @Override
+    public synchronized void notifyClosed(AutogradValue<?, ?, ?> autogradValue, boolean closed) {
+        // Only values held by this registry are counted by its statistics
+        if (members.contains(autogradValue)) {
+            statistics.closed(autogradValue.context(), closed, autogradValue.properties().isUncloseable());
+        }
+    }
+
+    @Override
+    public synchronized void notifyUncloseable(AutogradValue<?, ?, ?> autogradValue, boolean uncloseable) {
+        if (members.contains(autogradValue)) {
+            statistics.uncloseable(autogradValue.context(), autogradValue.isClosed(), uncloseable);
+        }
     }
 
     public static boolean allClosed() {
-        for (DefaultAutogradValueRegistry registry : registries) {
+        for (AutogradValueRegistry registry : AutogradValueRegistries.registries()) {
             if (!registry.allClosedLocal()) {
                 return false;
             }
@@ -33,7 +61,8 @@ public class DefaultAutogradValueRegistry implements AutogradValueRegistry, Iter
         return true;
     }
 
-    public boolean allClosedLocal() {
+    @Override
+    public synchronized boolean allClosedLocal() {
         for (AutogradValue<?, ?, ?> autogradValue : registry) {
             if (!autogradValue.isClosed()) {
                 return false;
@@ -43,7 +72,7 @@ public class DefaultAutogradValueRegistry implements AutogradValueRegistry, Iter
     }
 
     public static void status(boolean print) {
-        for (DefaultAutogradValueRegistry registry : registries) {
+        for (AutogradValueRegistry registry : AutogradValueRegistries.registries()) {
             if (print) {
                 System.out.println("-----");
             }
@@ -55,65 +84,85 @@ public class DefaultAutogradValueRegistry implements AutogradValueRegistry, Iter
     }
 
     public static void close() {
-        for (DefaultAutogradValueRegistry registry : registries) {
+        for (AutogradValueRegistry registry : AutogradValueRegistries.registries()) {
             registry.closeLocal();
         }
     }
 
     public static void clear() {
-        for (DefaultAutogradValueRegistry registry : registries) {
+        for (AutogradValueRegistry registry : AutogradValueRegistries.registries()) {
             registry.clearLocal();
         }
     }
 
+    @Override
     public void statusLocal(boolean print) {
+        if (!print) {
+            // Counts are maintained incrementally by the statistics of this registry, so only scan when printing
+            return;
+        }
         int notYetClosed = 0;
         int uncloseable = 0;
 
-        for (AutogradValue<?, ?, ?> b : registry) {
+        for (AutogradValue<?, ?, ?> b : snapshot()) {
             if (!b.isClosed() && !b.properties().isUncloseable()) {
-                if (print) {
-                    System.out.println(name + ":" + "Not yet closed:" + b.name() + ":" + b.requires_grad());
-                }
+                System.out.println(name + ":" + "Not yet closed:" + b.name() + ":" + b.requires_grad());
                 notYetClosed++;
             } else if (!b.isClosed() && b.properties().isUncloseable()) {
                 System.out.println(name + ":" + "Uncloseable:" + b.name() + ":" + b.requires_grad());
                 uncloseable++;
             }
         }
-        if (print) {
-            System.out.println(name + ":" + "Not yet closed total:" + notYetClosed);
-        }
-        if (print) {
-            System.out.println(name + ":" + "Unclosable total:" + uncloseable);
-        }
+        System.out.println(name + ":" + "Not yet closed total:" + notYetClosed);
+        System.out.println(name + ":" + "Unclosable total:" + uncloseable);
     }
 
-    public void clearLocal() {
-        List<AutogradValue<?, ?, ?>> toClose = new ArrayList<>();
-        for (AutogradValue<?, ?, ?> value : registry) {
+    @Override
+    public synchronized void clearLocal() {
+        RegistrySweepEvent event = new RegistrySweepEvent();
+        event.begin();
+        int size = registry.size();
+        registry.removeIf(value -> {
             if (value.isClosed() && !value.properties().isUncloseable()) {
-                toClose.add(value);
+                members.remove(value);
+                statistics.removed(value.context(), true, false);
+                return true;
             }
-        }
-        registry.removeAll(toClose);
+            return false;
+        });
+        event.complete("clear", name, size - registry.size());
     }
 
+    @Override
     public void closeLocal() {
-        for (AutogradValue<?, ?, ?> b : registry) {
+        RegistrySweepEvent event = new RegistrySweepEvent();
+        event.begin();
+        int closed = 0;
+        // Close a snapshot outside of the lock, so that values registered concurrently do not fail the sweep.
+        for (AutogradValue<?, ?, ?> b : snapshot()) {
             if (!b.isClosed() && !b.properties().isUncloseable()) {
                 b.close();
+                closed++;
             }
         }
+        event.complete("close", name, closed);
     }
 
     @Override
-    public void registerAutogradValue(AutogradValue<?, ?, ?> autogradValue) {
+    public synchronized void registerAutogradValue(AutogradValue<?, ?, ?> autogradValue) {
+        if (!members.add(autogradValue)) {
+            return;
+        }
         registry.add(autogradValue);
+        statistics.registered(autogradValue.context(), autogradValue.isClosed(), autogradValue.properties().isUncloseable());
     }
 
     @Override
     public Iterator<AutogradValue<?, ?, ?>> iterator() {
         return registry.iterator();
     }
+
+    private synchronized List<AutogradValue<?, ?, ?>> snapshot() {
+        return new ArrayList<>(registry);
+    }
 }
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.GradMode;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * An immutable plan for a training step whose computation graph has the same structure on every iteration,
+ * obtained by tracing one eager execution of the step function, eg.
+ *
+ * <pre>
+ * ExecutionPlan&lt;V, D, C&gt; plan = ExecutionPlan.trace(leaves -&gt; model.forward(leaves.get(0)), List.of(input));
+ * for (...) {
+ *     V loss = plan.step(List.of(nextInput));
+ * }
+ * </pre>
+ *
+ * The operators applied by AutogradValueImpls during tracing are compiled into a forward schedule and a backward
+ * schedule over a flat array of slots.  Replaying the plan applies the forward operators directly to the data of the
+ * new leaves, without creating Nodes, links or backward closures, and then applies the recorded backward functions
+ * in reverse, under no_grad, accumulating the gradients of the leaves and of any values captured by the step
+ * function which require grad (eg. parameters).
+ *
+ * A plan is only replayed if the leaves have the same types, contexts and requires_grad flags as when traced;
+ * otherwise, or if the step function modified data in place while being traced, the step function is executed
+ * eagerly.  As with any tracing, control flow within the step function which depends on the data is not captured.
+ *
+ * @param <V> The type of AutogradValue.
+ * @param <D> The type of data.
+ * @param <C> The type of context.
+ *
+ * @author Michael Lavelle
+ */
+public class ExecutionPlan<V extends AutogradValue<V, D, C>, D, C> {
+
+    private static final byte LEAF = 0;
+    private static final byte CAPTURED = 1;
+    private static final byte CONSTANT = 2;
+    private static final byte UNARY = 3;
+    private static final byte BINARY = 4;
+
+    private final Function<List<V>, V> step;
+    private final boolean replayable;
+    private final int leafCount;
+    private final int size;
+    private final Class<?>[] leafClasses;
+
+    private final byte[] kinds;
+    private final int[] left;
+    private final int[] right;
+    private final Object[] contexts;
+    private final boolean[] requiresGrad;
+    private final Object[] captured;
+    private final Object[] forwards;
+    private final Object[] backLefts;
+    private final Object[] backRights;
+    private final int output;
+    private final String outputName;
+    private final int[] forwardSchedule;
+    private final int[] backwardSchedule;
+
+    /**
+     * Trace one eager execution of a step function.
+     *
+     * @param step The step function, applied to the leaves and returning the output, eg. a loss.
+     * @param leaves The leaves for the traced execution.
+     * @param <V> The type of AutogradValue.
+     * @param <D> The type of data.
+     * @param <C> The type of context.
+     * @return The ExecutionPlan.
+     */
+    public static <V extends AutogradValue<V, D, C>, D, C> ExecutionPlan<V, D, C> trace(Function<List<V>, V> step, List<V> leaves) {
+        if (leaves.isEmpty()) {
+            throw new IllegalArgumentException("At least one leaf is required");
+        }
+        ExecutionTrace<V, D, C> trace = new ExecutionTrace<>();
+        V result;
+        trace.start();
+        try {
+            result = step.apply(leaves);
+        } finally {
+            trace.stop();
+        }
+        return new ExecutionPlan<>(step, leaves, trace, result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ExecutionPlan(Function<List<V>, V> step, List<V> leaves, ExecutionTrace<V, D, C> trace, V result) {
+        this.step = step;
+        this.leafCount = leaves.size();
+        this.leafClasses = new Class<?>[leafCount];
+        int capacity = leafCount + 2 * trace.steps().size() + 1;
+        this.kinds = new byte[capacity];
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.contexts = new Object[capacity];
+        this.requiresGrad = new boolean[capacity];
+        this.captured = new Object[capacity];
+        this.forwards = new Object[capacity];
+        this.backLefts = new Object[capacity];
+        this.backRights = new Object[capacity];
+        this.outputName = result.name();
+
+        Map<V, Integer> slots = new IdentityHashMap<>();
+        int count = 0;
+        for (V leaf : leaves) {
+            leafClasses[count] = leaf.getClass();
+            slots.putIfAbsent(leaf, count);
+            describe(count++, LEAF, leaf);
+        }
+        for (ExecutionTrace.Step<V, D, C> recorded : trace.steps()) {
+            int l = slots.getOrDefault(recorded.left, -1);
+            if (l < 0) {
+                l = count++;
+                capture(l, recorded.left);
+                slots.put(recorded.left, l);
+            }
+            int r = -1;
+            if (recorded.right != null) {
+                r = slots.getOrDefault(recorded.right, -1);
+                if (r < 0) {
+                    r = count++;
+                    capture(r, recorded.right);
+                    slots.put(recorded.right, r);
+                }
+            }
+            int slot = count++;
+            describe(slot, recorded.right == null ? UNARY : BINARY, recorded.result);
+            left[slot] = l;
+            right[slot] = r;
+            forwards[slot] = recorded.right == null ? recorded.unary : recorded.binary;
+            backLefts[slot] = recorded.right == null ? recorded.backUnary : recorded.backLeft;
+            backRights[slot] = recorded.backRight;
+            slots.put(recorded.result, slot);
+        }
+        this.size = count;
+        Integer resultSlot = slots.get(result);
+        this.output = resultSlot == null ? -1 : resultSlot;
+        this.replayable = !trace.isInvalid() && output >= 0 && kinds[output] != CAPTURED && kinds[output] != CONSTANT;
+
+        // Only the slots on which the output depends are scheduled.
+        boolean[] reachable = new boolean[size];
+        int scheduled = 0;
+        if (output >= 0) {
+            reachable[output] = true;
+            for (int i = output; i >= 0; i--) {
+                if (reachable[i] && (kinds[i] == UNARY || kinds[i] == BINARY)) {
+                    scheduled++;
+                    reachable[left[i]] = true;
+                    if (right[i] >= 0) {
+                        reachable[right[i]] = true;
+                    }
+                }
+            }
+        }
+        int[] forward = new int[scheduled];
+        int[] backward = new int[scheduled];
+        int forwardCount = 0;
+        int backwardCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (reachable[i] && (kinds[i] == UNARY || kinds[i] == BINARY)) {
+                forward[forwardCount++] = i;
+            }
+        }
+        for (int i = forwardCount - 1; i >= 0; i--) {
+            if (requiresGrad[forward[i]]) {
+                backward[backwardCount++] = forward[i];
+            }
+        }
+        this.forwardSchedule = forward;
+        this.backwardSchedule = Arrays.copyOf(backward, backwardCount);
+    }
+
+    private void describe(int slot, byte kind, V value) {
+        kinds[slot] = kind;
+        contexts[slot] = value.context();
+        requiresGrad[slot] = value.requires_grad();
+        left[slot] = -1;
+        right[slot] = -1;
+    }
+
+    private void capture(int slot, V value) {
+        if (value.requires_grad()) {
+            // Values captured by the step function which require grad, eg. parameters, are read and accumulated on replay.
+            describe(slot, CAPTURED, value);
+            captured[slot] = value;
+        } else {
+            describe(slot, CONSTANT, value);
+            captured[slot] = value.data().get();
+        }
+    }
+
+    public boolean isReplayable() {
+        return replayable;
+    }
+
+    /**
+     * Determine whether this plan can be replayed for the specified leaves.
+     *
+     * @param leaves The leaves.
+     * @return Whether the leaves match those with which this plan was traced.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean matches(List<V> leaves) {
+        if (!replayable || leaves.size() != leafCount) {
+            return false;
+        }
+        for (int i = 0; i < leafCount; i++) {
+            V leaf = leaves.get(i);
+            if (leaf.getClass() != leafClasses[i] || !(leaf instanceof AutogradValueImpl) || leaf.isClosed()
+                    || leaf.requires_grad() != requiresGrad[i] || !Objects.equals(leaf.context(), contexts[i])) {
+                return false;
+            }
+        }
+        for (int i = leafCount; i < size; i++) {
+            if (kinds[i] == CAPTURED && (((V) captured[i]).isClosed() || !((V) captured[i]).requires_grad())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply the step function to the leaves, replaying this plan if possible.
+     *
+     * @param leaves The leaves.
+     * @return The output, which is not part of a computation graph if this plan was replayed.
+     */
+    @SuppressWarnings("try")
+    public V forward(List<V> leaves) {
+        if (!matches(leaves)) {
+            return step.apply(leaves);
+        }
+        Object[] data = replayForward(leaves);
+        try (GradMode.Guard guard = GradMode.no_grad()) {
+            return wrap(impl(leaves.get(0)), data, output).name_(outputName);
+        }
+    }
+
+    /**
+     * Apply the step function to the leaves and back propagate from its output, replaying this plan if possible.
+     *
+     * Gradients are accumulated by the leaves, and by any values captured by the step function which require grad,
+     * as they would be by an eager backward pass.
+     *
+     * @param leaves The leaves.
+     * @return The output.
+     */
+    @SuppressWarnings({"unchecked", "try"})
+    public V step(List<V> leaves) {
+        if (!matches(leaves)) {
+            V result = step.apply(leaves);
+            result.backward();
+            return result;
+        }
+        Object[] data = replayForward(leaves);
+        AutogradValueImpl<V, D, C> creator = impl(leaves.get(0));
+        Object[] values = new Object[size];
+        Object[] grads = new Object[size];
+        V result;
+        try (GradMode.Guard guard = GradMode.no_grad()) {
+            result = wrap(creator, data, output).name_(outputName);
+            values[output] = result;
+            AutogradValueImpl<V, D, C> resultImpl = impl(result);
+            grads[output] = creator.createAutogradValue(() -> resultImpl.identity(resultImpl.multiplicativeIdentity(), 1f),
+                    new AutogradValueProperties<C>().setContext((C) contexts[output])
+                            .setRegistry(creator.properties().getRegistry()).setView(false).setName("backwardStart"));
+            for (int slot : backwardSchedule) {
+                V g = (V) grads[slot];
+                if (g == null) {
+                    continue;
+                }
+                int l = left[slot];
+                int r = right[slot];
+                if (kinds[slot] == UNARY) {
+                    if (requiresGrad[l]) {
+                        V operand = value(creator, data, values, l);
+                        V contribution = ((BiFunction<V, V, V>) backLefts[slot]).apply(g, operand);
+                        accumulate(grads, l, impl(operand).adapt(g.data().get(), contribution, operand));
+                    }
+                } else {
+                    V leftOperand = value(creator, data, values, l);
+                    Pair<V, V> pair = new ImmutablePair<>(leftOperand, value(creator, data, values, r));
+                    if (requiresGrad[l]) {
+                        V contribution = ((BiFunction<V, Pair<V, V>, V>) backLefts[slot]).apply(g, pair);
+                        accumulate(grads, l, impl(leftOperand).adapt(g.data().get(), contribution, leftOperand));
+                    }
+                    if (requiresGrad[r]) {
+                        V contribution = ((BiFunction<V, Pair<V, V>, V>) backRights[slot]).apply(g, pair);
+                        accumulate(grads, r, impl(leftOperand).adapt(g.data().get(), contribution, pair.getRight()));
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (grads[i] != null && requiresGrad[i] && (kinds[i] == LEAF || kinds[i] == CAPTURED)) {
+                impl(kinds[i] == LEAF ? leaves.get(i) : (V) captured[i]).addToGrad((V) grads[i]);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object[] replayForward(List<V> leaves) {
+        Object[] data = new Object[size];
+        for (int i = 0; i < leafCount; i++) {
+            data[i] = leaves.get(i).data().get();
+        }
+        for (int i = leafCount; i < size; i++) {
+            if (kinds[i] == CAPTURED) {
+                data[i] = ((V) captured[i]).data().get();
+            } else if (kinds[i] == CONSTANT) {
+                data[i] = captured[i];
+            }
+        }
+        for (int slot : forwardSchedule) {
+            if (kinds[slot] == UNARY) {
+                data[slot] = ((UnaryOperator<D>) forwards[slot]).apply((D) data[left[slot]]);
+            } else {
+                data[slot] = ((BinaryOperator<D>) forwards[slot]).apply((D) data[left[slot]], (D) data[right[slot]]);
+            }
+        }
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(AutogradValueImpl<V, D, C> creator, Object[] data, Object[] values, int slot) {
+        if (values[slot] == null) {
+            values[slot] = wrap(creator, data, slot);
+        }
+        return (V) values[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V wrap(AutogradValueImpl<V, D, C> creator, Object[] data, int slot) {
+        D slotData = (D) data[slot];
+        // The data of leaf, captured and constant slots is owned by the values from which it was obtained
+        boolean view = kinds[slot] != UNARY && kinds[slot] != BINARY;
+        return creator.createAutogradValue(() -> slotData, new AutogradValueProperties<C>()
+                .setContext((C) contexts[slot]).setRegistry(creator.properties().getRegistry()).setView(view).setName("replay"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void accumulate(Object[] grads, int slot, V contribution) {
+        grads[slot] = grads[slot] == null ? contribution : ((V) grads[slot]).add(contribution);
+    }
+
+    @SuppressWarnings("unchecked")
+    private AutogradValueImpl<V, D, C> impl(V value) {
+        return (AutogradValueImpl<V, D, C>) value.self();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.ml4j.autograd.AutogradValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * Records the operators applied by AutogradValueImpls on the current thread while an ExecutionPlan is being traced.
+ *
+ * @param <V> The type of AutogradValue.
+ * @param <D> The type of data.
+ * @param <C> The type of context.
+ *
+ * @author Michael Lavelle
+ */
+class ExecutionTrace<V extends AutogradValue<V, D, C>, D, C> {
+
+    private static final ThreadLocal<ExecutionTrace<?, ?, ?>> current = new ThreadLocal<>();
+
+    private final List<Step<V, D, C>> steps = new ArrayList<>();
+    private boolean invalid;
+
+    @SuppressWarnings("unchecked")
+    static <V extends AutogradValue<V, D, C>, D, C> ExecutionTrace<V, D, C> current() {
+        return (ExecutionTrace<V, D, C>) current.get();
+    }
+
+    /**
+     * Mark the trace on the current thread, if any, as not replayable, eg. because data has been modified in place.
+     */
+    static void invalidateCurrent() {
+        ExecutionTrace<?, ?, ?> trace = current.get();
+        if (trace != null) {
+            trace.invalid = true;
+        }
+    }
+
+    void start() {
+        if (current.get() != null) {
+            throw new IllegalStateException("An ExecutionPlan is already being traced on this thread");
+        }
+        current.set(this);
+    }
+
+    void stop() {
+        current.remove();
+    }
+
+    List<Step<V, D, C>> steps() {
+        return steps;
+    }
+
+    boolean isInvalid() {
+        return invalid;
+    }
+
+    void recordUnary(V operand, UnaryOperator<D> forward, BiFunction<V, V, V> backward, V result) {
+        steps.add(new Step<>(operand, null, forward, null, backward, null, null, result));
+    }
+
+    void recordBinary(V left, V right, BinaryOperator<D> forward, BiFunction<V, Pair<V, V>, V> backLeft,
+                      BiFunction<V, Pair<V, V>, V> backRight, V result) {
+        steps.add(new Step<>(left, right, null, forward, null, backLeft, backRight, result));
+    }
+
+    static class Step<V, D, C> {
+
+        final V left;
+        final V right;
+        final UnaryOperator<D> unary;
+        final BinaryOperator<D> binary;
+        final BiFunction<V, V, V> backUnary;
+        final BiFunction<V, Pair<V, V>, V> backLeft;
+        final BiFunction<V, Pair<V, V>, V> backRight;
+        final V result;
+
+        Step(V left, V right, UnaryOperator<D> unary, BinaryOperator<D> binary, BiFunction<V, V, V> backUnary,
+             BiFunction<V, Pair<V, V>, V> backLeft, BiFunction<V, Pair<V, V>, V> backRight, V result) {
+            this.left = left;
+            this.right = right;
+            this.unary = unary;
+            this.binary = binary;
+            this.backUnary = backUnary;
+            this.backLeft = backLeft;
+            this.backRight = backRight;
+            this.result = result;
+        }
+    }
+}
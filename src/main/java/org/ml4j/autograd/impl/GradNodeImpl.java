@@ -15,15 +15,30 @@
 package org.ml4j.autograd.impl;
 
 import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.jfr.GradientAccumulationEvent;
 import org.ml4j.autograd.node.GradNode;
 
-import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
  * Default implementation of GradNode.
+ *
+ * Gradients are accumulated without locking: a thread adding a delta merges it with the accumulated value, and
+ * publishes the merged value with a compareAndSet against the slot it merged with, retrying against any value
+ * published by another thread in the meantime.  Each published value is held by a new slot, so a compareAndSet can
+ * not succeed against a value that has since been accumulated into in place.  The accumulated value is never
+ * emptied while merging, so a concurrent getValue() observes either the value before or after the merge.
+ *
+ * Values created by this Node's add function which have not yet been observed through getValue() are owned by this
+ * Node, and can be accumulated into in place.  To do so, a thread claims the slot by replacing it with a marker for
+ * the duration of the in-place addition, and a concurrent getValue() or add waits for the addition to complete.
+ *
+ * A value created by this Node's add function can also be zeroed in place, after which this Node takes back
+ * exclusive ownership of it, so that the same gradient value is reused as the accumulator of each backward pass.
  * 
  * @author Michael Lavelle
  *
@@ -31,50 +46,128 @@ import java.util.function.Supplier;
  */
 public class GradNodeImpl<V extends AutogradValue<V, ?, ?>> extends NodeImpl<V> implements GradNode<V> {
 
+    // Held by the accumulated reference while a thread accumulates into the value in place
+    private static final Slot<?> MERGING = new Slot<>(null, false);
+
     private Supplier<Optional<V>> nativeGradientSupplier;
     private boolean disableNativeGradient;
+    private final AtomicReference<Slot<V>> accumulated;
+    private volatile V created;
 
     public GradNodeImpl(Supplier<V> value, Supplier<Optional<V>> nativeGradientSupplier) {
         super(value);
         this.nativeGradientSupplier = nativeGradientSupplier;
+        this.accumulated = new AtomicReference<>(value == null ? null : slot(value.get(), false));
+        this.value = this::observe;
+    }
+
+    private static <V> Slot<V> slot(V value, boolean owned) {
+        return value == null ? null : new Slot<>(value, owned);
+    }
+
+    private Slot<V> current() {
+        Slot<V> current = accumulated.get();
+        while (current == MERGING) {
+            Thread.onSpinWait();
+            current = accumulated.get();
+        }
+        return current;
+    }
+
+    private V observe() {
+        while (true) {
+            Slot<V> current = current();
+            if (current == null) {
+                return null;
+            }
+            // Once observed, the value may be shared, so may no longer be accumulated into in place.
+            if (!current.owned || accumulated.compareAndSet(current, slot(current.value, false))) {
+                return current.value;
+            }
+        }
     }
 
     @Override
     public GradNode<V> setValue(Supplier<V> value) {
-        if (this.prev == null) {
-            this.prev = new ArrayList<>();
-        }
-        V val = value.get();
-        if (this.value != null && this.value.get() != null) {
-            throw new IllegalStateException();
+        if (!accumulated.compareAndSet(null, slot(value.get(), false))) {
+            throw new IllegalStateException("A gradient has already been set for this GradNode");
         }
-        this.value = () -> val;
         return this;
     }
 
     @Override
-    public synchronized GradNode<V> add_(V value, BinaryOperator<V> addFunction) {
-        if (this.prev == null) {
-            this.prev = new ArrayList<>();
-        }
-        if (this.value == null) {
-            this.value = () -> value;
-        } else {
-            V v = this.value.get();
-            if (v == null) {
-                this.value = () -> value;
+    public GradNode<V> add_(V value, BinaryOperator<V> addFunction) {
+        return add_(value, addFunction, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public GradNode<V> add_(V value, BinaryOperator<V> addFunction, BinaryOperator<V> inPlaceAddFunction) {
+        GradientAccumulationEvent event = GradientAccumulationEvent.start();
+        while (true) {
+            Slot<V> current = current();
+            if (current == null) {
+                if (accumulated.compareAndSet(null, slot(value, false))) {
+                    if (event != null) {
+                        event.complete(value.name(), value.context(), 1);
+                    }
+                    return this;
+                }
+                // Another thread has published a value since we looked, so merge with that instead.
+                continue;
+            }
+            if (!this.prev.isEmpty() || wrapBackward != null) {
+                throw new IllegalStateException("Gradients can only be merged by the GradNode of a leaf value");
+            }
+            V res;
+            if (current.owned && canAccumulateInPlace(current.value, inPlaceAddFunction)) {
+                if (!accumulated.compareAndSet(current, (Slot<V>) MERGING)) {
+                    continue;
+                }
+                try {
+                    res = inPlaceAddFunction.apply(current.value, value);
+                } catch (RuntimeException | Error e) {
+                    accumulated.set(current);
+                    throw e;
+                }
+                accumulated.set(slot(res, true));
             } else {
-                // New value
-                V res = addFunction.apply(v, value);
-                this.value = () -> res;
-                if (!this.prev.isEmpty() || wrapBackward != null) {
-                    throw new IllegalStateException();
+                // New value, which is owned by this Node until observed
+                res = addFunction.apply(current.value, value);
+                if (!accumulated.compareAndSet(current, slot(res, true))) {
+                    continue;
                 }
             }
+            created = res;
+            if (event != null) {
+                event.complete(value.name(), value.context(), 2);
+            }
+            return this;
         }
+    }
+
+    private boolean canAccumulateInPlace(V target, BinaryOperator<V> inPlaceAddFunction) {
+        // In-place accumulation would bypass the computation graph of a gradient that requires grad.
+        return inPlaceAddFunction != null && !target.requires_grad();
+    }
+
+    @Override
+    public GradNode<V> clear() {
+        accumulated.set(null);
+        created = null;
         return this;
     }
 
+    @Override
+    public GradNode<V> zero_(Predicate<V> inPlaceZeroFunction) {
+        Slot<V> current = current();
+        if (current != null && current.value == created && !current.value.requires_grad()
+                && inPlaceZeroFunction.test(current.value)) {
+            accumulated.set(slot(current.value, true));
+            return this;
+        }
+        return clear();
+    }
 
     @Override
     public Optional<V> native_grad() {
@@ -96,4 +189,18 @@ public class GradNodeImpl<V extends AutogradValue<V, ?, ?>> extends NodeImpl<V>
     public void setDisableNativeGradient(boolean disableNativeGradient) {
         this.disableNativeGradient = disableNativeGradient;
     }
+
+    /**
+     * Holds the accumulated value, and whether it is owned by this Node.
+     */
+    private static final class Slot<V> {
+
+        private final V value;
+        private final boolean owned;
+
+        Slot(V value, boolean owned) {
+            this.value = value;
+            this.owned = owned;
+        }
+    }
 }
@@ -104,4 +104,16 @@ public class GradNodeWrapper<S, T> implements GradNode<T> {
         gradNode.add_(reverseMapper.apply(delta), (f, s) -> reverseMapper.apply(addFunction.apply(mapper.apply(f), mapper.apply(s))));
         return this;
     }
+
+    @Override
+    public GradNode<T> add_(T delta, BinaryOperator<T> addFunction, BinaryOperator<T> inPlaceAddFunction) {
+        gradNode.add_(reverseMapper.apply(delta), (f, s) -> reverseMapper.apply(addFunction.apply(mapper.apply(f), mapper.apply(s))), (f, s) -> reverseMapper.apply(inPlaceAddFunction.apply(mapper.apply(f), mapper.apply(s))));
+        return this;
+    }
+
+    @Override
+    public GradNode<T> clear() {
+        gradNode.clear();
+        return this;
+    }
 }
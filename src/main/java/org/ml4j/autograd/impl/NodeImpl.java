@@ -16,11 +16,17 @@ package org.ml4j.autograd.impl;
 
 import org.ml4j.autograd.AutogradValue;
 import org.ml4j.autograd.BackwardConfig;
+import org.ml4j.autograd.jfr.BackwardEvent;
 import org.ml4j.autograd.node.Node;
 import org.ml4j.autograd.node.ValueNode;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
@@ -40,11 +46,15 @@ public class NodeImpl<V extends AutogradValue<V, ?, ?>> implements ValueNode<V>
     protected boolean closing;
 
     protected BiConsumer<V, BackwardConfig> wrapBackward;
+    protected volatile List<Node<?>> reverseTopologicalOrder;
+    // Whether this Node has been included in a cached reverse topological ordering, so that a mutation of the
+    // graph at this Node must invalidate the orderings cached by the Nodes from which it is reachable.
+    protected volatile boolean ordered;
 
     public NodeImpl(Supplier<V> value) {
         this.value = value;
         this.prev = new ArrayList<>();
-        this.next = new ArrayList<>();
+        this.next = new WeakNodeList();
     }
 
     public NodeImpl(Supplier<V> value, List<Node<?>> children, List<Node<?>> next) {
@@ -72,7 +82,12 @@ public class NodeImpl<V extends AutogradValue<V, ?, ?>> implements ValueNode<V>
     @Override
     public void backward(BackwardConfig config) {
         if (wrapBackward != null) {
-            wrapBackward.accept(this.getValue().get(), config);
+            BackwardEvent event = BackwardEvent.start();
+            V v = this.getValue().get();
+            wrapBackward.accept(v, config);
+            if (event != null) {
+                event.complete(v.name(), v.context(), prev.size());
+            }
         }
     }
 
@@ -95,6 +110,23 @@ public class NodeImpl<V extends AutogradValue<V, ?, ?>> implements ValueNode<V>
         return closed;
     }
 
+    /**
+     * Detach this Node from the computation graph, removing it from the Nodes it consumes and dropping its references
+     * to other Nodes and to its backward function, so that a closed value does not retain the graph it belonged to.
+     */
+    public void detach() {
+        graphMutated();
+        for (Node<?> child : prev) {
+            List<Node<?>> childNext = child.next();
+            synchronized (childNext) {
+                childNext.remove(this);
+            }
+        }
+        this.prev = Collections.emptyList();
+        this.next = new WeakNodeList();
+        this.wrapBackward = null;
+    }
+
     public boolean isClosing() {
         return closing;
     }
@@ -127,4 +159,65 @@ public class NodeImpl<V extends AutogradValue<V, ?, ?>> implements ValueNode<V>
     public BiConsumer<V, BackwardConfig> getBackwardFunction() {
         return wrapBackward;
     }
+
+    /**
+     * Record that the computation graph has been mutated at this Node, eg. by this Node being detached or replaced,
+     * invalidating the cached reverse topological orderings of this Node and of the Nodes from which it is reachable.
+     *
+     * Only Nodes included in a cached ordering are visited, so mutating a graph for which no ordering has been cached
+     * does not traverse it, and orderings cached for unrelated graphs remain valid.
+     */
+    public void graphMutated() {
+        if (!ordered) {
+            return;
+        }
+        Set<Node<?>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node<?>> pending = new ArrayDeque<>();
+        pending.push(this);
+        visited.add(this);
+        while (!pending.isEmpty()) {
+            Node<?> node = pending.pop();
+            if (node instanceof NodeImpl) {
+                NodeImpl<?> nodeImpl = (NodeImpl<?>) node;
+                if (!nodeImpl.ordered) {
+                    // Not part of any cached ordering, so neither are the Nodes consuming it
+                    continue;
+                }
+                nodeImpl.reverseTopologicalOrder = null;
+            }
+            List<Node<?>> consumers = node.next();
+            List<Node<?>> snapshot;
+            synchronized (consumers) {
+                snapshot = new ArrayList<>(consumers);
+            }
+            for (Node<?> consumer : snapshot) {
+                // Consumers are held weakly, so may have been collected
+                if (consumer != null && visited.add(consumer)) {
+                    pending.push(consumer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtain the cached reverse topological ordering, unless the graph it was computed from has since been mutated.
+     *
+     * @return The cached reverse topological ordering, or null if none is cached or it may be stale.
+     */
+    @Override
+    public List<Node<?>> getReverseTopologicalOrder() {
+        return reverseTopologicalOrder;
+    }
+
+    @Override
+    public void setReverseTopologicalOrder(List<Node<?>> reverseTopologicalOrder) {
+        if (reverseTopologicalOrder != null) {
+            for (Node<?> node : reverseTopologicalOrder) {
+                if (node instanceof NodeImpl) {
+                    ((NodeImpl<?>) node).ordered = true;
+                }
+            }
+        }
+        this.reverseTopologicalOrder = reverseTopologicalOrder;
+    }
 }
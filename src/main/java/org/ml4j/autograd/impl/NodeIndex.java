@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.ml4j.autograd.node.Node;
+
+/**
+ * Assigns dense integer ids (0, 1, 2, ...) to Nodes in the order in which they are first added,
+ * using an identity-based open addressing table so that no boxing or per-entry allocation is required.
+ *
+ * @author Michael Lavelle
+ */
+public class NodeIndex {
+
+    private Node<?>[] keys;
+    private int[] ids;
+    private Node<?>[] nodes;
+    private int size;
+
+    public NodeIndex(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new Node<?>[capacity];
+        this.ids = new int[capacity];
+        this.nodes = new Node<?>[Math.max(expectedSize, 16)];
+    }
+
+    /**
+     * Obtain the id of the specified Node, adding the Node to this index if not already present.
+     *
+     * @param node The Node.
+     * @return The dense id of the Node.
+     */
+    public int add(Node<?> node) {
+        int mask = keys.length - 1;
+        int slot = hash(node) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot] == node) {
+                return ids[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = size++;
+        keys[slot] = node;
+        ids[slot] = id;
+        if (id == nodes.length) {
+            Node<?>[] grown = new Node<?>[nodes.length * 2];
+            System.arraycopy(nodes, 0, grown, 0, nodes.length);
+            nodes = grown;
+        }
+        nodes[id] = node;
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Obtain the id of the specified Node.
+     *
+     * @param node The Node.
+     * @return The dense id of the Node, or -1 if the Node has not been added to this index.
+     */
+    public int indexOf(Node<?> node) {
+        int mask = keys.length - 1;
+        int slot = hash(node) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot] == node) {
+                return ids[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Obtain the Node with the specified id.
+     *
+     * @param id The dense id.
+     * @return The Node.
+     */
+    public Node<?> get(int id) {
+        return nodes[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        Node<?>[] oldKeys = keys;
+        int[] oldIds = ids;
+        keys = new Node<?>[oldKeys.length * 2];
+        ids = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private static int hash(Node<?> node) {
+        int h = System.identityHashCode(node);
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.ml4j.autograd.BackwardConfig;
+import org.ml4j.autograd.node.Node;
+
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Executes a backward pass on a ForkJoinPool, running each Node as soon as all of the Nodes that
+ * consume it have passed their gradients back to it, so that independent branches of the computation
+ * graph are back propagated concurrently.
+ *
+ * @author Michael Lavelle
+ */
+public class ParallelBackwardExecutor {
+
+    private ParallelBackwardExecutor() {
+    }
+
+    /**
+     * Back propagate through the Nodes of a computation graph.
+     *
+     * @param reverseTopologicalOrder The Nodes of the graph in reverse topological order, starting with the root.
+     * @param config The BackwardConfig that controls the behaviour of back propagation.
+     */
+    public static void backward(List<Node<?>> reverseTopologicalOrder, BackwardConfig config) {
+        int size = reverseTopologicalOrder.size();
+        if (size == 0) {
+            return;
+        }
+        NodeIndex index = new NodeIndex(size);
+        for (Node<?> node : reverseTopologicalOrder) {
+            index.add(node);
+        }
+
+        // Count, for each Node, the number of consumers within this graph that have yet to pass back a gradient.
+        int[] consumers = new int[size];
+        for (Node<?> node : reverseTopologicalOrder) {
+            for (Node<?> child : node.prev()) {
+                int id = index.indexOf(child);
+                if (id >= 0) {
+                    consumers[id]++;
+                }
+            }
+        }
+        AtomicIntegerArray pending = new AtomicIntegerArray(consumers);
+
+        config.fork_join_pool().invoke(new BackwardTask(null, reverseTopologicalOrder.get(0), index, pending, config));
+    }
+
+    private static class BackwardTask extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Node<?> node;
+        private final NodeIndex index;
+        private final AtomicIntegerArray pending;
+        private final BackwardConfig config;
+
+        BackwardTask(BackwardTask parent, Node<?> node, NodeIndex index, AtomicIntegerArray pending, BackwardConfig config) {
+            super(parent);
+            this.node = node;
+            this.index = index;
+            this.pending = pending;
+            this.config = config;
+        }
+
+        @Override
+        public void compute() {
+            node.backward(config);
+            for (Node<?> child : node.prev()) {
+                int id = index.indexOf(child);
+                if (id >= 0 && pending.decrementAndGet(id) == 0) {
+                    // All consumers of the child have now accumulated their gradients into it.
+                    addToPendingCount(1);
+                    new BackwardTask(this, child, index, pending, config).fork();
+                }
+            }
+            tryComplete();
+        }
+    }
+}
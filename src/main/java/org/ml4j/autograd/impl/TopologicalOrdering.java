@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.jfr.TopologicalSortEvent;
+import org.ml4j.autograd.node.Node;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Orders the Nodes of a computation graph for back propagation.
+ *
+ * The graph is traversed depth-first along {@link Node#prev()} using an explicit stack rather than recursion,
+ * so that arbitrarily deep graphs can be ordered without a StackOverflowError.  Nodes are given dense ids
+ * by a {@link NodeIndex} as they are discovered, and visited marks are kept in a BitSet indexed by these ids.
+ *
+ * @author Michael Lavelle
+ */
+public class TopologicalOrdering {
+
+    private TopologicalOrdering() {
+    }
+
+    /**
+     * Obtain the reverse topological ordering of the Nodes reachable from the specified root Node, ie. an ordering
+     * in which each Node appears before all of the Nodes in its prev() list.
+     *
+     * @param root The root Node.
+     * @return An unmodifiable list of Nodes, starting with the root Node.
+     */
+    public static List<Node<?>> reverseTopologicalOrder(Node<?> root) {
+        TopologicalSortEvent event = TopologicalSortEvent.start();
+        NodeIndex index = new NodeIndex(64);
+        BitSet visited = new BitSet();
+        Node<?>[] stack = new Node<?>[64];
+        int[] childPositions = new int[64];
+        Node<?>[] order = new Node<?>[64];
+        int ordered = 0;
+        int depth = 0;
+
+        visited.set(index.add(root));
+        stack[depth++] = root;
+
+        while (depth > 0) {
+            Node<?> node = stack[depth - 1];
+            List<Node<?>> children = node.prev();
+            int position = childPositions[depth - 1];
+            if (children != null && position < children.size()) {
+                childPositions[depth - 1] = position + 1;
+                Node<?> child = children.get(position);
+                int id = index.add(child);
+                if (!visited.get(id)) {
+                    visited.set(id);
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        childPositions = Arrays.copyOf(childPositions, depth * 2);
+                    }
+                    stack[depth] = child;
+                    childPositions[depth] = 0;
+                    depth++;
+                }
+            } else {
+                // All children have been ordered, so this node can be appended to the post-order.
+                if (ordered == order.length) {
+                    order = Arrays.copyOf(order, ordered * 2);
+                }
+                order[ordered++] = node;
+                stack[--depth] = null;
+            }
+        }
+
+        Node<?>[] reversed = new Node<?>[ordered];
+        for (int i = 0; i < ordered; i++) {
+            reversed[i] = order[ordered - 1 - i];
+        }
+        if (event != null) {
+            Object value = root.getValue().get();
+            if (value instanceof AutogradValue) {
+                event.complete(((AutogradValue<?, ?, ?>) value).name(), ((AutogradValue<?, ?, ?>) value).context(), ordered);
+            } else {
+                event.complete(null, null, ordered);
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList(reversed));
+    }
+}
@@ -32,6 +32,16 @@ public class ValueNodeWrapper<S, T> implements ValueNode<T> {
         return (v, c) -> valueNode.getBackwardFunction().accept(reverseMapper.apply(v), c);
     }
 
+    @Override
+    public List<Node<?>> getReverseTopologicalOrder() {
+        return valueNode.getReverseTopologicalOrder();
+    }
+
+    @Override
+    public void setReverseTopologicalOrder(List<Node<?>> reverseTopologicalOrder) {
+        valueNode.setReverseTopologicalOrder(reverseTopologicalOrder);
+    }
+
     @Override
     public Supplier<T> getValue() {
         return () -> mapper.apply(valueNode.getValue().get());
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.jfr.RegistrySweepEvent;
+import org.ml4j.autograd.management.RegistryStatistics;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An AutogradValueRegistry which references its AutogradValues weakly, so that values which are no longer
+ * reachable are garbage collected rather than being retained by the registry for the lifetime of the program.
+ *
+ * Entries are held in an identity hash table of chained WeakReferences, and cleared references are removed in
+ * O(1) each as they are polled from a ReferenceQueue.  Counts of live and closed values are maintained on
+ * registration, close and collection, so that allClosedLocal() does not need to scan every value.  The registry
+ * itself is only weakly referenced by the static AutogradValueRegistry operations.
+ *
+ * @author Michael Lavelle
+ */
+public class WeakAutogradValueRegistry implements AutogradValueRegistry {
+
+    private final String name;
+    private final ReferenceQueue<AutogradValue<?, ?, ?>> queue;
+    private final RegistryStatistics statistics;
+    private Entry[] table;
+    private int live;
+    private int closed;
+
+    public static AutogradValueRegistry create(String name) {
+        WeakAutogradValueRegistry registry = new WeakAutogradValueRegistry(name);
+        AutogradValueRegistries.addWeak(registry);
+        return registry;
+    }
+
+    public WeakAutogradValueRegistry(String name) {
+        this.name = name;
+        this.queue = new ReferenceQueue<>();
+        this.table = new Entry[16];
+        this.statistics = new RegistryStatistics(name);
+    }
+
+    @Override
+    public RegistryStatistics statistics() {
+        return statistics;
+    }
+
+    @Override
+    public synchronized void registerAutogradValue(AutogradValue<?, ?, ?> autogradValue) {
+        expunge();
+        if (find(autogradValue) != null) {
+            return;
+        }
+        int hash = hash(autogradValue);
+        int slot = hash & (table.length - 1);
+        Entry entry = new Entry(autogradValue, queue, hash, table[slot]);
+        entry.closed = autogradValue.isClosed();
+        table[slot] = entry;
+        statistics.registered(entry.context, entry.closed, entry.uncloseable);
+        live++;
+        if (entry.closed) {
+            closed++;
+        }
+        if (live > table.length) {
+            resize();
+        }
+    }
+
+    @Override
+    public synchronized void notifyClosed(AutogradValue<?, ?, ?> autogradValue, boolean closed) {
+        expunge();
+        Entry entry = find(autogradValue);
+        if (entry != null) {
+            setClosed(entry, closed);
+        }
+    }
+
+    @Override
+    public synchronized void notifyUncloseable(AutogradValue<?, ?, ?> autogradValue, boolean uncloseable) {
+        expunge();
+        Entry entry = find(autogradValue);
+        if (entry != null && entry.uncloseable != uncloseable) {
+            entry.uncloseable = uncloseable;
+            statistics.uncloseable(entry.context, entry.closed, uncloseable);
+        }
+    }
+
+    /**
+     * @return The number of registered AutogradValues which have not yet been garbage collected.
+     */
+    public synchronized int size() {
+        expunge();
+        return live;
+    }
+
+    /**
+     * @return The number of registered AutogradValues which are known to be closed.
+     */
+    public synchronized int closedCount() {
+        expunge();
+        return closed;
+    }
+
+    @Override
+    public synchronized boolean allClosedLocal() {
+        expunge();
+        if (closed == live) {
+            return true;
+        }
+        // Values sharing a value node can be closed without notification, so refresh the closed flags.
+        for (Entry head : table) {
+            for (Entry entry = head; entry != null; entry = entry.next) {
+                AutogradValue<?, ?, ?> value = entry.get();
+                if (value != null) {
+                    setClosed(entry, value.isClosed());
+                }
+            }
+        }
+        return closed == live;
+    }
+
+    @Override
+    public void closeLocal() {
+        RegistrySweepEvent event = new RegistrySweepEvent();
+        event.begin();
+        int closedValues = 0;
+        for (AutogradValue<?, ?, ?> value : this) {
+            if (!value.isClosed() && !value.properties().isUncloseable()) {
+                value.close();
+                closedValues++;
+            }
+        }
+        event.complete("close", name, closedValues);
+    }
+
+    @Override
+    public synchronized void clearLocal() {
+        RegistrySweepEvent event = new RegistrySweepEvent();
+        event.begin();
+        expunge();
+        int removed = 0;
+        for (int slot = 0; slot < table.length; slot++) {
+            Entry previous = null;
+            for (Entry entry = table[slot]; entry != null; entry = entry.next) {
+                AutogradValue<?, ?, ?> value = entry.get();
+                if (value != null && value.isClosed() && !value.properties().isUncloseable()) {
+                    unlink(slot, previous, entry);
+                    entry.clear();
+                    removed++;
+                } else {
+                    previous = entry;
+                }
+            }
+        }
+        event.complete("clear", name, removed);
+    }
+
+    @Override
+    public void statusLocal(boolean print) {
+        int notYetClosed = 0;
+        int uncloseable = 0;
+        for (AutogradValue<?, ?, ?> b : this) {
+            if (!b.isClosed() && !b.properties().isUncloseable()) {
+                if (print) {
+                    System.out.println(name + ":" + "Not yet closed:" + b.name() + ":" + b.requires_grad());
+                }
+                notYetClosed++;
+            } else if (!b.isClosed() && b.properties().isUncloseable()) {
+                uncloseable++;
+            }
+        }
+        if (print) {
+            System.out.println(name + ":" + "Not yet closed total:" + notYetClosed);
+            System.out.println(name + ":" + "Unclosable total:" + uncloseable);
+        }
+    }
+
+    /**
+     * Obtain an iterator over a snapshot of the AutogradValues which have not been garbage collected.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public synchronized Iterator<AutogradValue<?, ?, ?>> iterator() {
+        expunge();
+        List<AutogradValue<?, ?, ?>> values = new ArrayList<>(live);
+        for (Entry head : table) {
+            for (Entry entry = head; entry != null; entry = entry.next) {
+                AutogradValue<?, ?, ?> value = entry.get();
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+        return values.iterator();
+    }
+
+    private void setClosed(Entry entry, boolean isClosed) {
+        if (entry.closed != isClosed) {
+            entry.closed = isClosed;
+            closed += isClosed ? 1 : -1;
+            statistics.closed(entry.context, isClosed, entry.uncloseable);
+        }
+    }
+
+    private Entry find(AutogradValue<?, ?, ?> autogradValue) {
+        int hash = hash(autogradValue);
+        for (Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && entry.get() == autogradValue) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void expunge() {
+        for (Object reference; (reference = queue.poll()) != null; ) {
+            Entry entry = (Entry) reference;
+            int slot = entry.hash & (table.length - 1);
+            Entry previous = null;
+            for (Entry current = table[slot]; current != null; current = current.next) {
+                if (current == entry) {
+                    unlink(slot, previous, entry);
+                    break;
+                }
+                previous = current;
+            }
+        }
+    }
+
+    private void unlink(int slot, Entry previous, Entry entry) {
+        if (previous == null) {
+            table[slot] = entry.next;
+        } else {
+            previous.next = entry.next;
+        }
+        live--;
+        if (entry.closed) {
+            closed--;
+        }
+        statistics.removed(entry.context, entry.closed, entry.uncloseable);
+    }
+
+    private void resize() {
+        Entry[] oldTable = table;
+        table = new Entry[oldTable.length * 2];
+        int mask = table.length - 1;
+        for (Entry head : oldTable) {
+            Entry entry = head;
+            while (entry != null) {
+                Entry next = entry.next;
+                int slot = entry.hash & mask;
+                entry.next = table[slot];
+                table[slot] = entry;
+                entry = next;
+            }
+        }
+    }
+
+    private static int hash(Object value) {
+        int h = System.identityHashCode(value);
+        return h ^ (h >>> 16);
+    }
+
+    private static class Entry extends WeakReference<AutogradValue<?, ?, ?>> {
+
+        private final int hash;
+        private final Object context;
+        private boolean uncloseable;
+        private Entry next;
+        private boolean closed;
+
+        Entry(AutogradValue<?, ?, ?> value, ReferenceQueue<AutogradValue<?, ?, ?>> queue, int hash, Entry next) {
+            super(value, queue);
+            this.hash = hash;
+            this.context = value.context();
+            this.uncloseable = value.properties().isUncloseable();
+            this.next = next;
+        }
+    }
+}
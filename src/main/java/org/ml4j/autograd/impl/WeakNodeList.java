@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.ml4j.autograd.node.Node;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A List of the Nodes consuming a Node, holding them weakly.
+ *
+ * The consumers of a Node are only needed to invalidate cached orderings when the graph is mutated, so a Node shared
+ * by many graphs, such as a parameter, must not keep those graphs reachable once nothing else refers to them.
+ *
+ * As elements may be cleared by the garbage collector at any time, get may return null for a consumer which has been
+ * collected - callers skip such elements.  Cleared elements are removed as the List grows.
+ *
+ * @author Michael Lavelle
+ */
+public class WeakNodeList extends AbstractList<Node<?>> {
+
+    private static final int MINIMUM_EXPUNGE_THRESHOLD = 16;
+
+    private final List<WeakReference<Node<?>>> references = new ArrayList<>();
+    private int expungeThreshold = MINIMUM_EXPUNGE_THRESHOLD;
+
+    @Override
+    public Node<?> get(int index) {
+        return references.get(index).get();
+    }
+
+    @Override
+    public int size() {
+        return references.size();
+    }
+
+    @Override
+    public void add(int index, Node<?> node) {
+        if (references.size() >= expungeThreshold && index == references.size()) {
+            expunge();
+            index = references.size();
+        }
+        references.add(index, new WeakReference<>(node));
+        modCount++;
+    }
+
+    @Override
+    public Node<?> set(int index, Node<?> node) {
+        return references.set(index, new WeakReference<>(node)).get();
+    }
+
+    @Override
+    public Node<?> remove(int index) {
+        modCount++;
+        return references.remove(index).get();
+    }
+
+    @Override
+    public void clear() {
+        references.clear();
+        modCount++;
+    }
+
+    private void expunge() {
+        references.removeIf(reference -> reference.get() == null);
+        expungeThreshold = Math.max(MINIMUM_EXPUNGE_THRESHOLD, references.size() * 2);
+        modCount++;
+    }
+}
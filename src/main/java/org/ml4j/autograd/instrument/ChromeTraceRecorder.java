@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.instrument;
+
+import org.ml4j.autograd.node.Node;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An OperationListener recording a timeline of the creation, forward evaluation and backward execution of each
+ * Node, which can be written as Chrome trace-event JSON and opened in chrome://tracing or ui.perfetto.dev, eg.
+ *
+ * <pre>
+ * try (ChromeTraceRecorder recorder = ChromeTraceRecorder.start()) {
+ *     model.forward(input).backward();
+ *     recorder.write(Paths.get("backward.json"));
+ * }
+ * </pre>
+ *
+ * Forward evaluations and backward executions are complete events on the thread that performed them, with the id
+ * of the Node and the ids of the Nodes in its prev() list as arguments.  The interval between the creation of a
+ * result and the evaluation of its deferred data is an async event in the "deferred" category, and each edge
+ * along which a gradient was propagated is a flow event from the backward execution of a Node to that of the Node
+ * it propagated to, so that the critical path of a backward pass can be followed.
+ *
+ * Nodes are identified by ids assigned on first sight and only weakly referenced, so that recording does not retain
+ * the computation graph.
+ *
+ * @author Michael Lavelle
+ */
+public class ChromeTraceRecorder implements OperationListener, AutoCloseable {
+
+    private static final String CREATE = "create";
+    private static final String FORWARD = "forward";
+    private static final String BACKWARD = "backward";
+
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private final Map<Node<?>, Long> ids = new WeakHashMap<>();
+    private final long origin = System.nanoTime();
+    private long nextId;
+
+    /**
+     * Create a recorder and register it with Instrumentation.
+     *
+     * @return The recorder, which is unregistered when closed.
+     */
+    public static ChromeTraceRecorder start() {
+        ChromeTraceRecorder recorder = new ChromeTraceRecorder();
+        Instrumentation.addListener(recorder);
+        return recorder;
+    }
+
+    @Override
+    public void close() {
+        Instrumentation.removeListener(this);
+    }
+
+    @Override
+    public void create(String op, Node<?> node, Object context, long nanos) {
+        events.add(new Event(CREATE, op, id(node), null, context, nanos, nanos));
+    }
+
+    @Override
+    public void forward(String op, Node<?> node, Object context, long bytes, long startNanos, long endNanos) {
+        events.add(new Event(FORWARD, op, id(node), null, context, startNanos, endNanos));
+    }
+
+    @Override
+    public void backward(String op, Node<?> node, Object context, long startNanos, long endNanos) {
+        List<Node<?>> prev = node.prev();
+        long[] prevIds = new long[prev.size()];
+        for (int i = 0; i < prevIds.length; i++) {
+            prevIds[i] = id(prev.get(i));
+        }
+        events.add(new Event(BACKWARD, op, id(node), prevIds, context, startNanos, endNanos));
+    }
+
+    /**
+     * @return The number of events recorded.
+     */
+    public int size() {
+        return events.size();
+    }
+
+    /**
+     * Write the recorded events as Chrome trace-event JSON.
+     *
+     * @param path The file to write.
+     * @throws IOException If the file can not be written.
+     */
+    public void write(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    /**
+     * Write the recorded events as Chrome trace-event JSON.
+     *
+     * @param writer The writer.
+     * @throws IOException If the events can not be written.
+     */
+    public void write(Writer writer) throws IOException {
+        List<Event> recorded = new ArrayList<>(events);
+        Map<Long, Event> created = new HashMap<>();
+        Map<Long, Event> backward = new HashMap<>();
+        for (Event event : recorded) {
+            if (event.phase.equals(BACKWARD)) {
+                backward.putIfAbsent(event.node, event);
+            } else if (event.phase.equals(CREATE)) {
+                created.put(event.node, event);
+            }
+        }
+        writer.write("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[");
+        boolean first = true;
+        for (Event event : recorded) {
+            if (event.phase.equals(FORWARD) || event.phase.equals(BACKWARD)) {
+                first = separate(writer, first);
+                writer.write("{\"name\":" + quote(event.op) + ",\"cat\":\"" + event.phase + "\",\"ph\":\"X\",\"ts\":"
+                        + timestamp(event.start) + ",\"dur\":" + micros(event.end - event.start) + ",\"pid\":1,\"tid\":"
+                        + event.thread + ",\"args\":{\"node\":" + event.node + ",\"context\":" + quote(event.context));
+                if (event.prev != null) {
+                    writer.write(",\"prev\":[");
+                    for (int i = 0; i < event.prev.length; i++) {
+                        writer.write((i == 0 ? "" : ",") + event.prev[i]);
+                    }
+                    writer.write("]");
+                }
+                writer.write("}}");
+            }
+            if (event.phase.equals(FORWARD) && created.containsKey(event.node)) {
+                Event creation = created.get(event.node);
+                first = separate(writer, first);
+                writer.write(async("b", event, creation.start));
+                writer.write(",");
+                writer.write(async("e", event, event.start));
+            }
+            if (event.phase.equals(BACKWARD)) {
+                for (long child : event.prev) {
+                    Event target = backward.get(child);
+                    if (target != null && target.start >= event.start) {
+                        String id = "\"" + event.node + "-" + child + "\"";
+                        first = separate(writer, first);
+                        writer.write("{\"name\":\"grad\",\"cat\":\"edge\",\"ph\":\"s\",\"id\":" + id + ",\"ts\":"
+                                + timestamp(event.start) + ",\"pid\":1,\"tid\":" + event.thread + "},");
+                        writer.write("{\"name\":\"grad\",\"cat\":\"edge\",\"ph\":\"f\",\"bp\":\"e\",\"id\":" + id
+                                + ",\"ts\":" + timestamp(target.start) + ",\"pid\":1,\"tid\":" + target.thread + "}");
+                    }
+                }
+            }
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    private String async(String phase, Event event, long nanos) {
+        return "{\"name\":" + quote(event.op) + ",\"cat\":\"deferred\",\"ph\":\"" + phase + "\",\"id\":" + event.node
+                + ",\"ts\":" + timestamp(nanos) + ",\"pid\":1,\"tid\":" + event.thread + "}";
+    }
+
+    private static boolean separate(Writer writer, boolean first) throws IOException {
+        if (!first) {
+            writer.write(",");
+        }
+        return false;
+    }
+
+    private String timestamp(long nanos) {
+        return micros(nanos - origin);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000d);
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private synchronized long id(Node<?> node) {
+        if (node == null) {
+            return -1;
+        }
+        Long id = ids.get(node);
+        if (id == null) {
+            id = nextId++;
+            ids.put(node, id);
+        }
+        return id;
+    }
+
+    private static class Event {
+
+        private final String phase;
+        private final String op;
+        private final long node;
+        private final long[] prev;
+        private final String context;
+        private final long start;
+        private final long end;
+        private final long thread;
+
+        Event(String phase, String op, long node, long[] prev, Object context, long start, long end) {
+            this.phase = phase;
+            this.op = op;
+            this.node = node;
+            this.prev = prev;
+            this.context = context == null ? null : context.toString();
+            this.start = start;
+            this.end = end;
+            this.thread = Thread.currentThread().getId();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.instrument;
+
+import org.ml4j.autograd.node.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The registry of OperationListeners notified by AutogradValueImpls, eg.
+ *
+ * <pre>
+ * OperationMetrics metrics = new OperationMetrics();
+ * Instrumentation.addListener(metrics);
+ * train();
+ * System.out.println(metrics);
+ * </pre>
+ *
+ * Operations are only instrumented while a listener is registered, so that there is no cost otherwise.  Operations
+ * created while a listener is registered are evaluated individually rather than fused, so that the time of each
+ * operation can be measured.
+ *
+ * @author Michael Lavelle
+ */
+public final class Instrumentation {
+
+    private static final List<OperationListener> listeners = new ArrayList<>();
+    private static volatile OperationListener listener;
+
+    private Instrumentation() {
+    }
+
+    /**
+     * @return The listener to notify, combining every registered listener, or null if none are registered.
+     */
+    public static OperationListener listener() {
+        return listener;
+    }
+
+    /**
+     * @param operationListener The listener to register.
+     */
+    public static synchronized void addListener(OperationListener operationListener) {
+        listeners.add(operationListener);
+        update();
+    }
+
+    /**
+     * @param operationListener The listener to unregister.
+     */
+    public static synchronized void removeListener(OperationListener operationListener) {
+        listeners.remove(operationListener);
+        update();
+    }
+
+    private static void update() {
+        if (listeners.isEmpty()) {
+            listener = null;
+        } else if (listeners.size() == 1) {
+            listener = listeners.get(0);
+        } else {
+            listener = new CompositeListener(listeners.toArray(new OperationListener[0]));
+        }
+    }
+
+    private static class CompositeListener implements OperationListener {
+
+        private final OperationListener[] listeners;
+
+        CompositeListener(OperationListener[] listeners) {
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void create(String op, Node<?> node, Object context, long nanos) {
+            for (OperationListener l : listeners) {
+                l.create(op, node, context, nanos);
+            }
+        }
+
+        @Override
+        public void forward(String op, Node<?> node, Object context, long bytes, long startNanos, long endNanos) {
+            for (OperationListener l : listeners) {
+                l.forward(op, node, context, bytes, startNanos, endNanos);
+            }
+        }
+
+        @Override
+        public void backward(String op, Node<?> node, Object context, long startNanos, long endNanos) {
+            for (OperationListener l : listeners) {
+                l.backward(op, node, context, startNanos, endNanos);
+            }
+        }
+    }
+}
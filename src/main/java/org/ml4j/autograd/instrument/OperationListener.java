@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.instrument;
+
+import org.ml4j.autograd.node.Node;
+
+/**
+ * Notified of the forward evaluation and backward execution of each operation applied by an AutogradValueImpl,
+ * while registered with Instrumentation.
+ *
+ * Listeners are invoked on the thread performing the work, so must be thread-safe and should return quickly.
+ * Timestamps are obtained from System.nanoTime().
+ *
+ * @author Michael Lavelle
+ */
+public interface OperationListener {
+
+    /**
+     * Called when the result of an operation has been created, ahead of the evaluation of its data, which is
+     * deferred until the data is first requested.
+     *
+     * @param op The name of the operation.
+     * @param node The value Node of the result.
+     * @param context The context of the result.
+     * @param nanos The time at which the result was created.
+     */
+    default void create(String op, Node<?> node, Object context, long nanos) {
+    }
+
+    /**
+     * Called after the forward operation producing the data of a result has been evaluated.
+     *
+     * @param op The name of the operation.
+     * @param node The value Node of the result.
+     * @param context The context of the result.
+     * @param bytes The size in bytes of the result data, or -1 if unknown.
+     * @param startNanos The time at which evaluation started.
+     * @param endNanos The time at which evaluation ended.
+     */
+    default void forward(String op, Node<?> node, Object context, long bytes, long startNanos, long endNanos) {
+    }
+
+    /**
+     * Called after the backward function of an operation has propagated a gradient to its operands.
+     *
+     * @param op The name of the operation.
+     * @param node The value Node of the result of the operation.
+     * @param context The context of the result.
+     * @param startNanos The time at which the backward function started.
+     * @param endNanos The time at which the backward function ended.
+     */
+    default void backward(String op, Node<?> node, Object context, long startNanos, long endNanos) {
+    }
+}
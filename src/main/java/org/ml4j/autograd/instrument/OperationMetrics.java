@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.instrument;
+
+import org.ml4j.autograd.node.Node;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An OperationListener aggregating, per operation name, the number of forward and backward invocations, their
+ * total wall time and the total bytes of the results.  Counters are LongAdders, so that recording from several
+ * threads is cheap and contention-free.
+ *
+ * @author Michael Lavelle
+ */
+public class OperationMetrics implements OperationListener {
+
+    private final Map<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+    @Override
+    public void forward(String op, Node<?> node, Object context, long bytes, long startNanos, long endNanos) {
+        Statistics stats = statistics.computeIfAbsent(op, o -> new Statistics());
+        stats.forwardCount.increment();
+        stats.forwardNanos.add(endNanos - startNanos);
+        if (bytes > 0) {
+            stats.bytes.add(bytes);
+        }
+    }
+
+    @Override
+    public void backward(String op, Node<?> node, Object context, long startNanos, long endNanos) {
+        Statistics stats = statistics.computeIfAbsent(op, o -> new Statistics());
+        stats.backwardCount.increment();
+        stats.backwardNanos.add(endNanos - startNanos);
+    }
+
+    /**
+     * @param op The name of an operation.
+     * @return The statistics of the operation, which are empty if the operation has not been recorded.
+     */
+    public Statistics statistics(String op) {
+        Statistics stats = statistics.get(op);
+        return stats == null ? new Statistics() : stats;
+    }
+
+    /**
+     * @return The statistics of each recorded operation, by name.
+     */
+    public Map<String, Statistics> statistics() {
+        return new TreeMap<>(statistics);
+    }
+
+    /**
+     * Discard all recorded statistics.
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * @return A table of the recorded statistics, in descending order of total time.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("%-16s %10s %14s %10s %14s %14s%n",
+                "op", "forward", "forward ms", "backward", "backward ms", "bytes"));
+        statistics.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Statistics> e) -> e.getValue().getTotalNanos()).reversed())
+                .forEach(e -> builder.append(String.format("%-16s %10d %14.3f %10d %14.3f %14d%n", e.getKey(),
+                        e.getValue().getForwardCount(), e.getValue().getForwardNanos() / 1e6,
+                        e.getValue().getBackwardCount(), e.getValue().getBackwardNanos() / 1e6, e.getValue().getBytes())));
+        return builder.toString();
+    }
+
+    /**
+     * The statistics recorded for an operation.
+     */
+    public static class Statistics {
+
+        private final LongAdder forwardCount = new LongAdder();
+        private final LongAdder forwardNanos = new LongAdder();
+        private final LongAdder backwardCount = new LongAdder();
+        private final LongAdder backwardNanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        public long getForwardCount() {
+            return forwardCount.sum();
+        }
+
+        public long getForwardNanos() {
+            return forwardNanos.sum();
+        }
+
+        public long getBackwardCount() {
+            return backwardCount.sum();
+        }
+
+        public long getBackwardNanos() {
+            return backwardNanos.sum();
+        }
+
+        /**
+         * @return The total bytes of the results of forward evaluations, where known.
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getTotalNanos() {
+            return getForwardNanos() + getBackwardNanos();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base class for the Java Flight Recorder events emitted by autograd, each of which records the duration of an
+ * activity along with the name of the operation or value concerned, the number of Nodes involved and the context.
+ *
+ * The events are disabled by default, and may be enabled in a live JVM with a .jfc settings file that enables the
+ * org.ml4j.autograd.* events, eg.
+ *
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start settings=/path/to/autograd.jfc
+ * </pre>
+ *
+ * or programmatically, with Recording.enable(Class).  Usage follows the standard pattern of creating an event and
+ * calling begin() before the activity, then calling complete(...) afterwards - the arguments are only converted to
+ * strings if the event is to be committed.  Events emitted on hot paths, such as for each operation or gradient
+ * accumulation, are instead begun with their static start() method, which returns null unless the event is enabled
+ * in a running recording, so that no event is allocated when autograd is not being recorded.
+ *
+ * @author Michael Lavelle
+ */
+@Category({"ml4j", "Autograd"})
+@Enabled(false)
+@StackTrace(false)
+public abstract class AutogradEvent extends Event {
+
+    @Label("Operation")
+    @Description("The name of the operation or value")
+    String op;
+
+    @Label("Context")
+    @Description("The context of the value, eg. its size")
+    String context;
+
+    @Label("Graph Size")
+    @Description("The number of Nodes or values involved")
+    int graphSize;
+
+    /**
+     * End this event and commit it, if it is enabled and exceeds the threshold of the recording.
+     *
+     * @param op The name of the operation or value.
+     * @param context The context of the value, or null if not applicable.
+     * @param graphSize The number of Nodes or values involved.
+     */
+    public void complete(String op, Object context, int graphSize) {
+        end();
+        if (shouldCommit()) {
+            this.op = op;
+            this.context = context == null ? null : context.toString();
+            this.graphSize = graphSize;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Determines whether an event type is enabled in a running recording, so that events emitted on hot paths need only
+ * be allocated while they are being recorded.
+ *
+ * The EventType is looked up lazily, once Flight Recorder has been initialised, so that Flight Recorder is not
+ * initialised by autograd when it is not otherwise in use.
+ *
+ * @author Michael Lavelle
+ */
+final class EventGate {
+
+    private final Class<? extends Event> eventClass;
+    private volatile EventType eventType;
+
+    EventGate(Class<? extends Event> eventClass) {
+        this.eventClass = eventClass;
+    }
+
+    boolean isEnabled() {
+        if (!FlightRecorder.isInitialized()) {
+            return false;
+        }
+        EventType type = eventType;
+        if (type == null) {
+            type = EventType.getEventType(eventClass);
+            eventType = type;
+        }
+        return type.isEnabled();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted by AutogradValueImpl when an operator is applied, with the number of operands as the graph size.
+ *
+ * @author Michael Lavelle
+ */
+@Name("org.ml4j.autograd.Operation")
+@Label("Autograd Operation")
+@Description("The creation of the result of an operation, whose graph size is the number of operands")
+public class OperationEvent extends AutogradEvent {
+
+    private static final EventGate GATE = new EventGate(OperationEvent.class);
+
+    /**
+     * Begin a OperationEvent if it is enabled in a running recording, as it is emitted each time an operator is applied.
+     *
+     * @return The begun event, or null if the event is not being recorded.
+     */
+    public static OperationEvent start() {
+        if (!GATE.isEnabled()) {
+            return null;
+        }
+        OperationEvent event = new OperationEvent();
+        event.begin();
+        return event;
+    }
+}
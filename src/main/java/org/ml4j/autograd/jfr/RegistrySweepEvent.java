@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted by registries when their values are closed or cleared, with the registry name as the context and the number of values closed or removed as the graph size.
+ *
+ * @author Michael Lavelle
+ */
+@Name("org.ml4j.autograd.RegistrySweep")
+@Label("Autograd Registry Sweep")
+@Description("The closing or clearing of the values of a registry, whose graph size is the number of values closed or removed")
+public class RegistrySweepEvent extends AutogradEvent {
+}
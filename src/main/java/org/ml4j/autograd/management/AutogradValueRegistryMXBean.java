@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.management;
+
+import java.util.Map;
+
+/**
+ * The management interface of an AutogradValueRegistry, registered with the platform MBeanServer under the domain
+ * org.ml4j.autograd, so that the values retained by registries can be monitored with JMX.
+ *
+ * Counts are maintained incrementally as values are registered, closed and removed, rather than by scanning the
+ * registry.
+ *
+ * @author Michael Lavelle
+ */
+public interface AutogradValueRegistryMXBean {
+
+    /**
+     * @return The name of the registry.
+     */
+    String getName();
+
+    /**
+     * @return The number of registered values which are not closed.
+     */
+    long getLiveCount();
+
+    /**
+     * @return The number of registered values which are closed, but have not yet been removed from the registry.
+     */
+    long getClosedCount();
+
+    /**
+     * @return The number of registered values which are not closed and are uncloseable.
+     */
+    long getUncloseableCount();
+
+    /**
+     * @return The total number of values registered.
+     */
+    long getCreatedCount();
+
+    /**
+     * @return The mean number of values registered per second since the registry was created.  Reading this rate
+     * has no side effects, so it may be read by several clients - the rate over a recent interval is obtained from
+     * the difference between two readings of the created count.
+     */
+    double getCreationRate();
+
+    /**
+     * @return The number of live values, by context.
+     */
+    Map<String, Long> getLiveCountByContext();
+
+    /**
+     * @return The estimated bytes retained by live values, by context, for contexts whose size can be estimated.
+     */
+    Map<String, Long> getEstimatedRetainedBytesByContext();
+
+    /**
+     * @return The estimated bytes retained by live values, for contexts whose size can be estimated.
+     */
+    long getEstimatedRetainedBytes();
+
+    /**
+     * @return The number of registries which are currently reachable.
+     */
+    int getRegistryCount();
+}
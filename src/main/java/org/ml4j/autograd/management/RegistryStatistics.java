@@ -0,0 +1,402 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.management;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * The statistics of an AutogradValueRegistry, updated incrementally by the registry, and exposed as its MXBean.
+ *
+ * Updates are recorded in one of a number of stripes, selected by the updating thread, each of which is guarded by
+ * its own lock, so that threads registering and closing values concurrently rarely contend.  A registry which
+ * already confines its updates, eg. to a segment per thread, may instead maintain its own Counts, which are added to
+ * these statistics.  The stripes and added Counts are merged when the statistics are read.  A value may be closed by
+ * a different thread to the one which registered it, so the counts of a single stripe may be negative - only their
+ * sums are meaningful.
+ *
+ * Live values are counted per context, with the context objects themselves as keys, so that no strings are created
+ * as values are registered.  These counts are shared by all stripes and Counts, in a single concurrent map which is
+ * updated atomically, so that a context is dropped as soon as it has no live values, whichever threads registered
+ * and closed them.  The bytes retained per context are estimated by the context size estimator, which by default
+ * estimates a Number context as that number of floats.
+ *
+ * @author Michael Lavelle
+ */
+public class RegistryStatistics implements AutogradValueRegistryMXBean {
+
+    private static final String DOMAIN = "org.ml4j.autograd";
+    private static final Object NO_CONTEXT = new Object();
+    private static final int STRIPES =
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+    private static final AtomicLong ids = new AtomicLong();
+    private static volatile ToLongFunction<Object> contextSizeEstimator = RegistryStatistics::estimateNumberOfFloats;
+
+    private final String name;
+    private final Counts[] stripes;
+    private final List<Counts> counts;
+    private final ConcurrentMap<Object, Long> liveByContext;
+    private final long createdNanos;
+    private ObjectName objectName;
+    private volatile IntSupplier registryCount = () -> 0;
+
+    public RegistryStatistics(String name) {
+        this.name = name;
+        this.liveByContext = new ConcurrentHashMap<>();
+        this.stripes = new Counts[STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Counts(this);
+        }
+        this.counts = new CopyOnWriteArrayList<>(Arrays.asList(stripes));
+        this.createdNanos = System.nanoTime();
+    }
+
+    /**
+     * Set the function estimating the bytes retained by a value from its context.
+     *
+     * @param estimator The estimator, returning a negative number if the size of a context can not be estimated.
+     */
+    public static void setContextSizeEstimator(ToLongFunction<Object> estimator) {
+        contextSizeEstimator = estimator;
+    }
+
+    /**
+     * Register these statistics with the platform MBeanServer, unless already registered.  Failure to register,
+     * eg. in an environment without JMX, is ignored.  The MBean remains registered until unregisterMBean() is called,
+     * which AutogradValueRegistries does when the registry is removed or garbage collected.
+     *
+     * @param registryCount Supplies the number of registries which are currently reachable.
+     * @return These statistics.
+     */
+    public synchronized RegistryStatistics registerMBean(IntSupplier registryCount) {
+        this.registryCount = registryCount;
+        if (objectName == null) {
+            try {
+                ObjectName candidate = new ObjectName(DOMAIN + ":type=AutogradValueRegistry,name="
+                        + ObjectName.quote(String.valueOf(name)) + ",id=" + ids.incrementAndGet());
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+                objectName = candidate;
+            } catch (JMException e) {
+                // Monitoring is optional
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Unregister these statistics from the platform MBeanServer, if registered.
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already unregistered
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * @return The name under which these statistics are registered, or null if not registered.
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Record the registration of a value.
+     *
+     * @param context The context of the value.
+     * @param isClosed Whether the value is closed.
+     * @param isUncloseable Whether the value is uncloseable.
+     */
+    public void registered(Object context, boolean isClosed, boolean isUncloseable) {
+        Counts stripe = stripe();
+        synchronized (stripe) {
+            stripe.registered(context, isClosed, isUncloseable);
+        }
+    }
+
+    /**
+     * Record that a registered value has been closed or reopened.
+     *
+     * @param context The context of the value.
+     * @param isClosed Whether the value is now closed.
+     * @param isUncloseable Whether the value is uncloseable.
+     */
+    public void closed(Object context, boolean isClosed, boolean isUncloseable) {
+        Counts stripe = stripe();
+        synchronized (stripe) {
+            stripe.closed(context, isClosed, isUncloseable);
+        }
+    }
+
+    /**
+     * Record that a registered value has been made uncloseable or closeable.
+     *
+     * @param context The context of the value.
+     * @param isClosed Whether the value is closed.
+     * @param isUncloseable Whether the value is now uncloseable.
+     */
+    public void uncloseable(Object context, boolean isClosed, boolean isUncloseable) {
+        Counts stripe = stripe();
+        synchronized (stripe) {
+            stripe.uncloseable(context, isClosed, isUncloseable);
+        }
+    }
+
+    /**
+     * Record the removal of a value from the registry.
+     *
+     * @param context The context of the value.
+     * @param isClosed Whether the value was closed.
+     * @param isUncloseable Whether the value was uncloseable.
+     */
+    public void removed(Object context, boolean isClosed, boolean isUncloseable) {
+        Counts stripe = stripe();
+        synchronized (stripe) {
+            stripe.removed(context, isClosed, isUncloseable);
+        }
+    }
+
+    /**
+     * Add Counts maintained by the registry, which are merged with these statistics when read.
+     *
+     * @param added The Counts, created for these statistics.
+     */
+    public void add(Counts added) {
+        counts.add(added);
+    }
+
+    /**
+     * Discard Counts previously added, retaining the values they have counted.  The discarded Counts must no longer
+     * be updated.
+     *
+     * @param discarded The Counts.
+     */
+    public synchronized void discard(Counts discarded) {
+        if (counts.remove(discarded)) {
+            Counts stripe = stripe();
+            synchronized (discarded) {
+                synchronized (stripe) {
+                    stripe.add(discarded);
+                }
+            }
+        }
+    }
+
+    private Counts stripe() {
+        return stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+    }
+
+    private synchronized long sum(ToLongFunction<Counts> count) {
+        long total = 0;
+        for (Counts c : counts) {
+            synchronized (c) {
+                total += count.applyAsLong(c);
+            }
+        }
+        return total;
+    }
+
+    private Map<Object, Long> liveByContext() {
+        return new HashMap<>(liveByContext);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getLiveCount() {
+        return sum(c -> c.live);
+    }
+
+    @Override
+    public long getClosedCount() {
+        return sum(c -> c.closed);
+    }
+
+    @Override
+    public long getUncloseableCount() {
+        return sum(c -> c.uncloseable);
+    }
+
+    @Override
+    public long getCreatedCount() {
+        return sum(c -> c.created);
+    }
+
+    @Override
+    public double getCreationRate() {
+        long elapsed = System.nanoTime() - createdNanos;
+        return elapsed <= 0 ? 0 : getCreatedCount() * 1e9 / elapsed;
+    }
+
+    @Override
+    public Map<String, Long> getLiveCountByContext() {
+        Map<String, Long> counts = new TreeMap<>();
+        liveByContext().forEach((context, count) -> counts.merge(key(context), count, Long::sum));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getEstimatedRetainedBytesByContext() {
+        Map<String, Long> bytes = new TreeMap<>();
+        liveByContext().forEach((context, count) -> {
+            long size = context == NO_CONTEXT ? -1 : contextSizeEstimator.applyAsLong(context);
+            if (size >= 0) {
+                bytes.merge(key(context), size * count, Long::sum);
+            }
+        });
+        return bytes;
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+        long total = 0;
+        for (long bytes : getEstimatedRetainedBytesByContext().values()) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    @Override
+    public int getRegistryCount() {
+        return registryCount.getAsInt();
+    }
+
+    private static String key(Object context) {
+        return context == NO_CONTEXT ? "none" : context.toString();
+    }
+
+    private static long estimateNumberOfFloats(Object context) {
+        return context instanceof Number ? ((Number) context).longValue() * Float.BYTES : -1;
+    }
+
+    /**
+     * Counts of registered values, which must only be updated while holding the lock of this object.  Live values
+     * are counted per context in the map shared by the statistics for which these Counts are created.
+     */
+    public static class Counts {
+
+        private long created;
+        private long live;
+        private long closed;
+        private long uncloseable;
+        private final ConcurrentMap<Object, Long> liveByContext;
+
+        /**
+         * Create Counts for the specified statistics.
+         *
+         * @param statistics The statistics.
+         */
+        public Counts(RegistryStatistics statistics) {
+            this.liveByContext = statistics.liveByContext;
+        }
+
+        /**
+         * Record the registration of a value, as for RegistryStatistics.registered().
+         */
+        public void registered(Object context, boolean isClosed, boolean isUncloseable) {
+            created++;
+            if (isClosed) {
+                closed++;
+            } else {
+                opened(context, isUncloseable);
+            }
+        }
+
+        /**
+         * Record that a registered value has been closed or reopened, as for RegistryStatistics.closed().
+         */
+        public void closed(Object context, boolean isClosed, boolean isUncloseable) {
+            if (isClosed) {
+                closed++;
+                released(context, isUncloseable);
+            } else {
+                closed--;
+                opened(context, isUncloseable);
+            }
+        }
+
+        /**
+         * Record that a registered value has been made uncloseable or closeable, as for
+         * RegistryStatistics.uncloseable().
+         */
+        public void uncloseable(Object context, boolean isClosed, boolean isUncloseable) {
+            if (!isClosed) {
+                uncloseable += isUncloseable ? 1 : -1;
+            }
+        }
+
+        /**
+         * Record the removal of a value from the registry, as for RegistryStatistics.removed().
+         */
+        public void removed(Object context, boolean isClosed, boolean isUncloseable) {
+            if (isClosed) {
+                closed--;
+            } else {
+                released(context, isUncloseable);
+            }
+        }
+
+        private void add(Counts other) {
+            created += other.created;
+            live += other.live;
+            closed += other.closed;
+            uncloseable += other.uncloseable;
+        }
+
+        private void opened(Object context, boolean isUncloseable) {
+            live++;
+            if (isUncloseable) {
+                uncloseable++;
+            }
+            count(context, 1);
+        }
+
+        private void released(Object context, boolean isUncloseable) {
+            live--;
+            if (isUncloseable) {
+                uncloseable--;
+            }
+            count(context, -1);
+        }
+
+        private void count(Object context, long delta) {
+            Object key = context == null ? NO_CONTEXT : context;
+            // Merged atomically, so that the entry is removed exactly when the count of the context reaches zero
+            liveByContext.merge(key, delta, (count, d) -> count + d == 0 ? null : count + d);
+        }
+    }
+}
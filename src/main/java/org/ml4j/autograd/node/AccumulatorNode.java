@@ -15,6 +15,7 @@
 package org.ml4j.autograd.node;
 
 import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
@@ -44,4 +45,36 @@ public interface AccumulatorNode<V, A extends AccumulatorNode<V, A>> extends Nod
      */
     A add_(V delta, BinaryOperator<V> addFunction);
 
+    /**
+     * Add a delta value to the value within this Node, accumulating in place where this Node
+     * has exclusive ownership of its value.
+     *
+     * @param delta The delta to add.
+     * @param addFunction The add function that performs the addition, returning a new value.
+     * @param inPlaceAddFunction The add function that adds the second argument to the first in place.
+     * @return This node.
+     */
+    default A add_(V delta, BinaryOperator<V> addFunction, BinaryOperator<V> inPlaceAddFunction) {
+        return add_(delta, addFunction);
+    }
+
+    /**
+     * Clear the value accumulated within this Node.
+     *
+     * @return This Node.
+     */
+    A clear();
+
+    /**
+     * Zero the value accumulated within this Node ahead of a new accumulation.  Where this Node created its
+     * value, the value may be zeroed in place and retained as the accumulator of the next accumulation,
+     * otherwise the value is cleared.
+     *
+     * @param inPlaceZeroFunction Zeros the value in place, returning false if it cannot be modified in place.
+     * @return This Node.
+     */
+    default A zero_(Predicate<V> inPlaceZeroFunction) {
+        return clear();
+    }
+
 }
@@ -16,6 +16,7 @@ package org.ml4j.autograd.node;
 
 import org.ml4j.autograd.BackwardConfig;
 
+import java.util.List;
 import java.util.function.BiConsumer;
 
 /**
@@ -38,4 +39,21 @@ public interface ValueNode<V> extends Node<V> {
     void setBackwardFunction(BiConsumer<V, BackwardConfig> backwardFunction);
 
     BiConsumer<V, BackwardConfig> getBackwardFunction();
+
+    /**
+     * Obtain the reverse topological ordering of the computation graph rooted at this ValueNode, if one
+     * has been cached by a previous backward pass.
+     *
+     * @return The cached reverse topological ordering, or null if no ordering has been cached, or if the
+     * computation graph may have been mutated since it was cached.
+     */
+    List<Node<?>> getReverseTopologicalOrder();
+
+    /**
+     * Cache the reverse topological ordering of the computation graph rooted at this ValueNode, so that
+     * it can be reused by subsequent backward passes.
+     *
+     * @param reverseTopologicalOrder The reverse topological ordering, or null to clear the cache.
+     */
+    void setReverseTopologicalOrder(List<Node<?>> reverseTopologicalOrder);
 }
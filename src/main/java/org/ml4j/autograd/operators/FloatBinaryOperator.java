@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.operators;
+
+/**
+ * Represents an operation upon two float operands that produces a float result - the primitive
+ * specialisation of BinaryOperator for float.
+ *
+ * @author Michael Lavelle
+ */
+@FunctionalInterface
+public interface FloatBinaryOperator {
+
+    /**
+     * Applies this operator to the given operands.
+     *
+     * @param left The first operand.
+     * @param right The second operand.
+     * @return The result.
+     */
+    float applyAsFloat(float left, float right);
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.pool;
+
+/**
+ * A pool of data buffers, keyed by the context of the values whose data they hold (eg. a Size), from which
+ * AutogradValueImpls obtain the data of new results and identities, and to which they release the data of
+ * closed values, so that training loops requesting the same contexts every step recycle their buffers rather
+ * than allocating them again.
+ *
+ * @param <D> The type of data.
+ * @param <C> The type of context.
+ *
+ * @author Michael Lavelle
+ */
+public interface BufferPool<D, C> {
+
+    /**
+     * Obtain a buffer previously released for the specified context, whose contents are undefined.
+     *
+     * @param context The context.
+     * @return The buffer, or null if no buffer is available for this context.
+     */
+    D acquire(C context);
+
+    /**
+     * Offer a buffer which is no longer used to this pool.
+     *
+     * @param context The context of the buffer.
+     * @param data The buffer.
+     * @return Whether the buffer was retained by this pool - if not, the caller remains responsible for the buffer.
+     */
+    boolean release(C context, D data);
+
+    /**
+     * @return The metrics of this pool.
+     */
+    BufferPoolMetrics metrics();
+}
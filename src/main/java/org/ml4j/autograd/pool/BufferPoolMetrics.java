@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.pool;
+
+/**
+ * Metrics of a BufferPool.
+ *
+ * @author Michael Lavelle
+ */
+public interface BufferPoolMetrics {
+
+    /**
+     * @return The number of acquisitions satisfied by a released buffer.
+     */
+    long hits();
+
+    /**
+     * @return The number of acquisitions for which no released buffer was available.
+     */
+    long misses();
+
+    /**
+     * @return The number of bytes of released buffers currently retained.
+     */
+    long retainedBytes();
+
+    /**
+     * @return The number of released buffers currently retained.
+     */
+    long retainedBuffers();
+
+    /**
+     * @return The proportion of acquisitions satisfied by a released buffer, or 0 if there have been none.
+     */
+    default double hitRate() {
+        long hits = hits();
+        long total = hits + misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.pool;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe BufferPool holding a bucket of released buffers per context.
+ *
+ * At most maxRetainedBytes are held by the pool; buffers released beyond this are not retained, and remain the
+ * responsibility of the caller.
+ *
+ * @param <D> The type of data.
+ * @param <C> The type of context, which must implement equals and hashCode.
+ *
+ * @author Michael Lavelle
+ */
+public class SizeBucketedBufferPool<D, C> implements BufferPool<D, C>, BufferPoolMetrics {
+
+    private final Map<C, Queue<D>> buckets = new ConcurrentHashMap<>();
+    private final ToLongFunction<D> sizeInBytes;
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong retainedBuffers = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param sizeInBytes A function returning the size of a buffer in bytes.
+     * @param maxRetainedBytes The maximum number of bytes of released buffers to retain.
+     */
+    public SizeBucketedBufferPool(ToLongFunction<D> sizeInBytes, long maxRetainedBytes) {
+        this.sizeInBytes = sizeInBytes;
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    @Override
+    public D acquire(C context) {
+        Queue<D> bucket = buckets.get(context);
+        D data = bucket == null ? null : bucket.poll();
+        if (data == null) {
+            misses.increment();
+            return null;
+        }
+        retainedBytes.addAndGet(-sizeInBytes.applyAsLong(data));
+        retainedBuffers.decrementAndGet();
+        hits.increment();
+        return data;
+    }
+
+    @Override
+    public boolean release(C context, D data) {
+        long size = sizeInBytes.applyAsLong(data);
+        if (retainedBytes.addAndGet(size) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-size);
+            return false;
+        }
+        retainedBuffers.incrementAndGet();
+        buckets.computeIfAbsent(context, c -> new ConcurrentLinkedQueue<>()).offer(data);
+        return true;
+    }
+
+    /**
+     * Drop all retained buffers, leaving them to be reclaimed by the garbage collector.
+     */
+    public void clear() {
+        for (Queue<D> bucket : buckets.values()) {
+            D data;
+            while ((data = bucket.poll()) != null) {
+                retainedBytes.addAndGet(-sizeInBytes.applyAsLong(data));
+                retainedBuffers.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public BufferPoolMetrics metrics() {
+        return this;
+    }
+
+    @Override
+    public long hits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long misses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long retainedBytes() {
+        return retainedBytes.get();
+    }
+
+    @Override
+    public long retainedBuffers() {
+        return retainedBuffers.get();
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.arithmetic.operations.ArithmeticOperations;
+
+import java.util.Arrays;
+
+/**
+ * A Tape for data types that implement ArithmeticOperations, holding the op code, operand indices, scalar
+ * operand, data and gradient of each entry in parallel growable arrays.
+ *
+ * The arithmetic operations are differentiated directly on the data during backpropagation, so that no
+ * AutogradValues or closures are created on either the forward or backward pass.  Other operations are
+ * recorded with the CUSTOM op code, and their TapeBackwardFunctions are held in a side table.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <D> The type of data recorded on this Tape.
+ */
+public class ArithmeticOperationsTape<D extends ArithmeticOperations<D>> implements Tape {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] ops;
+    private int[] left;
+    private int[] right;
+    private float[] scalars;
+    private boolean[] requiresGrad;
+    private boolean[] ownedGrads;
+    private boolean[] reachable;
+    private Object[] values;
+    private Object[] grads;
+    private Object[] backwardFunctions;
+    private int size;
+    private int generation;
+    private boolean backward;
+
+    public ArithmeticOperationsTape() {
+        this.ops = new byte[INITIAL_CAPACITY];
+        this.left = new int[INITIAL_CAPACITY];
+        this.right = new int[INITIAL_CAPACITY];
+        this.scalars = new float[INITIAL_CAPACITY];
+        this.requiresGrad = new boolean[INITIAL_CAPACITY];
+        this.ownedGrads = new boolean[INITIAL_CAPACITY];
+        this.reachable = new boolean[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.grads = new Object[INITIAL_CAPACITY];
+        this.backwardFunctions = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Record a leaf entry.
+     *
+     * @param value The data of the leaf.
+     * @param requires_grad Whether a gradient is required for the leaf.
+     * @return The index of the entry.
+     */
+    public int leaf(D value, boolean requires_grad) {
+        return record(TapeOps.LEAF, -1, -1, 0, value, requires_grad);
+    }
+
+    /**
+     * Record an entry.
+     *
+     * @param op The op code of the entry, from TapeOps.
+     * @param left The index of the first operand, or -1 if none.
+     * @param right The index of the second operand, or -1 if none.
+     * @param scalar The scalar operand for scalar op codes.
+     * @param value The data resulting from the operation.
+     * @param requires_grad Whether a gradient is required for the entry.
+     * @return The index of the entry.
+     */
+    public int record(byte op, int left, int right, float scalar, D value, boolean requires_grad) {
+        if (size == ops.length) {
+            grow();
+        }
+        int index = size++;
+        if (GradMode.is_enabled()) {
+            this.ops[index] = op;
+            this.left[index] = left;
+            this.right[index] = right;
+            this.requiresGrad[index] = requires_grad;
+        } else {
+            // Only the value is recorded when gradient tracking is disabled, as a constant leaf
+            this.ops[index] = TapeOps.LEAF;
+            this.left[index] = -1;
+            this.right[index] = -1;
+            this.requiresGrad[index] = op == TapeOps.LEAF && requires_grad;
+        }
+        this.scalars[index] = scalar;
+        this.values[index] = value;
+        return index;
+    }
+
+    /**
+     * Record an entry whose backward pass is performed by a TapeBackwardFunction.
+     *
+     * @param backwardFunction The backward function of the entry.
+     * @param left The index of the first operand.
+     * @param right The index of the second operand, or -1 if none.
+     * @param value The data resulting from the operation.
+     * @param requires_grad Whether a gradient is required for the entry.
+     * @return The index of the entry.
+     */
+    public int record(TapeBackwardFunction<ArithmeticOperationsTape<D>> backwardFunction, int left, int right, D value, boolean requires_grad) {
+        int index = record(TapeOps.CUSTOM, left, right, 0, value, requires_grad);
+        if (ops[index] != TapeOps.LEAF) {
+            this.backwardFunctions[index] = backwardFunction;
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    public D value(int index) {
+        return (D) values[index];
+    }
+
+    public void setValue(int index, D value) {
+        this.values[index] = value;
+    }
+
+    /**
+     * Obtain the gradient accumulated for an entry.
+     *
+     * @param index The index of the entry.
+     * @return The gradient, or null if no gradient has been accumulated.
+     */
+    @SuppressWarnings("unchecked")
+    public D grad(int index) {
+        return (D) grads[index];
+    }
+
+    @Override
+    public boolean requires_grad(int index) {
+        return requiresGrad[index];
+    }
+
+    @Override
+    public void setRequires_grad(int index, boolean requires_grad) {
+        this.requiresGrad[index] = requires_grad;
+    }
+
+    @Override
+    public boolean hasGrad(int index) {
+        return grads[index] != null;
+    }
+
+    public boolean isLeaf(int index) {
+        return ops[index] == TapeOps.LEAF;
+    }
+
+    @Override
+    public boolean isBackward() {
+        return backward;
+    }
+
+    @Override
+    public int generation() {
+        return generation;
+    }
+
+    /**
+     * Accumulate a delta into the gradient of an entry, if the entry requires a gradient.
+     *
+     * @param index The index of the entry.
+     * @param delta The delta to accumulate.
+     */
+    public void accumulateGrad(int index, D delta) {
+        accumulateGrad(index, delta, false);
+    }
+
+    private void accumulateGrad(int index, D delta, boolean owned) {
+        if (!requiresGrad[index]) {
+            return;
+        }
+        D grad = grad(index);
+        if (grad == null) {
+            grads[index] = delta;
+            ownedGrads[index] = owned;
+        } else if (ownedGrads[index]) {
+            grad.add_(delta);
+        } else {
+            // The gradient may be shared with another entry, so accumulate into a new instance we own
+            grads[index] = grad.add(delta);
+            ownedGrads[index] = true;
+        }
+    }
+
+    /**
+     * Back propagate a gradient from an entry to the entries from which it was computed.
+     *
+     * The gradients of leaf entries accumulate across backward passes, while those of the non-leaf entries
+     * reachable from the root are reset at the start of each pass.
+     *
+     * @param root The index of the entry from which to back propagate.
+     * @param gradient The gradient of the root entry.
+     */
+    public void backward(int root, D gradient) {
+        boolean[] reachable = markReachable(root);
+        for (int i = 0; i <= root; i++) {
+            if (reachable[i] && ops[i] != TapeOps.LEAF) {
+                grads[i] = null;
+                ownedGrads[i] = false;
+            }
+        }
+        accumulateGrad(root, gradient, false);
+        int mark = size;
+        backward = true;
+        try {
+            for (int i = root; i >= 0; i--) {
+                D grad = grad(i);
+                if (reachable[i] && grad != null && ops[i] != TapeOps.LEAF) {
+                    backwardEntry(i, grad);
+                    if (size > mark) {
+                        // Discard any entries recorded by a custom backward function
+                        discard(mark);
+                    }
+                }
+            }
+        } finally {
+            backward = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void backwardEntry(int index, D grad) {
+        int l = left[index];
+        int r = right[index];
+        switch (ops[index]) {
+            case TapeOps.ADD:
+                accumulateGrad(l, grad, false);
+                accumulateGrad(r, grad, false);
+                break;
+            case TapeOps.SUB:
+                accumulateGrad(l, grad, false);
+                if (requiresGrad[r]) {
+                    accumulateGrad(r, grad.neg(), true);
+                }
+                break;
+            case TapeOps.MUL:
+                if (requiresGrad[l]) {
+                    accumulateGrad(l, grad.mul(value(r)), true);
+                }
+                if (requiresGrad[r]) {
+                    accumulateGrad(r, grad.mul(value(l)), true);
+                }
+                break;
+            case TapeOps.DIV:
+                if (requiresGrad[l]) {
+                    accumulateGrad(l, grad.div(value(r)), true);
+                }
+                if (requiresGrad[r]) {
+                    accumulateGrad(r, grad.neg().mul(value(l)).div(value(r).mul(value(r))), true);
+                }
+                break;
+            case TapeOps.ADD_SCALAR:
+            case TapeOps.SUB_SCALAR:
+                accumulateGrad(l, grad, false);
+                break;
+            case TapeOps.MUL_SCALAR:
+                if (requiresGrad[l]) {
+                    accumulateGrad(l, grad.mul(scalars[index]), true);
+                }
+                break;
+            case TapeOps.DIV_SCALAR:
+                if (requiresGrad[l]) {
+                    accumulateGrad(l, grad.div(scalars[index]), true);
+                }
+                break;
+            case TapeOps.NEG:
+                if (requiresGrad[l]) {
+                    accumulateGrad(l, grad.neg(), true);
+                }
+                break;
+            case TapeOps.GT:
+                if (requiresGrad[l]) {
+                    accumulateGrad(l, grad.mul(value(l).gt(scalars[index])), true);
+                }
+                break;
+            case TapeOps.GTE:
+                if (requiresGrad[l]) {
+                    accumulateGrad(l, grad.mul(value(l).gte(scalars[index])), true);
+                }
+                break;
+            case TapeOps.CUSTOM:
+                ((TapeBackwardFunction<ArithmeticOperationsTape<D>>) backwardFunctions[index]).backward(this, index);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported op code:" + ops[index]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void truncate(int mark) {
+        if (mark < 0 || mark > size) {
+            throw new IllegalArgumentException("Mark must be between 0 and " + size);
+        }
+        discard(mark);
+        generation++;
+    }
+
+    @Override
+    public void zero_grad() {
+        Arrays.fill(grads, 0, size, null);
+        Arrays.fill(ownedGrads, 0, size, false);
+    }
+
+    @Override
+    public void zero_grad(int index) {
+        grads[index] = null;
+        ownedGrads[index] = false;
+    }
+
+    @Override
+    public void zero_grad_reachable(int root) {
+        boolean[] reachable = markReachable(root);
+        for (int i = 0; i <= root; i++) {
+            if (reachable[i]) {
+                zero_grad(i);
+            }
+        }
+    }
+
+    /**
+     * Mark the entries reachable from an entry, ie. the entry and those from which it was computed.
+     *
+     * @param root The index of the entry.
+     * @return Flags indicating whether each entry up to and including the root is reachable.
+     */
+    private boolean[] markReachable(int root) {
+        Arrays.fill(reachable, 0, root + 1, false);
+        reachable[root] = true;
+        for (int i = root; i >= 0; i--) {
+            if (reachable[i] && ops[i] != TapeOps.LEAF) {
+                if (left[i] >= 0) {
+                    reachable[left[i]] = true;
+                }
+                if (right[i] >= 0) {
+                    reachable[right[i]] = true;
+                }
+            }
+        }
+        return reachable;
+    }
+
+    private void discard(int mark) {
+        Arrays.fill(values, mark, size, null);
+        Arrays.fill(grads, mark, size, null);
+        Arrays.fill(backwardFunctions, mark, size, null);
+        size = mark;
+    }
+
+    private void grow() {
+        int capacity = ops.length * 2;
+        this.ops = Arrays.copyOf(ops, capacity);
+        this.left = Arrays.copyOf(left, capacity);
+        this.right = Arrays.copyOf(right, capacity);
+        this.scalars = Arrays.copyOf(scalars, capacity);
+        this.requiresGrad = Arrays.copyOf(requiresGrad, capacity);
+        this.ownedGrads = Arrays.copyOf(ownedGrads, capacity);
+        this.reachable = new boolean[capacity];
+        this.values = Arrays.copyOf(values, capacity);
+        this.grads = Arrays.copyOf(grads, capacity);
+        this.backwardFunctions = Arrays.copyOf(backwardFunctions, capacity);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+
+/**
+ * A scalar AutogradValue that holds its value and gradient as primitive doubles on a DoubleTape.
+ *
+ * @param <C> The type of context required for this AutogradValue, eg. Size,
+ * @author Michael Lavelle
+ */
+public class DoubleAutogradValue<C> extends DoubleTapeAutogradValueImpl<DoubleAutogradValue<C>, C> {
+
+    public DoubleAutogradValue(AutogradValueProperties<C> properties, DoubleTape tape, double value) {
+        super(properties, tape, value);
+    }
+
+    protected DoubleAutogradValue(DoubleTape tape, int index, C context, AutogradValueRegistry registry) {
+        super(tape, index, context, registry);
+    }
+
+    @Override
+    public DoubleAutogradValue<C> self() {
+        return this;
+    }
+
+    @Override
+    protected DoubleAutogradValue<C> createAutogradValue(DoubleTape tape, int index, C context, AutogradValueRegistry registry) {
+        return new DoubleAutogradValue<>(tape, index, context, registry);
+    }
+
+    @Override
+    public String toString() {
+        return name() + ":" + item();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A Tape of primitive double entries, holding the value and gradient of each entry in growable double arrays.
+ *
+ * Operations other than those with their own op codes are recorded with the UNARY or BINARY op codes, along
+ * with DoubleUnaryOperator or DoubleBinaryOperator partial derivatives.
+ *
+ * @author Michael Lavelle
+ */
+public class DoubleTape extends PrimitiveTape<DoubleTape> {
+
+    public DoubleTape() {
+        super(new DoubleElements());
+    }
+
+    @Override
+    protected DoubleTape self() {
+        return this;
+    }
+
+    /**
+     * Record a leaf entry.
+     *
+     * @param value The value of the leaf.
+     * @param requires_grad Whether a gradient is required for the leaf.
+     * @return The index of the entry.
+     */
+    public int leaf(double value, boolean requires_grad) {
+        return recordLeaf(value, requires_grad);
+    }
+
+    /**
+     * Record an entry.
+     *
+     * @param op The op code of the entry, from TapeOps.
+     * @param left The index of the first operand, or -1 if none.
+     * @param right The index of the second operand, or -1 if none.
+     * @param scalar The scalar operand for scalar op codes.
+     * @param value The value resulting from the operation.
+     * @param requires_grad Whether a gradient is required for the entry.
+     * @return The index of the entry.
+     */
+    public int record(byte op, int left, int right, double scalar, double value, boolean requires_grad) {
+        return recordEntry(op, left, right, scalar, value, requires_grad);
+    }
+
+    /**
+     * Record a unary operation with the specified derivative.
+     *
+     * @param derivative The derivative of the operation, as a function of its operand.
+     * @param left The index of the operand.
+     * @param value The value resulting from the operation.
+     * @param requires_grad Whether a gradient is required for the entry.
+     * @return The index of the entry.
+     */
+    public int record(DoubleUnaryOperator derivative, int left, double value, boolean requires_grad) {
+        return recordEntry(TapeOps.UNARY, derivative, null, left, -1, value, requires_grad);
+    }
+
+    /**
+     * Record a binary operation with the specified partial derivatives.
+     *
+     * @param leftPartial The partial derivative of the operation with respect to its first operand.
+     * @param rightPartial The partial derivative of the operation with respect to its second operand.
+     * @param left The index of the first operand.
+     * @param right The index of the second operand.
+     * @param value The value resulting from the operation.
+     * @param requires_grad Whether a gradient is required for the entry.
+     * @return The index of the entry.
+     */
+    public int record(DoubleBinaryOperator leftPartial, DoubleBinaryOperator rightPartial, int left, int right, double value, boolean requires_grad) {
+        return recordEntry(TapeOps.BINARY, leftPartial, rightPartial, left, right, value, requires_grad);
+    }
+
+    /**
+     * Record an entry whose backward pass is performed by a TapeBackwardFunction.
+     *
+     * @param backwardFunction The backward function of the entry.
+     * @param left The index of the first operand.
+     * @param right The index of the second operand, or -1 if none.
+     * @param value The value resulting from the operation.
+     * @param requires_grad Whether a gradient is required for the entry.
+     * @return The index of the entry.
+     */
+    public int record(TapeBackwardFunction<DoubleTape> backwardFunction, int left, int right, double value, boolean requires_grad) {
+        return recordEntry(TapeOps.CUSTOM, backwardFunction, null, left, right, value, requires_grad);
+    }
+
+    public double value(int index) {
+        return valueAt(index);
+    }
+
+    public void setValue(int index, double value) {
+        setValueAt(index, value);
+    }
+
+    /**
+     * Obtain the gradient accumulated for an entry.
+     *
+     * @param index The index of the entry.
+     * @return The gradient, or zero if no gradient has been accumulated.
+     */
+    public double grad(int index) {
+        return gradAt(index);
+    }
+
+    /**
+     * Accumulate a delta into the gradient of an entry, if the entry requires a gradient.
+     *
+     * @param index The index of the entry.
+     * @param delta The delta to accumulate.
+     */
+    public void accumulateGrad(int index, double delta) {
+        accumulateGradAt(index, delta);
+    }
+
+    /**
+     * Back propagate a gradient from an entry to the entries from which it was computed.
+     *
+     * The gradients of leaf entries accumulate across backward passes, while those of the non-leaf entries
+     * reachable from the root are reset at the start of each pass.
+     *
+     * @param root The index of the entry from which to back propagate.
+     * @param gradient The gradient of the root entry.
+     */
+    public void backward(int root, double gradient) {
+        backwardFrom(root, gradient);
+    }
+
+    /**
+     * Holds the values, gradients and scalar operands of the entries as doubles.
+     */
+    private static class DoubleElements implements Elements {
+
+        private double[] scalars = new double[INITIAL_CAPACITY];
+        private double[] values = new double[INITIAL_CAPACITY];
+        private double[] grads = new double[INITIAL_CAPACITY];
+
+        @Override
+        public double value(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void setValue(int index, double value) {
+            this.values[index] = value;
+        }
+
+        @Override
+        public double scalar(int index) {
+            return scalars[index];
+        }
+
+        @Override
+        public void setScalar(int index, double scalar) {
+            this.scalars[index] = scalar;
+        }
+
+        @Override
+        public double grad(int index) {
+            return grads[index];
+        }
+
+        @Override
+        public void addGrad(int index, double delta) {
+            grads[index] += delta;
+        }
+
+        @Override
+        public void clearGrads(int from, int to) {
+            Arrays.fill(grads, from, to, 0d);
+        }
+
+        @Override
+        public double round(double value) {
+            return value;
+        }
+
+        @Override
+        public double applyUnary(Object derivative, double value) {
+            return ((DoubleUnaryOperator) derivative).applyAsDouble(value);
+        }
+
+        @Override
+        public double applyBinary(Object partial, double value, double other) {
+            return ((DoubleBinaryOperator) partial).applyAsDouble(value, other);
+        }
+
+        @Override
+        public void grow(int capacity) {
+            this.scalars = Arrays.copyOf(scalars, capacity);
+            this.values = Arrays.copyOf(values, capacity);
+            this.grads = Arrays.copyOf(grads, capacity);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.arithmetic.operations.ArithmeticOperations;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Base class for scalar AutogradValues that record their operations on a DoubleTape, so that values
+ * and gradients are held as primitive doubles on both the forward and backward passes.
+ *
+ * The data() accessor boxes the value for compatibility with the AutogradValue API - use item() to obtain
+ * the primitive value.  Operations applied with DifferentiableUnaryOperators or DifferentiableBinaryOperators
+ * are back propagated through AutogradValues, so use the DoubleUnaryOperator and DoubleBinaryOperator variants
+ * of apply to avoid boxing for custom operations.
+ *
+ * @param <V> The concrete type of this AutogradValue.
+ * @param <C> The type of context required for this AutogradValue, eg. Size,
+ * @author Michael Lavelle
+ */
+public abstract class DoubleTapeAutogradValueImpl<V extends AutogradValue<V, Double, C> & ArithmeticOperations<V>, C> extends PrimitiveTapeAutogradValueImpl<V, Double, C, DoubleTape> {
+
+    /**
+     * Create a leaf AutogradValue, recorded on the specified tape unless gradient tracking is disabled and
+     * no gradient is required.
+     *
+     * @param properties The properties of the AutogradValue.
+     * @param tape The tape on which to record the AutogradValue.
+     * @param value The value of the AutogradValue.
+     */
+    protected DoubleTapeAutogradValueImpl(AutogradValueProperties<C> properties, DoubleTape tape, double value) {
+        super(properties, tape, value);
+    }
+
+    /**
+     * Create an AutogradValue referencing an existing entry on the specified tape.
+     *
+     * @param tape The tape.
+     * @param index The index of the entry.
+     * @param context The context of the AutogradValue.
+     * @param registry The registry with which to register the AutogradValue, or null if none.
+     */
+    protected DoubleTapeAutogradValueImpl(DoubleTape tape, int index, C context, AutogradValueRegistry registry) {
+        super(tape, index, context, registry);
+    }
+
+    /**
+     * Obtain the value of this AutogradValue as a primitive double.
+     *
+     * @return The value.
+     */
+    public double item() {
+        return value();
+    }
+
+    @Override
+    protected Double valueOf(double value) {
+        return value;
+    }
+
+    /**
+     * Applies a unary operation to this AutogradValue.
+     *
+     * @param forward The operation.
+     * @param derivative The derivative of the operation, as a function of this AutogradValue's value.
+     * @return A new AutogradValue containing the result of the operation.
+     */
+    public V apply(DoubleUnaryOperator forward, DoubleUnaryOperator derivative) {
+        double result = forward.applyAsDouble(item());
+        if (!GradMode.is_enabled()) {
+            return detached(result, context());
+        }
+        return createAutogradValue(tape.record(derivative, entry(), result, requires_grad()), context());
+    }
+
+    /**
+     * Applies a binary operation to this AutogradValue and the other AutogradValue.
+     *
+     * @param forward The operation.
+     * @param leftPartial The partial derivative of the operation with respect to this AutogradValue.
+     * @param rightPartial The partial derivative of the operation with respect to the other AutogradValue.
+     * @param other The other AutogradValue.
+     * @return A new AutogradValue containing the result of the operation.
+     */
+    public V apply(DoubleBinaryOperator forward, DoubleBinaryOperator leftPartial, DoubleBinaryOperator rightPartial, V other) {
+        DoubleTapeAutogradValueImpl<V, C> recorded = recorded(other);
+        double result = forward.applyAsDouble(item(), recorded.item());
+        if (!GradMode.is_enabled()) {
+            return detached(result, context());
+        }
+        return createAutogradValue(tape.record(leftPartial, rightPartial, entry(), recorded.entry(), result,
+                requires_grad() || recorded.requires_grad()), context());
+    }
+}
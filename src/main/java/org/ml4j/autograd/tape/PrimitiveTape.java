@@ -0,0 +1,360 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.ml4j.autograd.GradMode;
+
+import java.util.Arrays;
+
+/**
+ * Base class for Tapes of primitive entries, holding the op code, operand indices, scalar operand, value and
+ * gradient of each entry in parallel growable arrays, so that neither the forward nor the backward pass boxes values.
+ *
+ * The values, gradients and scalar operands are held by an Elements strategy for the primitive type of the Tape,
+ * and are exchanged with it as doubles.  The strategy rounds each result to its precision, so the backward pass
+ * performs the same arithmetic as it would on the primitive type itself.
+ *
+ * Operations other than those with their own op codes are recorded with the UNARY or BINARY op codes, along
+ * with partial derivatives held in side tables, which are applied by the Elements strategy.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <T> The concrete type of this Tape.
+ */
+public abstract class PrimitiveTape<T extends PrimitiveTape<T>> implements Tape {
+
+    protected static final int INITIAL_CAPACITY = 64;
+
+    private final Elements elements;
+    private byte[] ops;
+    private int[] left;
+    private int[] right;
+    private boolean[] requiresGrad;
+    private boolean[] hasGrads;
+    private boolean[] reachable;
+    private Object[] functions;
+    private Object[] otherFunctions;
+    private int size;
+    private int generation;
+    private boolean backward;
+
+    protected PrimitiveTape(Elements elements) {
+        this.elements = elements;
+        this.ops = new byte[INITIAL_CAPACITY];
+        this.left = new int[INITIAL_CAPACITY];
+        this.right = new int[INITIAL_CAPACITY];
+        this.requiresGrad = new boolean[INITIAL_CAPACITY];
+        this.hasGrads = new boolean[INITIAL_CAPACITY];
+        this.reachable = new boolean[INITIAL_CAPACITY];
+        this.functions = new Object[INITIAL_CAPACITY];
+        this.otherFunctions = new Object[INITIAL_CAPACITY];
+    }
+
+    protected abstract T self();
+
+    int recordLeaf(double value, boolean requires_grad) {
+        return recordEntry(TapeOps.LEAF, -1, -1, 0, value, requires_grad);
+    }
+
+    int recordEntry(byte op, int left, int right, double scalar, double value, boolean requires_grad) {
+        if (size == ops.length) {
+            grow();
+        }
+        int index = size++;
+        if (GradMode.is_enabled()) {
+            this.ops[index] = op;
+            this.left[index] = left;
+            this.right[index] = right;
+            this.requiresGrad[index] = requires_grad;
+        } else {
+            // Only the value is recorded when gradient tracking is disabled, as a constant leaf
+            this.ops[index] = TapeOps.LEAF;
+            this.left[index] = -1;
+            this.right[index] = -1;
+            this.requiresGrad[index] = op == TapeOps.LEAF && requires_grad;
+        }
+        elements.setScalar(index, scalar);
+        elements.setValue(index, value);
+        return index;
+    }
+
+    int recordEntry(byte op, Object function, Object otherFunction, int left, int right, double value, boolean requires_grad) {
+        int index = recordEntry(op, left, right, 0, value, requires_grad);
+        if (ops[index] != TapeOps.LEAF) {
+            this.functions[index] = function;
+            this.otherFunctions[index] = otherFunction;
+        }
+        return index;
+    }
+
+    double valueAt(int index) {
+        return elements.value(index);
+    }
+
+    void setValueAt(int index, double value) {
+        elements.setValue(index, value);
+    }
+
+    double gradAt(int index) {
+        return elements.grad(index);
+    }
+
+    double round(double value) {
+        return elements.round(value);
+    }
+
+    @Override
+    public boolean hasGrad(int index) {
+        return hasGrads[index];
+    }
+
+    @Override
+    public boolean requires_grad(int index) {
+        return requiresGrad[index];
+    }
+
+    @Override
+    public void setRequires_grad(int index, boolean requires_grad) {
+        this.requiresGrad[index] = requires_grad;
+    }
+
+    @Override
+    public boolean isBackward() {
+        return backward;
+    }
+
+    @Override
+    public int generation() {
+        return generation;
+    }
+
+    void accumulateGradAt(int index, double delta) {
+        if (requiresGrad[index]) {
+            elements.addGrad(index, delta);
+            hasGrads[index] = true;
+        }
+    }
+
+    void backwardFrom(int root, double gradient) {
+        boolean[] reachable = markReachable(root);
+        for (int i = 0; i <= root; i++) {
+            if (reachable[i] && ops[i] != TapeOps.LEAF) {
+                elements.clearGrads(i, i + 1);
+                hasGrads[i] = false;
+            }
+        }
+        accumulateGradAt(root, gradient);
+        int mark = size;
+        backward = true;
+        try {
+            for (int i = root; i >= 0; i--) {
+                if (reachable[i] && hasGrads[i] && ops[i] != TapeOps.LEAF) {
+                    backwardEntry(i, elements.grad(i));
+                    if (size > mark) {
+                        // Discard any entries recorded by a custom backward function
+                        discard(mark);
+                    }
+                }
+            }
+        } finally {
+            backward = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void backwardEntry(int index, double grad) {
+        int l = left[index];
+        int r = right[index];
+        Elements e = elements;
+        switch (ops[index]) {
+            case TapeOps.ADD:
+                accumulateGradAt(l, grad);
+                accumulateGradAt(r, grad);
+                break;
+            case TapeOps.SUB:
+                accumulateGradAt(l, grad);
+                accumulateGradAt(r, -grad);
+                break;
+            case TapeOps.MUL:
+                accumulateGradAt(l, grad * e.value(r));
+                accumulateGradAt(r, grad * e.value(l));
+                break;
+            case TapeOps.DIV:
+                accumulateGradAt(l, grad / e.value(r));
+                accumulateGradAt(r, e.round(-grad * e.value(l)) / e.round(e.value(r) * e.value(r)));
+                break;
+            case TapeOps.ADD_SCALAR:
+            case TapeOps.SUB_SCALAR:
+                accumulateGradAt(l, grad);
+                break;
+            case TapeOps.MUL_SCALAR:
+                accumulateGradAt(l, grad * e.scalar(index));
+                break;
+            case TapeOps.DIV_SCALAR:
+                accumulateGradAt(l, grad / e.scalar(index));
+                break;
+            case TapeOps.NEG:
+                accumulateGradAt(l, -grad);
+                break;
+            case TapeOps.GT:
+                accumulateGradAt(l, e.value(l) > e.scalar(index) ? grad : 0);
+                break;
+            case TapeOps.GTE:
+                accumulateGradAt(l, e.value(l) >= e.scalar(index) ? grad : 0);
+                break;
+            case TapeOps.RELU:
+                accumulateGradAt(l, e.value(l) > 0 ? grad : 0);
+                break;
+            case TapeOps.UNARY:
+                accumulateGradAt(l, grad * e.applyUnary(functions[index], e.value(l)));
+                break;
+            case TapeOps.BINARY:
+                accumulateGradAt(l, grad * e.applyBinary(functions[index], e.value(l), e.value(r)));
+                accumulateGradAt(r, grad * e.applyBinary(otherFunctions[index], e.value(l), e.value(r)));
+                break;
+            case TapeOps.CUSTOM:
+                ((TapeBackwardFunction<T>) functions[index]).backward(self(), index);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported op code:" + ops[index]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void truncate(int mark) {
+        if (mark < 0 || mark > size) {
+            throw new IllegalArgumentException("Mark must be between 0 and " + size);
+        }
+        discard(mark);
+        generation++;
+    }
+
+    @Override
+    public void zero_grad() {
+        elements.clearGrads(0, size);
+        Arrays.fill(hasGrads, 0, size, false);
+    }
+
+    @Override
+    public void zero_grad(int index) {
+        elements.clearGrads(index, index + 1);
+        hasGrads[index] = false;
+    }
+
+    @Override
+    public void zero_grad_reachable(int root) {
+        boolean[] reachable = markReachable(root);
+        for (int i = 0; i <= root; i++) {
+            if (reachable[i]) {
+                zero_grad(i);
+            }
+        }
+    }
+
+    /**
+     * Mark the entries reachable from an entry, ie. the entry and those from which it was computed.
+     *
+     * @param root The index of the entry.
+     * @return Flags indicating whether each entry up to and including the root is reachable.
+     */
+    private boolean[] markReachable(int root) {
+        Arrays.fill(reachable, 0, root + 1, false);
+        reachable[root] = true;
+        for (int i = root; i >= 0; i--) {
+            if (reachable[i] && ops[i] != TapeOps.LEAF) {
+                if (left[i] >= 0) {
+                    reachable[left[i]] = true;
+                }
+                if (right[i] >= 0) {
+                    reachable[right[i]] = true;
+                }
+            }
+        }
+        return reachable;
+    }
+
+    private void discard(int mark) {
+        elements.clearGrads(mark, size);
+        Arrays.fill(hasGrads, mark, size, false);
+        Arrays.fill(functions, mark, size, null);
+        Arrays.fill(otherFunctions, mark, size, null);
+        size = mark;
+    }
+
+    private void grow() {
+        int capacity = ops.length * 2;
+        this.ops = Arrays.copyOf(ops, capacity);
+        this.left = Arrays.copyOf(left, capacity);
+        this.right = Arrays.copyOf(right, capacity);
+        this.requiresGrad = Arrays.copyOf(requiresGrad, capacity);
+        this.hasGrads = Arrays.copyOf(hasGrads, capacity);
+        this.reachable = new boolean[capacity];
+        this.functions = Arrays.copyOf(functions, capacity);
+        this.otherFunctions = Arrays.copyOf(otherFunctions, capacity);
+        elements.grow(capacity);
+    }
+
+    /**
+     * Holds the values, gradients and scalar operands of the entries of a PrimitiveTape as a primitive type,
+     * and performs the element operations that depend on that type.
+     */
+    protected interface Elements {
+
+        double value(int index);
+
+        void setValue(int index, double value);
+
+        double scalar(int index);
+
+        void setScalar(int index, double scalar);
+
+        double grad(int index);
+
+        /**
+         * Add a delta, rounded to the precision of the primitive type, to the gradient of an entry.
+         *
+         * @param index The index of the entry.
+         * @param delta The delta.
+         */
+        void addGrad(int index, double delta);
+
+        /**
+         * Zero the gradients of a range of entries.
+         *
+         * @param from The index of the first entry, inclusive.
+         * @param to The index of the last entry, exclusive.
+         */
+        void clearGrads(int from, int to);
+
+        /**
+         * Round an intermediate result to the precision of the primitive type.
+         *
+         * @param value The result.
+         * @return The rounded result.
+         */
+        double round(double value);
+
+        double applyUnary(Object derivative, double value);
+
+        double applyBinary(Object partial, double value, double other);
+
+        void grow(int capacity);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.CachingDataSupplier;
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.arithmetic.operations.ArithmeticOperations;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.operators.DifferentiableBinaryOperator;
+import org.ml4j.autograd.operators.DifferentiableUnaryOperator;
+
+import java.util.function.Supplier;
+
+/**
+ * Base class for scalar AutogradValues that record their operations on a PrimitiveTape, so that values
+ * and gradients are held as primitives on both the forward and backward passes.
+ *
+ * The data() accessor boxes the value for compatibility with the AutogradValue API.  Operations applied with
+ * DifferentiableUnaryOperators or DifferentiableBinaryOperators are back propagated through AutogradValues,
+ * so subclasses provide primitive variants of apply to avoid boxing for custom operations.
+ *
+ * @param <V> The concrete type of this AutogradValue.
+ * @param <D> The boxed type of the primitive values, eg. Float.
+ * @param <C> The type of context required for this AutogradValue, eg. Size,
+ * @param <T> The type of PrimitiveTape.
+ * @author Michael Lavelle
+ */
+public abstract class PrimitiveTapeAutogradValueImpl<V extends AutogradValue<V, D, C> & ArithmeticOperations<V>, D extends Number, C, T extends PrimitiveTape<T>> extends TapeAutogradValueBase<V, D, C, T> implements ArithmeticOperations<V> {
+
+    private CachingDataSupplier<D> data;
+    private double detachedValue;
+
+    /**
+     * Create a leaf AutogradValue, recorded on the specified tape unless gradient tracking is disabled and
+     * no gradient is required.
+     *
+     * @param properties The properties of the AutogradValue.
+     * @param tape The tape on which to record the AutogradValue.
+     * @param value The value of the AutogradValue.
+     */
+    protected PrimitiveTapeAutogradValueImpl(AutogradValueProperties<C> properties, T tape, double value) {
+        super(properties, tape, isRecorded(properties) ? tape.recordLeaf(value, properties.isRequires_grad()) : DETACHED);
+        this.detachedValue = value;
+    }
+
+    /**
+     * Create an AutogradValue referencing an existing entry on the specified tape.
+     *
+     * @param tape The tape.
+     * @param index The index of the entry.
+     * @param context The context of the AutogradValue.
+     * @param registry The registry with which to register the AutogradValue, or null if none.
+     */
+    protected PrimitiveTapeAutogradValueImpl(T tape, int index, C context, AutogradValueRegistry registry) {
+        super(tape, index, context, registry);
+    }
+
+    /**
+     * Boxes a primitive value of this AutogradValue's type.
+     *
+     * @param value The value, widened to a double.
+     * @return The boxed value.
+     */
+    protected abstract D valueOf(double value);
+
+    /**
+     * Obtain the value of this AutogradValue, widened to a double.
+     *
+     * @return The value.
+     */
+    protected double value() {
+        return index == DETACHED ? detachedValue : tape.valueAt(index);
+    }
+
+    private double value(V other) {
+        return this.<PrimitiveTapeAutogradValueImpl<V, D, C, T>>recorded(other).value();
+    }
+
+    private void setValue(double value) {
+        if (index == DETACHED) {
+            this.detachedValue = tape.round(value);
+            detachedDataChanged();
+        } else {
+            tape.setValueAt(index, value);
+        }
+    }
+
+    /**
+     * Creates a detached AutogradValue of type V holding the result of an operation performed while gradient
+     * tracking is disabled.  The value is rounded to the precision of the tape, as it would be if recorded, so that
+     * results do not depend on whether gradient tracking is enabled.
+     *
+     * @param value The value of the AutogradValue.
+     * @param context The context of the AutogradValue.
+     * @return a detached AutogradValue of type V.
+     */
+    @SuppressWarnings("unchecked")
+    protected V detached(double value, C context) {
+        V detached = createAutogradValue(DETACHED, context);
+        ((PrimitiveTapeAutogradValueImpl<V, D, C, T>) detached).detachedValue = tape.round(value);
+        return detached;
+    }
+
+    @Override
+    protected int recordConstant() {
+        return tape.recordLeaf(detachedValue, false);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void copyGradTo(V grad) {
+        ((PrimitiveTapeAutogradValueImpl<V, D, C, T>) grad).setValue(tape.gradAt(index));
+    }
+
+    private V record(byte op, V other, double result) {
+        TapeAutogradValueBase<V, D, C, T> recorded = recorded(other);
+        if (!GradMode.is_enabled()) {
+            return detached(result, context());
+        }
+        return createAutogradValue(tape.recordEntry(op, entry(), recorded.entry(), 0, result, requires_grad() || recorded.requires_grad()), context());
+    }
+
+    private V record(byte op, double scalar, double result) {
+        if (!GradMode.is_enabled()) {
+            return detached(result, context());
+        }
+        return createAutogradValue(tape.recordEntry(op, entry(), -1, scalar, result, requires_grad()), context());
+    }
+
+    @Override
+    public V add(V other) {
+        return record(TapeOps.ADD, other, value() + value(other));
+    }
+
+    @Override
+    public V add(float other) {
+        return record(TapeOps.ADD_SCALAR, other, value() + other);
+    }
+
+    @Override
+    public V sub(V other) {
+        return record(TapeOps.SUB, other, value() - value(other));
+    }
+
+    @Override
+    public V sub(float other) {
+        return record(TapeOps.SUB_SCALAR, other, value() - other);
+    }
+
+    @Override
+    public V mul(V other) {
+        return record(TapeOps.MUL, other, value() * value(other));
+    }
+
+    @Override
+    public V mul(float other) {
+        return record(TapeOps.MUL_SCALAR, other, value() * other);
+    }
+
+    @Override
+    public V div(V other) {
+        return record(TapeOps.DIV, other, value() / value(other));
+    }
+
+    @Override
+    public V div(float other) {
+        return record(TapeOps.DIV_SCALAR, other, value() / other);
+    }
+
+    @Override
+    public V neg() {
+        return record(TapeOps.NEG, 0, -value());
+    }
+
+    @Override
+    public V gt(float value) {
+        return record(TapeOps.GT, value, value() > value ? 1 : 0);
+    }
+
+    @Override
+    public V gte(float value) {
+        return record(TapeOps.GTE, value, value() >= value ? 1 : 0);
+    }
+
+    public V relu() {
+        return record(TapeOps.RELU, 0, value() < 0 ? 0 : value());
+    }
+
+    @Override
+    public V add_(V other) {
+        setValue(value() + value(other));
+        return self();
+    }
+
+    @Override
+    public V sub_(V other) {
+        setValue(value() - value(other));
+        return self();
+    }
+
+    @Override
+    public float[] getDataAsFloatArray() {
+        return new float[] {(float) value()};
+    }
+
+    @Override
+    public V apply(DifferentiableUnaryOperator<V, D, C> op) {
+        C outputContext = op.getContextMapper().apply(context());
+        double result = op.getForward().apply(data().get()).doubleValue();
+        if (!GradMode.is_enabled()) {
+            return detached(result, outputContext);
+        }
+        int left = entry();
+        TapeBackwardFunction<T> backwardFunction = (t, i) ->
+            t.accumulateGradAt(left, op.getBackwardThis().apply(createAutogradValue(t, t.recordLeaf(t.gradAt(i), false), outputContext, null), self()).data().get().doubleValue());
+        return createAutogradValue(tape.recordEntry(TapeOps.CUSTOM, backwardFunction, null, left, -1, result, requires_grad()), outputContext);
+    }
+
+    @Override
+    public V apply(DifferentiableBinaryOperator<V, D, C> op, V other) {
+        TapeAutogradValueBase<V, D, C, T> recorded = recorded(other);
+        C outputContext = op.getContextMapper().apply(context(), other.context());
+        double result = op.getForward().apply(data().get(), other.data().get()).doubleValue();
+        if (!GradMode.is_enabled()) {
+            return detached(result, outputContext);
+        }
+        int left = entry();
+        int right = recorded.entry();
+        TapeBackwardFunction<T> backwardFunction = (t, i) -> {
+            V gradient = createAutogradValue(t, t.recordLeaf(t.gradAt(i), false), outputContext, null);
+            Pair<V, V> pair = new ImmutablePair<>(self(), other);
+            if (requires_grad()) {
+                t.accumulateGradAt(left, op.getBackwardThis().apply(gradient, pair).data().get().doubleValue());
+            }
+            if (recorded.requires_grad()) {
+                t.accumulateGradAt(right, op.getBackwardOther().apply(gradient, pair).data().get().doubleValue());
+            }
+        };
+        return createAutogradValue(tape.recordEntry(TapeOps.CUSTOM, backwardFunction, null, left, right, result,
+                requires_grad() || recorded.requires_grad()), outputContext);
+    }
+
+    @Override
+    public void swapWith(V other) {
+        super.swapWith(other);
+        if (other instanceof PrimitiveTapeAutogradValueImpl) {
+            @SuppressWarnings("unchecked")
+            PrimitiveTapeAutogradValueImpl<V, D, C, T> otherImpl = (PrimitiveTapeAutogradValueImpl<V, D, C, T>) other;
+            double otherValue = otherImpl.detachedValue;
+            otherImpl.detachedValue = detachedValue;
+            this.detachedValue = otherValue;
+        }
+    }
+
+    @Override
+    protected Supplier<D> multiplicativeIdentity() {
+        return () -> valueOf(1);
+    }
+
+    @Override
+    protected void backpropagate(D gradient) {
+        tape.backwardFrom(index, gradient.doubleValue());
+    }
+
+    @Override
+    protected void accumulateGrad(D gradient) {
+        tape.accumulateGradAt(index, gradient.doubleValue());
+    }
+
+    @Override
+    public CachingDataSupplier<D> data() {
+        if (data == null) {
+            this.data = new TapeDataSupplier();
+        }
+        return data;
+    }
+
+    @Override
+    public V data_(Supplier<D> data) {
+        setValue(data.get().doubleValue());
+        return self();
+    }
+
+    /**
+     * Supplies the value of the tape entry currently referenced by this AutogradValue, or its detached value.
+     */
+    private class TapeDataSupplier implements CachingDataSupplier<D> {
+
+        @Override
+        public void clearCache() {
+            // The value is held on the tape, so there is no cache to clear.
+        }
+
+        @Override
+        public D get() {
+            return valueOf(value());
+        }
+    }
+}
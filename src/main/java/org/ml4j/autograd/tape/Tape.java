@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+/**
+ * A Tape (or Wengert list) records the operations performed on AutogradValues as a flat list of
+ * op codes and operand indices, rather than as a graph of Node objects.
+ *
+ * Backpropagation is a single loop over the tape in reverse order of recording, and the tape can be
+ * truncated back to an earlier mark once the values recorded after that mark are no longer required,
+ * eg. at the end of each iteration of an optimisation loop.
+ *
+ * Tapes are not thread-safe.
+ *
+ * @author Michael Lavelle
+ */
+public interface Tape {
+
+    /**
+     * Obtain the number of entries recorded on this Tape, which can be used as a mark for truncate.
+     *
+     * @return The number of entries recorded on this Tape.
+     */
+    int size();
+
+    /**
+     * Discard all entries recorded after the specified mark.  AutogradValues referencing discarded
+     * entries must no longer be used.
+     *
+     * @param mark The number of entries to retain.
+     */
+    void truncate(int mark);
+
+    /**
+     * Discard the gradients accumulated for all entries on this Tape.
+     */
+    void zero_grad();
+
+    /**
+     * Discard the gradient accumulated for an entry on this Tape.
+     *
+     * @param index The index of the entry.
+     */
+    void zero_grad(int index);
+
+    /**
+     * Discard the gradients accumulated for an entry and for the entries from which it was computed, leaving
+     * those of entries not reachable from it untouched.
+     *
+     * @param root The index of the entry.
+     */
+    void zero_grad_reachable(int root);
+
+    boolean requires_grad(int index);
+
+    void setRequires_grad(int index, boolean requires_grad);
+
+    /**
+     * Whether a gradient has been accumulated for an entry.
+     *
+     * @param index The index of the entry.
+     * @return Whether a gradient has been accumulated.
+     */
+    boolean hasGrad(int index);
+
+    /**
+     * Whether a backward pass through this tape is in progress - entries recorded during the backward pass
+     * are discarded once it completes.
+     *
+     * @return Whether a backward pass is in progress.
+     */
+    boolean isBackward();
+
+    /**
+     * The number of times this tape has been truncated, allowing holders of entry indices to detect when
+     * their indices may have been discarded.
+     *
+     * @return The generation of this tape.
+     */
+    int generation();
+
+}
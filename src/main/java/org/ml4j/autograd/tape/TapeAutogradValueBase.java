@@ -0,0 +1,432 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.ml4j.autograd.AutogradScope;
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.BackwardConfig;
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.impl.NodeImpl;
+import org.ml4j.autograd.impl.WeakNodeList;
+import org.ml4j.autograd.node.GradNode;
+import org.ml4j.autograd.node.ValueNode;
+
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * Base class for AutogradValues that reference an entry recorded on a Tape, rather than a Node in a graph.
+ *
+ * As no graph of Nodes is maintained, gradients of gradients cannot be computed.  The parallel option of
+ * BackwardConfig is ignored, and as the tape is retained until truncated, the keep_graph option is implied.
+ *
+ * getValueNode() and getGradNode() return adapter Nodes, created on first use, through which this value can take
+ * part in a graph of Nodes, eg. as an operand of an operation on an AutogradValueImpl.  Within such a graph it is
+ * a leaf: gradients back propagated to it by the graph are accumulated into the gradient of its tape entry, but are
+ * not propagated further along the tape.
+ *
+ * Operations performed while gradient tracking is disabled are not recorded on the tape.  Their results are detached
+ * AutogradValues, which hold their data themselves, as do leaves created without requires_grad while gradient tracking
+ * is disabled.  When a detached AutogradValue is the operand of a recorded operation its data is recorded as a constant
+ * leaf, and it becomes a leaf of the tape if requires_grad is set.
+ *
+ * @param <V> The concrete type of this AutogradValue.
+ * @param <D> The type of data wrapped by this AutogradValue.
+ * @param <C> The type of context required for this AutogradValue, eg. Size,
+ * @param <T> The type of Tape on which this AutogradValue is recorded.
+ * @author Michael Lavelle
+ */
+public abstract class TapeAutogradValueBase<V extends AutogradValue<V, D, C>, D, C, T extends Tape> implements AutogradValue<V, D, C> {
+
+    /**
+     * The index of detached AutogradValues, which hold their data themselves rather than referencing an entry on the tape.
+     */
+    protected static final int DETACHED = -1;
+
+    protected T tape;
+    protected int index;
+    private int constantIndex = DETACHED;
+    private int constantGeneration;
+    private C context;
+    private String name;
+    private AutogradValueRegistry registry;
+    private AutogradValueProperties<C> properties;
+    private boolean closed;
+    private boolean registered;
+    private V cachedGrad;
+    private ValueNode<V> valueNode;
+    private GradNode<V> gradNode;
+
+    /**
+     * Create a leaf AutogradValue.
+     *
+     * @param properties The properties of the AutogradValue.
+     * @param tape The tape on which the AutogradValue is recorded.
+     * @param index The index of the leaf entry, or DETACHED if the leaf is not recorded.
+     */
+    protected TapeAutogradValueBase(AutogradValueProperties<C> properties, T tape, int index) {
+        this.tape = tape;
+        this.index = index;
+        this.context = properties.getContext();
+        this.name = properties.getName();
+        this.registry = properties.getRegistry();
+        this.properties = properties;
+        register();
+    }
+
+    /**
+     * Create an AutogradValue referencing an existing entry on the specified tape.
+     *
+     * @param tape The tape.
+     * @param index The index of the entry.
+     * @param context The context of the AutogradValue.
+     * @param registry The registry with which to register the AutogradValue, or null if none.
+     */
+    protected TapeAutogradValueBase(T tape, int index, C context, AutogradValueRegistry registry) {
+        this.tape = tape;
+        this.index = index;
+        this.context = context;
+        this.registry = registry;
+        register();
+    }
+
+    private void register() {
+        // AutogradValues created by backward functions are transient, so are not registered
+        if (!tape.isBackward()) {
+            if (registry != null) {
+                registry.registerAutogradValue(this);
+                registered = true;
+                if (properties != null) {
+                    properties.registered(this);
+                }
+            }
+            AutogradScope.registerWithCurrent(this);
+        }
+    }
+
+    /**
+     * Whether a leaf with the specified properties is recorded on the tape, rather than being detached.
+     *
+     * @param properties The properties of the leaf.
+     * @return Whether the leaf is recorded.
+     */
+    protected static boolean isRecorded(AutogradValueProperties<?> properties) {
+        return GradMode.is_enabled() || properties.isRequires_grad();
+    }
+
+    /**
+     * Creates an AutogradValue of type V referencing an entry on a tape.
+     *
+     * @param tape The tape.
+     * @param index The index of the entry.
+     * @param context The context of the AutogradValue.
+     * @param registry The registry with which to register the AutogradValue, or null if none.
+     * @return an AutogradValue of type V referencing the entry.
+     */
+    protected abstract V createAutogradValue(T tape, int index, C context, AutogradValueRegistry registry);
+
+    /**
+     * Creates an AutogradValue of type V referencing a result entry recorded by this AutogradValue.
+     *
+     * @param index The index of the entry.
+     * @param context The context of the AutogradValue.
+     * @return an AutogradValue of type V referencing the entry.
+     */
+    protected V createAutogradValue(int index, C context) {
+        return createAutogradValue(tape, index, context, registry);
+    }
+
+    /**
+     * Record the data of this detached AutogradValue as a leaf entry on the tape, not requiring a gradient.
+     *
+     * @return The index of the leaf entry.
+     */
+    protected abstract int recordConstant();
+
+    /**
+     * Copy the gradient accumulated for the entry of this AutogradValue into a detached AutogradValue.
+     *
+     * @param grad The detached AutogradValue.
+     */
+    protected abstract void copyGradTo(V grad);
+
+    protected abstract Supplier<D> multiplicativeIdentity();
+
+    /**
+     * Back propagate the specified gradient from the entry referenced by this AutogradValue.
+     *
+     * @param gradient The gradient.
+     */
+    protected abstract void backpropagate(D gradient);
+
+    /**
+     * Accumulate a gradient into the gradient of the entry of this AutogradValue, if the entry requires a gradient.
+     *
+     * @param gradient The gradient.
+     */
+    protected abstract void accumulateGrad(D gradient);
+
+    public T tape() {
+        return tape;
+    }
+
+    /**
+     * The index of the entry on the tape referenced by this AutogradValue.
+     *
+     * @return The index of the entry, or DETACHED if this AutogradValue holds its data itself.
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * The index of an entry holding the data of this AutogradValue, for use as the operand of a recorded operation.
+     *
+     * The data of a detached AutogradValue is recorded as a constant leaf on first use, and recorded again once the
+     * tape has been truncated.  Constants recorded during a backward pass are discarded with it, so are not reused.
+     *
+     * @return The index of the entry.
+     */
+    protected int entry() {
+        if (index != DETACHED) {
+            return index;
+        }
+        if (tape.isBackward()) {
+            return recordConstant();
+        }
+        if (constantIndex == DETACHED || constantGeneration != tape.generation()) {
+            this.constantIndex = recordConstant();
+            this.constantGeneration = tape.generation();
+        }
+        return constantIndex;
+    }
+
+    /**
+     * Discard the constant leaf recorded for this detached AutogradValue, once its data has been replaced.
+     */
+    protected void detachedDataChanged() {
+        this.constantIndex = DETACHED;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <X extends TapeAutogradValueBase<V, D, C, T>> X recorded(V other) {
+        if (!(other instanceof TapeAutogradValueBase)) {
+            throw new IllegalArgumentException("Other value is not recorded on a tape");
+        }
+        X recorded = (X) other;
+        if (recorded.tape != tape) {
+            throw new IllegalArgumentException("Other value is recorded on a different tape");
+        }
+        return recorded;
+    }
+
+    @Override
+    public ValueNode<V> getValueNode() {
+        if (valueNode == null) {
+            valueNode = new NodeImpl<>(this::self, Collections.emptyList(), new WeakNodeList());
+        }
+        return valueNode;
+    }
+
+    @Override
+    public GradNode<V> getGradNode() {
+        if (gradNode == null) {
+            gradNode = new TapeGradNode<>(this);
+        }
+        return gradNode;
+    }
+
+    @Override
+    public V requires_grad_(boolean requires_grad) {
+        if (index == DETACHED && requires_grad) {
+            this.index = recordConstant();
+            this.constantIndex = DETACHED;
+        }
+        if (index != DETACHED) {
+            tape.setRequires_grad(index, requires_grad);
+        }
+        if (properties != null) {
+            properties.setRequires_grad(requires_grad);
+        }
+        return self();
+    }
+
+    @Override
+    public boolean requires_grad() {
+        return index != DETACHED && tape.requires_grad(index);
+    }
+
+    @Override
+    public V grad() {
+        return grad(false);
+    }
+
+    @Override
+    public V grad(boolean close) {
+        V grad = null;
+        if (gradNode != null && requires_grad() && !gradNode.isDisableNativeGradient()) {
+            grad = gradNode.native_grad().filter(g -> g.data().get() != null).orElse(null);
+        }
+        if (grad == null) {
+            if (index == DETACHED || !tape.hasGrad(index)) {
+                return null;
+            }
+            // The gradient is copied into a detached AutogradValue, so that no entry is recorded on the tape
+            if (cachedGrad == null) {
+                this.cachedGrad = createAutogradValue(DETACHED, context);
+            }
+            copyGradTo(cachedGrad);
+            grad = cachedGrad;
+        }
+        if (close && !properties().isUncloseable()) {
+            close();
+        }
+        return grad;
+    }
+
+    @Override
+    public void zero_grad() {
+        if (index != DETACHED) {
+            tape.zero_grad(index);
+        }
+    }
+
+    @Override
+    public void accumulate_grad(V gradient) {
+        if (index != DETACHED) {
+            accumulateGrad(gradient.data().get());
+        }
+    }
+
+    @Override
+    public void backward() {
+        backward(new BackwardConfig());
+    }
+
+    @Override
+    public void backward(BackwardConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config must not be null");
+        }
+        backpropagate(multiplicativeIdentity().get(), config);
+    }
+
+    @Override
+    public void backward(V gradient) {
+        backward(gradient, new BackwardConfig());
+    }
+
+    @Override
+    public void backward(V gradient, BackwardConfig config) {
+        backpropagate(gradient.data().get(), config);
+    }
+
+    private void backpropagate(D gradient, BackwardConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config must not be null");
+        }
+        if (!requires_grad()) {
+            throw new IllegalStateException("Cannot backprogate through node without requires_grad=true");
+        }
+        if (config.zero_grad()) {
+            // Zero the gradients of the entries this backward pass may accumulate into
+            tape.zero_grad_reachable(index);
+        }
+        backpropagate(gradient);
+    }
+
+    @Override
+    public void swapWith(V other) {
+        if (!(other instanceof TapeAutogradValueBase)) {
+            throw new UnsupportedOperationException("Swap not supported for this instance");
+        }
+        @SuppressWarnings("unchecked")
+        TapeAutogradValueBase<V, D, C, T> otherImpl = (TapeAutogradValueBase<V, D, C, T>) other;
+        T otherTape = otherImpl.tape;
+        otherImpl.tape = tape;
+        this.tape = otherTape;
+        int otherIndex = otherImpl.index;
+        otherImpl.index = index;
+        this.index = otherIndex;
+        C otherContext = otherImpl.context;
+        otherImpl.context = context;
+        this.context = otherContext;
+        otherImpl.constantIndex = DETACHED;
+        this.constantIndex = DETACHED;
+    }
+
+    @Override
+    public C context() {
+        return context;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public V name_(String name) {
+        this.name = name;
+        if (properties != null) {
+            properties.setName(name);
+        }
+        return self();
+    }
+
+    @Override
+    public boolean create_graph() {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isClosing() {
+        return false;
+    }
+
+    @Override
+    public void setClosed(boolean closed) {
+        boolean wasClosed = this.closed;
+        this.closed = closed;
+        // AutogradValues created by backward functions are not registered, so are not counted by the registry
+        if (wasClosed != closed && registered) {
+            registry.notifyClosed(this, closed);
+        }
+    }
+
+    @Override
+    public void close() {
+        setClosed(true);
+    }
+
+    @Override
+    public AutogradValueProperties<C> properties() {
+        if (properties == null) {
+            this.properties = new AutogradValueProperties<C>().setContext(context).setName(name)
+                    .setRequires_grad(requires_grad()).setRegistry(registry);
+            if (registered) {
+                properties.registered(this);
+            }
+        }
+        return properties;
+    }
+}
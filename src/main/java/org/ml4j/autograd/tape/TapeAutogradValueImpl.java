@@ -0,0 +1,345 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.CachingDataSupplier;
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.arithmetic.operations.ArithmeticOperations;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.operators.DifferentiableBinaryOperator;
+import org.ml4j.autograd.operators.DifferentiableUnaryOperator;
+
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Base class for AutogradValues that record their operations on an ArithmeticOperationsTape, rather than in a
+ * graph of Nodes.
+ *
+ * Each AutogradValue is simply a reference to an entry on the tape, so an operation allocates only the
+ * resulting data and the AutogradValue itself.  The arithmetic operations are recorded with their own op codes,
+ * and other operations, such as those applied with applyUnaryOperator or applyBinaryOperator, are recorded with
+ * their backward functions.
+ *
+ * @param <V> The concrete type of this AutogradValue.
+ * @param <D> The type of data wrapped by this AutogradValue.
+ * @param <C> The type of context required for this AutogradValue, eg. Size,
+ * @author Michael Lavelle
+ */
+public abstract class TapeAutogradValueImpl<V extends AutogradValue<V, D, C> & ArithmeticOperations<V>, D extends ArithmeticOperations<D>, C> extends TapeAutogradValueBase<V, D, C, ArithmeticOperationsTape<D>> implements ArithmeticOperations<V> {
+
+    private CachingDataSupplier<D> data;
+    private D detachedData;
+
+    /**
+     * Create a leaf AutogradValue, recorded on the specified tape unless gradient tracking is disabled and
+     * no gradient is required.
+     *
+     * @param properties The properties of the AutogradValue.
+     * @param tape The tape on which to record the AutogradValue.
+     * @param data The data wrapped by the AutogradValue.
+     */
+    protected TapeAutogradValueImpl(AutogradValueProperties<C> properties, ArithmeticOperationsTape<D> tape, D data) {
+        super(properties, tape, isRecorded(properties) ? tape.leaf(requireNonNull(data), properties.isRequires_grad()) : DETACHED);
+        if (index == DETACHED) {
+            this.detachedData = requireNonNull(data);
+        }
+    }
+
+    /**
+     * Create an AutogradValue referencing an existing entry on the specified tape.
+     *
+     * @param tape The tape.
+     * @param index The index of the entry.
+     * @param context The context of the AutogradValue.
+     * @param registry The registry with which to register the AutogradValue, or null if none.
+     */
+    protected TapeAutogradValueImpl(ArithmeticOperationsTape<D> tape, int index, C context, AutogradValueRegistry registry) {
+        super(tape, index, context, registry);
+    }
+
+    private static <D> D requireNonNull(D data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data can not be null");
+        }
+        return data;
+    }
+
+    /**
+     * Creates a detached AutogradValue of type V holding the result of an operation performed while gradient
+     * tracking is disabled.
+     *
+     * @param data The data wrapped by the AutogradValue.
+     * @param context The context of the AutogradValue.
+     * @return a detached AutogradValue of type V.
+     */
+    @SuppressWarnings("unchecked")
+    protected V detached(D data, C context) {
+        V detached = createAutogradValue(DETACHED, context);
+        ((TapeAutogradValueImpl<V, D, C>) detached).detachedData = data;
+        return detached;
+    }
+
+    @Override
+    protected int recordConstant() {
+        return tape.leaf(detachedData, false);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void copyGradTo(V grad) {
+        ((TapeAutogradValueImpl<V, D, C>) grad).setData(tape.grad(index));
+    }
+
+    private void setData(D data) {
+        if (index == DETACHED) {
+            this.detachedData = data;
+            detachedDataChanged();
+        } else {
+            tape.setValue(index, data);
+        }
+    }
+
+    private V record(byte op, int right, float scalar, D result, boolean requires_grad) {
+        return createAutogradValue(tape.record(op, entry(), right, scalar, result, requires_grad), context());
+    }
+
+    private V record(byte op, float scalar, D result) {
+        if (!GradMode.is_enabled()) {
+            return detached(result, context());
+        }
+        return record(op, -1, scalar, result, requires_grad());
+    }
+
+    private V record(byte op, V other, D result) {
+        TapeAutogradValueImpl<V, D, C> recorded = recorded(other);
+        if (!GradMode.is_enabled()) {
+            return detached(result, context());
+        }
+        return record(op, recorded.entry(), 0, result, requires_grad() || recorded.requires_grad());
+    }
+
+    @Override
+    public V add(V other) {
+        return record(TapeOps.ADD, other, data().get().add(other.data().get()));
+    }
+
+    @Override
+    public V add(float other) {
+        return record(TapeOps.ADD_SCALAR, other, data().get().add(other));
+    }
+
+    @Override
+    public V sub(V other) {
+        return record(TapeOps.SUB, other, data().get().sub(other.data().get()));
+    }
+
+    @Override
+    public V sub(float other) {
+        return record(TapeOps.SUB_SCALAR, other, data().get().sub(other));
+    }
+
+    @Override
+    public V mul(V other) {
+        return record(TapeOps.MUL, other, data().get().mul(other.data().get()));
+    }
+
+    @Override
+    public V mul(float other) {
+        return record(TapeOps.MUL_SCALAR, other, data().get().mul(other));
+    }
+
+    @Override
+    public V div(V other) {
+        return record(TapeOps.DIV, other, data().get().div(other.data().get()));
+    }
+
+    @Override
+    public V div(float other) {
+        return record(TapeOps.DIV_SCALAR, other, data().get().div(other));
+    }
+
+    @Override
+    public V neg() {
+        return record(TapeOps.NEG, 0, data().get().neg());
+    }
+
+    @Override
+    public V gt(float value) {
+        return record(TapeOps.GT, value, data().get().gt(value));
+    }
+
+    @Override
+    public V gte(float value) {
+        return record(TapeOps.GTE, value, data().get().gte(value));
+    }
+
+    @Override
+    public V add_(V other) {
+        data().get().add_(other.data().get());
+        return self();
+    }
+
+    @Override
+    public V sub_(V other) {
+        data().get().sub_(other.data().get());
+        return self();
+    }
+
+    @Override
+    public float[] getDataAsFloatArray() {
+        return data().get().getDataAsFloatArray();
+    }
+
+    /**
+     * Apply a binary operator to this AutogradValue, recording the backward functions on the tape.
+     *
+     * @param other         The other value participating in this binary operation.
+     * @param forward       The forward propagation operator to apply to the data wrapped by this value.
+     * @param backThis      The backward propagation function to apply to this AutogradValue.
+     * @param backOther     The backward propagation function to apply to the other AutogradValue.
+     * @param op            The name of the operation.
+     * @param contextMapper A function that specifies how to map the context of the two AutogradValues into the
+     *                      context for the resultant AutogradValue (eg. to specify a size transformation).
+     * @return The resultant AutogradValue.
+     */
+    public V applyBinaryOperator(V other, BinaryOperator<D> forward, BiFunction<V, Pair<V, V>, V> backThis,
+                                 BiFunction<V, Pair<V, V>, V> backOther, String op, BinaryOperator<C> contextMapper) {
+        TapeAutogradValueImpl<V, D, C> recorded = recorded(other);
+        C outputContext = contextMapper.apply(context(), other.context());
+        D output = forward.apply(data().get(), other.data().get());
+        if (!GradMode.is_enabled()) {
+            return detached(output, outputContext);
+        }
+        int left = entry();
+        int right = recorded.entry();
+        TapeBackwardFunction<ArithmeticOperationsTape<D>> backwardFunction = (t, i) -> {
+            V gradient = createAutogradValue(t, t.leaf(t.grad(i), false), outputContext, null);
+            Pair<V, V> pair = new ImmutablePair<>(self(), other);
+            if (requires_grad()) {
+                t.accumulateGrad(left, backThis.apply(gradient, pair).data().get());
+            }
+            if (recorded.requires_grad()) {
+                t.accumulateGrad(right, backOther.apply(gradient, pair).data().get());
+            }
+        };
+        int result = tape.record(backwardFunction, left, right, output, requires_grad() || recorded.requires_grad());
+        return createAutogradValue(result, outputContext);
+    }
+
+    /**
+     * Apply a unary operator to this AutogradValue, recording the backward function on the tape.
+     *
+     * @param forward       The forward propagation operator to apply to the data wrapped by this value.
+     * @param backThis      The backward propagation function to apply to this AutogradValue.
+     * @param op            The name of the operation.
+     * @param contextMapper A function that specifies how to map the context of the this AutogradValues into the
+     *                      context for the resultant AutogradValue (eg. to specify a size transformation).
+     * @return The resultant AutogradValue.
+     */
+    public V applyUnaryOperator(UnaryOperator<D> forward, BiFunction<V, V, V> backThis, String op, UnaryOperator<C> contextMapper) {
+        C outputContext = contextMapper.apply(context());
+        D output = forward.apply(data().get());
+        if (!GradMode.is_enabled()) {
+            return detached(output, outputContext);
+        }
+        int left = entry();
+        TapeBackwardFunction<ArithmeticOperationsTape<D>> backwardFunction = (t, i) ->
+            t.accumulateGrad(left, backThis.apply(createAutogradValue(t, t.leaf(t.grad(i), false), outputContext, null), self()).data().get());
+        int result = tape.record(backwardFunction, left, -1, output, requires_grad());
+        return createAutogradValue(result, outputContext);
+    }
+
+    /**
+     * Apply an inline binary operator to this AutogradValue.
+     *
+     * @param other   The other value participating in this binary operation.
+     * @param forward The forward propagation operator to apply to the data wrapped by this value.
+     * @param op      The name of the operation.
+     * @return This AutogradValue.
+     */
+    public V applyInlineBinaryOperator(V other, BinaryOperator<D> forward, String op) {
+        setData(forward.apply(data().get(), other.data().get()));
+        return self();
+    }
+
+    @Override
+    public V apply(DifferentiableUnaryOperator<V, D, C> op) {
+        return applyUnaryOperator(op.getForward(), op.getBackwardThis(), "n/a", op.getContextMapper());
+    }
+
+    @Override
+    public V apply(DifferentiableBinaryOperator<V, D, C> op, V other) {
+        return applyBinaryOperator(other, op.getForward(), op.getBackwardThis(), op.getBackwardOther(), "n/a", op.getContextMapper());
+    }
+
+    @Override
+    public void swapWith(V other) {
+        super.swapWith(other);
+        if (other instanceof TapeAutogradValueImpl) {
+            @SuppressWarnings("unchecked")
+            TapeAutogradValueImpl<V, D, C> otherImpl = (TapeAutogradValueImpl<V, D, C>) other;
+            D otherData = otherImpl.detachedData;
+            otherImpl.detachedData = detachedData;
+            this.detachedData = otherData;
+        }
+    }
+
+    @Override
+    protected void backpropagate(D gradient) {
+        tape.backward(index, gradient);
+    }
+
+    @Override
+    protected void accumulateGrad(D gradient) {
+        tape.accumulateGrad(index, gradient);
+    }
+
+    @Override
+    public CachingDataSupplier<D> data() {
+        if (data == null) {
+            this.data = new TapeDataSupplier();
+        }
+        return data;
+    }
+
+    @Override
+    public V data_(Supplier<D> data) {
+        setData(data.get());
+        return self();
+    }
+
+    /**
+     * Supplies the data of the tape entry currently referenced by this AutogradValue, or its detached data.
+     */
+    private class TapeDataSupplier implements CachingDataSupplier<D> {
+
+        @Override
+        public void clearCache() {
+            // The data is held on the tape, so there is no cache to clear.
+        }
+
+        @Override
+        public D get() {
+            return index == DETACHED ? detachedData : tape.value(index);
+        }
+    }
+}
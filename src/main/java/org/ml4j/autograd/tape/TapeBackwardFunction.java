@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+/**
+ * The backward function for an entry recorded on a Tape with the CUSTOM op code.
+ *
+ * @author Michael Lavelle
+ *
+ * @param <T> The type of Tape.
+ */
+@FunctionalInterface
+public interface TapeBackwardFunction<T extends Tape> {
+
+    /**
+     * Back propagate the gradient accumulated for an entry, accumulating gradients into the entries of its operands.
+     *
+     * @param tape The tape on which the entry is recorded.
+     * @param index The index of the entry.
+     */
+    void backward(T tape, int index);
+}
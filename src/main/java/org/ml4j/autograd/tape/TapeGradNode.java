@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.BackwardConfig;
+import org.ml4j.autograd.node.GradNode;
+import org.ml4j.autograd.node.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * A GradNode adapting the gradient of an entry recorded on a Tape, through which a tape-based AutogradValue takes
+ * part in a graph of Nodes as a leaf.
+ *
+ * Gradients added by the graph are accumulated into the gradient of the entry, and so are not propagated further
+ * along the tape.  A native gradient supplier, if set, is honoured by the grad() of the AutogradValue as it is for
+ * AutogradValueImpls.  As Tapes are not thread-safe, neither is this GradNode.
+ *
+ * @param <V> The type of AutogradValue associated with this Node.
+ *
+ * @author Michael Lavelle
+ */
+class TapeGradNode<V extends AutogradValue<V, ?, ?>> implements GradNode<V> {
+
+    private final AutogradValue<V, ?, ?> value;
+    private final List<Node<?>> next;
+    private Supplier<Optional<V>> nativeGradientSupplier;
+    private boolean disableNativeGradient;
+    private boolean closed;
+    private boolean closing;
+
+    TapeGradNode(AutogradValue<V, ?, ?> value) {
+        this.value = value;
+        this.next = new ArrayList<>();
+    }
+
+    @Override
+    public Supplier<V> getValue() {
+        return value::grad;
+    }
+
+    @Override
+    public GradNode<V> setValue(Supplier<V> gradient) {
+        value.zero_grad();
+        value.accumulate_grad(gradient.get());
+        return this;
+    }
+
+    @Override
+    public GradNode<V> add_(V delta, BinaryOperator<V> addFunction) {
+        value.accumulate_grad(delta);
+        return this;
+    }
+
+    @Override
+    public GradNode<V> clear() {
+        value.zero_grad();
+        return this;
+    }
+
+    @Override
+    public void backward(BackwardConfig config) {
+        // A leaf of the graph - the tape is back propagated separately
+    }
+
+    @Override
+    public List<Node<?>> prev() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Node<?>> next() {
+        return next;
+    }
+
+    @Override
+    public Optional<V> native_grad() {
+        return nativeGradientSupplier != null ? nativeGradientSupplier.get() : Optional.empty();
+    }
+
+    @Override
+    public boolean isDisableNativeGradient() {
+        return disableNativeGradient;
+    }
+
+    @Override
+    public void setDisableNativeGradient(boolean disableNativeGradient) {
+        this.disableNativeGradient = disableNativeGradient;
+    }
+
+    @Override
+    public void setNativeGradientSupplier(Supplier<Optional<V>> nativeGradientSupplier) {
+        this.nativeGradientSupplier = nativeGradientSupplier;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isClosing() {
+        return closing;
+    }
+
+    @Override
+    public void setClosing(boolean closing) {
+        this.closing = closing;
+    }
+
+    @Override
+    public void setClosed(boolean closed) {
+        this.closed = closed;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+/**
+ * The op codes recorded on a Tape for each entry.
+ *
+ * @author Michael Lavelle
+ */
+public class TapeOps {
+
+    /**
+     * A leaf value, with no operands.
+     */
+    public static final byte LEAF = 0;
+
+    public static final byte ADD = 1;
+    public static final byte SUB = 2;
+    public static final byte MUL = 3;
+    public static final byte DIV = 4;
+
+    /**
+     * Binary operations with a scalar second operand, which is recorded alongside the op code.
+     */
+    public static final byte ADD_SCALAR = 5;
+    public static final byte SUB_SCALAR = 6;
+    public static final byte MUL_SCALAR = 7;
+    public static final byte DIV_SCALAR = 8;
+
+    public static final byte NEG = 9;
+    public static final byte GT = 10;
+    public static final byte GTE = 11;
+
+    public static final byte RELU = 12;
+
+    /**
+     * Operations on primitive data whose forward function and partial derivatives are held in side tables.
+     */
+    public static final byte UNARY = 13;
+    public static final byte BINARY = 14;
+
+    /**
+     * An operation whose backward pass is performed by a TapeBackwardFunction held in a side table.
+     */
+    public static final byte CUSTOM = 15;
+
+    private TapeOps() {
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.floatarray;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels of FloatArrayKernels implemented with the Vector API, using the preferred species of the host.
+ *
+ * Each kernel processes whole vectors up to the loop bound of the species, and the remaining tail of fewer elements
+ * than a vector with a scalar loop.  Loaded reflectively by FloatArrayKernels, only when the jdk.incubator.vector
+ * module is present.
+ *
+ * @author Michael Lavelle
+ */
+final class VectorFloatArrayKernels implements FloatArrayKernels.Kernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(float[] first, float[] second, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).add(FloatVector.fromArray(SPECIES, second, i)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] + second[i];
+        }
+    }
+
+    @Override
+    public void sub(float[] first, float[] second, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).sub(FloatVector.fromArray(SPECIES, second, i)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] - second[i];
+        }
+    }
+
+    @Override
+    public void mul(float[] first, float[] second, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).mul(FloatVector.fromArray(SPECIES, second, i)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] * second[i];
+        }
+    }
+
+    @Override
+    public void div(float[] first, float[] second, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).div(FloatVector.fromArray(SPECIES, second, i)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] / second[i];
+        }
+    }
+
+    @Override
+    public void add(float[] first, float scalar, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).add(scalar).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] + scalar;
+        }
+    }
+
+    @Override
+    public void mul(float[] first, float scalar, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).mul(scalar).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] * scalar;
+        }
+    }
+
+    @Override
+    public void div(float[] first, float scalar, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).div(scalar).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] / scalar;
+        }
+    }
+
+    @Override
+    public void neg(float[] first, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).neg().intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = -first[i];
+        }
+    }
+
+    @Override
+    public void gt(float[] first, float scalar, float[] out, int length) {
+        FloatVector zero = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            VectorMask<Float> mask = FloatVector.fromArray(SPECIES, first, i).compare(VectorOperators.GT, scalar);
+            zero.blend(1f, mask).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] > scalar ? 1f : 0f;
+        }
+    }
+
+    @Override
+    public void gte(float[] first, float scalar, float[] out, int length) {
+        FloatVector zero = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            VectorMask<Float> mask = FloatVector.fromArray(SPECIES, first, i).compare(VectorOperators.GE, scalar);
+            zero.blend(1f, mask).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = first[i] >= scalar ? 1f : 0f;
+        }
+    }
+
+    @Override
+    public void relu(float[] first, float[] out, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, first, i).max(0f).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = Math.max(first[i], 0f);
+        }
+    }
+}
@@ -14,9 +14,11 @@
 
 package org.ml4j.autograd;
 
-import org.junit.Test;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * @author Michael Lavelle
  */
@@ -70,4 +72,20 @@ public class BackwardConfigTest {
         Assertions.assertFalse(config.keep_graph());
         Assertions.assertFalse(config.zero_grad());
     }
+
+    @Test
+    public void testParallelDefaultsToFalseWithCommonPool() {
+        BackwardConfig config = new BackwardConfig();
+        Assertions.assertFalse(config.parallel());
+        Assertions.assertSame(ForkJoinPool.commonPool(), config.fork_join_pool());
+    }
+
+    @Test
+    public void testParallelSetAsTrueWithForkJoinPool() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        BackwardConfig config = new BackwardConfig().with_parallel(true).with_fork_join_pool(pool);
+        Assertions.assertTrue(config.parallel());
+        Assertions.assertSame(pool, config.fork_join_pool());
+        pool.shutdown();
+    }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.demo.scalar.DemoFloatAutogradValueImpl;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A test for DataParallel.
+ *
+ * @author Michael Lavelle
+ */
+public class DataParallelTest {
+
+    private static final DemoSize SIZE = new DemoSize() { };
+
+    private static final int WORKERS = 5;
+
+    @Test
+    public void test_gradients_match_sequential_backward() {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.createConcurrent(DataParallelTest.class.getName());
+
+        List<Float> shards = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            shards.add(i + 1f);
+        }
+
+        // Sequential
+        DemoAutogradValue<Float> w = create(registry, 2f, true);
+        DemoAutogradValue<Float> b = create(registry, 3f, true);
+        for (float shard : shards) {
+            loss(ParameterSet.of(w, b), shard, registry).backward();
+        }
+
+        // Data-parallel
+        DemoAutogradValue<Float> pw = create(registry, 2f, true);
+        DemoAutogradValue<Float> pb = create(registry, 3f, true);
+        ParameterSet<DemoAutogradValue<Float>> parameters = ParameterSet.of(pw, pb);
+
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        try {
+            DataParallel<DemoAutogradValue<Float>> parallel = new DataParallel<>(parameters,
+                    p -> create(registry, p.data().get(), true), executor);
+
+            List<DemoAutogradValue<Float>> losses = parallel.backward(shards,
+                    (replicas, shard) -> loss(replicas, shard, registry));
+
+            Assertions.assertEquals(WORKERS, losses.size());
+            for (int i = 0; i < WORKERS; i++) {
+                Assertions.assertEquals((2f * shards.get(i) + 3f) * (2f * shards.get(i) + 3f),
+                        losses.get(i).data().get(), 0.0001f);
+            }
+            Assertions.assertEquals(w.grad().data().get(), pw.grad().data().get(), 0.0001f);
+            Assertions.assertEquals(b.grad().data().get(), pb.grad().data().get(), 0.0001f);
+
+            // Gradients accumulate across steps until zeroed, as with backward.
+            float first = pw.grad().data().get();
+            parallel.backward(shards, (replicas, shard) -> loss(replicas, shard, registry));
+            Assertions.assertEquals(2 * first, pw.grad().data().get(), 0.0001f);
+
+            parameters.zero_grad();
+            parallel.backward(shards.subList(0, 1), (replicas, shard) -> loss(replicas, shard, registry));
+            Assertions.assertEquals(2f * (2f * 1f + 3f) * 1f, pw.grad().data().get(), 0.0001f);
+        } finally {
+            executor.shutdown();
+        }
+
+        registry.closeLocal();
+        registry.clearLocal();
+    }
+
+    @Test
+    public void test_no_live_values_after_step() {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.createConcurrent(DataParallelTest.class.getName());
+        DemoAutogradValue<Float> w = create(registry, 2f, true);
+        DemoAutogradValue<Float> b = create(registry, 3f, true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        try {
+            DataParallel<DemoAutogradValue<Float>> parallel = new DataParallel<>(ParameterSet.of(w, b),
+                    p -> create(registry, p.data().get(), true), executor);
+
+            List<Float> shards = List.of(1f, 2f, 3f, 4f, 5f);
+            for (int step = 0; step < 3; step++) {
+                parallel.backward(shards, (replicas, shard) -> loss(replicas, shard, registry))
+                        .forEach(DemoAutogradValue::close);
+
+                // Only the parameters remain live - the replicas and the graphs of the workers are closed
+                Assertions.assertEquals(2L, registry.statistics().getLiveCount());
+            }
+            Assertions.assertEquals(3f * 2f * (5f + 7f + 9f + 11f + 13f), b.grad().data().get(), 0.0001f);
+        } finally {
+            executor.shutdown();
+        }
+
+        registry.closeLocal();
+    }
+
+    @Test
+    public void test_worker_exception_is_rethrown() {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.createConcurrent(DataParallelTest.class.getName());
+        DemoAutogradValue<Float> w = create(registry, 2f, true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DataParallel<DemoAutogradValue<Float>> parallel = new DataParallel<>(ParameterSet.of(w),
+                    p -> create(registry, p.data().get(), true), executor);
+
+            IllegalArgumentException thrown = Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> parallel.backward(List.of(1f, 2f), (replicas, shard) -> {
+                        throw new IllegalArgumentException("shard " + shard);
+                    }));
+            Assertions.assertTrue(thrown.getMessage().contains("shard"));
+            Assertions.assertNull(w.grad());
+        } finally {
+            executor.shutdown();
+        }
+
+        registry.closeLocal();
+    }
+
+    @Test
+    public void test_frozen_parameters_are_not_updated() {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.createConcurrent(DataParallelTest.class.getName());
+        DemoAutogradValue<Float> w = create(registry, 2f, true);
+        DemoAutogradValue<Float> b = create(registry, 3f, false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Replicas are created requiring a gradient, but take requires_grad from their parameters.
+            DataParallel<DemoAutogradValue<Float>> parallel = new DataParallel<>(ParameterSet.of(w, b),
+                    p -> create(registry, p.data().get(), true), executor);
+
+            parallel.backward(List.of(1f, 2f), (replicas, shard) -> loss(replicas, shard, registry));
+
+            Assertions.assertEquals(2f * (2f * 1f + 3f) * 1f + 2f * (2f * 2f + 3f) * 2f, w.grad().data().get(), 0.0001f);
+            Assertions.assertNull(b.grad());
+
+            // A gradient accumulated directly into a frozen parameter is also ignored.
+            b.accumulate_grad(create(registry, 1f, false));
+            Assertions.assertNull(b.grad());
+        } finally {
+            executor.shutdown();
+        }
+
+        registry.closeLocal();
+    }
+
+    @Test
+    public void test_workers_and_reduction_require_separate_pools() {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.createConcurrent(DataParallelTest.class.getName());
+        ParameterSet<DemoAutogradValue<Float>> parameters = ParameterSet.of(create(registry, 2f, true));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> new DataParallel<>(parameters, p -> p, pool, pool));
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> new DataParallel<>(parameters, p -> p, null));
+        } finally {
+            pool.shutdown();
+        }
+
+        registry.closeLocal();
+    }
+
+    private static DemoAutogradValue<Float> loss(ParameterSet<DemoAutogradValue<Float>> parameters, float shard,
+            AutogradValueRegistry registry) {
+        DemoAutogradValue<Float> x = create(registry, shard, false);
+        DemoAutogradValue<Float> prediction = parameters.parameters().get(0).mul(x).add(parameters.parameters().get(1));
+        return prediction.mul(prediction);
+    }
+
+    private static DemoAutogradValue<Float> create(AutogradValueRegistry registry, float value, boolean requires_grad) {
+        return new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(SIZE)
+                .setRegistry(registry).setRequires_grad(requires_grad), () -> value);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.direct;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradScope;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A test for DirectFloatBufferAutogradValue.
+ *
+ * @author Michael Lavelle
+ */
+public class DirectFloatBufferAutogradValueTest {
+
+    private static final int LENGTH = 100;
+
+    private AutogradValueRegistry registry;
+
+    private DirectBufferPool pool;
+
+    private float[] x;
+    private float[] y;
+
+    @BeforeEach
+    public void setUp() {
+        this.registry = AutogradValueRegistry.create(DirectFloatBufferAutogradValueTest.class.getName());
+        this.pool = new DirectBufferPool(1024 * 1024);
+        this.x = new float[LENGTH];
+        this.y = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            x[i] = i - LENGTH / 2;
+            y[i] = 1 + i % 7;
+        }
+    }
+
+    @Test
+    public void test_forward_and_backward() {
+
+        var a = create(x, true);
+        var b = create(y, true);
+
+        var loss = a.mul(b).relu().sub(a.div(b));
+
+        float[] result = loss.getDataAsFloatArray();
+
+        loss.backward();
+
+        float[] aGrad = a.grad().getDataAsFloatArray();
+        float[] bGrad = b.grad().getDataAsFloatArray();
+
+        for (int i = 0; i < LENGTH; i++) {
+            float active = x[i] * y[i] > 0 ? 1f : 0f;
+            Assertions.assertEquals(Math.max(0, x[i] * y[i]) - x[i] / y[i], result[i], 0.0001f);
+            Assertions.assertEquals(active * y[i] - 1 / y[i], aGrad[i], 0.0001f);
+            Assertions.assertEquals(active * x[i] + x[i] / (y[i] * y[i]), bGrad[i], 0.0001f);
+        }
+    }
+
+    @Test
+    public void test_released_buffers_are_recycled() {
+
+        var data = new DirectFloatBufferOperations(pool, x);
+
+        FloatBuffer buffer = data.buffer();
+
+        Assertions.assertTrue(buffer.isDirect());
+        Assertions.assertEquals(x[3], buffer.get(3));
+
+        data.release();
+        data.release();
+
+        Assertions.assertTrue(data.isReleased());
+        Assertions.assertEquals(LENGTH * Float.BYTES, pool.retainedBytes());
+        Assertions.assertThrows(IllegalStateException.class, () -> data.add(1f));
+
+        var recycled = new DirectFloatBufferOperations(pool, y);
+
+        Assertions.assertEquals(0, pool.retainedBytes());
+        Assertions.assertArrayEquals(y, recycled.getDataAsFloatArray(), 0f);
+
+        // Buffers of a different size are not recycled
+        new DirectFloatBufferOperations(pool, 2 * LENGTH).release();
+        new DirectFloatBufferOperations(pool, LENGTH).release();
+
+        Assertions.assertEquals(3 * LENGTH * Float.BYTES, pool.retainedBytes());
+    }
+
+    @Test
+    public void test_pool_retains_at_most_max_retained_bytes() {
+
+        var smallPool = new DirectBufferPool(LENGTH * Float.BYTES);
+
+        new DirectFloatBufferOperations(smallPool, LENGTH).release();
+        new DirectFloatBufferOperations(smallPool, LENGTH).release();
+
+        Assertions.assertEquals(LENGTH * Float.BYTES, smallPool.retainedBytes());
+    }
+
+    @Test
+    public void test_close_releases_data_and_detaches_node() {
+
+        var a = create(x, true);
+        var b = create(y, true);
+
+        var c = a.mul(b);
+
+        DirectFloatBufferOperations data = c.data().get();
+
+        Assertions.assertTrue(a.getValueNode().next().contains(c.getValueNode()));
+
+        c.close();
+        c.close();
+
+        Assertions.assertTrue(c.isClosed());
+        Assertions.assertTrue(data.isReleased());
+        Assertions.assertEquals(LENGTH * Float.BYTES, pool.retainedBytes());
+        Assertions.assertTrue(c.getValueNode().prev().isEmpty());
+        Assertions.assertFalse(a.getValueNode().next().contains(c.getValueNode()));
+        Assertions.assertFalse(b.getValueNode().next().contains(c.getValueNode()));
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void test_scope_releases_intermediates_but_not_gradients() {
+
+        var a = create(x, true);
+        var b = create(y, false);
+
+        DirectFloatBufferOperations intermediate;
+
+        try (AutogradScope scope = AutogradScope.open()) {
+
+            var product = a.mul(b);
+            intermediate = product.data().get();
+
+            product.relu().backward();
+        }
+
+        Assertions.assertTrue(intermediate.isReleased());
+        Assertions.assertTrue(pool.retainedBytes() > 0);
+
+        float[] aGrad = a.grad().getDataAsFloatArray();
+        for (int i = 0; i < LENGTH; i++) {
+            Assertions.assertEquals(x[i] * y[i] > 0 ? y[i] : 0f, aGrad[i], 0.0001f);
+        }
+    }
+
+    @Test
+    public void test_scope_evaluates_kept_values_before_releasing_intermediates() {
+
+        var b = create(y, false);
+
+        DirectFloatBufferAutogradValue kept;
+        DirectFloatBufferOperations owned;
+
+        try (AutogradScope scope = AutogradScope.open()) {
+
+            // A value owning a buffer it was given, eg. as the values of a replayed ExecutionPlan do
+            owned = new DirectFloatBufferOperations(pool, x);
+            DirectFloatBufferOperations data = owned;
+            var a = new DirectFloatBufferAutogradValue(new AutogradValueProperties<Integer>().setContext(LENGTH)
+                    .setRegistry(registry).setView(false), pool, () -> data);
+            Assertions.assertEquals(x[3], a.getDataAsFloatArray()[3]);
+
+            // Not evaluated within the scope, so computed lazily from the data of a
+            kept = scope.keep(a.mul(b).relu());
+        }
+
+        Assertions.assertTrue(owned.isReleased());
+
+        float[] result = kept.getDataAsFloatArray();
+        for (int i = 0; i < LENGTH; i++) {
+            Assertions.assertEquals(Math.max(0, x[i] * y[i]), result[i], 0.0001f);
+        }
+    }
+
+    @Test
+    public void test_closing_replica_does_not_release_parameter_data() {
+
+        var parameter = create(x, true);
+
+        DirectFloatBufferOperations data = parameter.data().get();
+
+        // A replica wrapping the data of the parameter, as created by a DataParallel replicator
+        var replica = new DirectFloatBufferAutogradValue(new AutogradValueProperties<Integer>().setContext(LENGTH)
+                .setRegistry(registry).setRequires_grad(true), pool, parameter.data());
+
+        replica.mul(replica).backward();
+        Assertions.assertEquals(2 * x[3], replica.grad().getDataAsFloatArray()[3], 0.0001f);
+        replica.close();
+
+        Assertions.assertFalse(data.isReleased());
+        Assertions.assertArrayEquals(x, parameter.getDataAsFloatArray(), 0f);
+
+        parameter.close();
+
+        Assertions.assertTrue(data.isReleased());
+    }
+
+    private DirectFloatBufferAutogradValue create(float[] data, boolean requires_grad) {
+        return new DirectFloatBufferAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry).setRequires_grad(requires_grad), pool, data);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.floatarray;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.instrument.Instrumentation;
+import org.ml4j.autograd.instrument.OperationMetrics;
+import org.ml4j.autograd.pool.SizeBucketedBufferPool;
+
+/**
+ * A test for FloatArrayAutogradValue.
+ *
+ * @author Michael Lavelle
+ */
+public class FloatArrayAutogradValueTest {
+
+    private static final int LENGTH = 1000;
+
+    private AutogradValueRegistry registry;
+
+    private float[] x;
+    private float[] y;
+
+    @BeforeEach
+    public void setUp() {
+        this.registry = AutogradValueRegistry.create(FloatArrayAutogradValueTest.class.getName());
+        this.x = new float[LENGTH];
+        this.y = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            x[i] = i - LENGTH / 2;
+            y[i] = 1 + i % 7;
+        }
+    }
+
+    @Test
+    public void test_forward() {
+
+        var a = create(x.clone(), false);
+        var b = create(y.clone(), false);
+
+        // relu(a * b + a) / b - 1
+        float[] result = a.mul(b).add(a).relu().div(b).sub(1f).getDataAsFloatArray();
+
+        for (int i = 0; i < LENGTH; i++) {
+            Assertions.assertEquals(Math.max(0, x[i] * y[i] + x[i]) / y[i] - 1, result[i], 0.0001f);
+        }
+    }
+
+    @Test
+    public void test_backward() {
+
+        var a = create(x.clone(), true);
+        var b = create(y.clone(), true);
+
+        // loss = relu(a * b) - a / b, summed by the backward pass
+        a.mul(b).relu().sub(a.div(b)).backward();
+
+        float[] aGrad = a.grad().getDataAsFloatArray();
+        float[] bGrad = b.grad().getDataAsFloatArray();
+
+        for (int i = 0; i < LENGTH; i++) {
+            float active = x[i] * y[i] > 0 ? 1f : 0f;
+            Assertions.assertEquals(active * y[i] - 1 / y[i], aGrad[i], 0.0001f);
+            Assertions.assertEquals(active * x[i] + x[i] / (y[i] * y[i]), bGrad[i], 0.0001f);
+        }
+    }
+
+    @Test
+    public void test_zero_grad_reuses_gradient_array() {
+
+        var a = create(x.clone(), true);
+        var b = create(y.clone(), false);
+
+        a.mul(b).add(a.mul(b)).backward();
+
+        float[] grad = a.grad().getDataAsFloatArray();
+
+        a.zero_grad();
+
+        Assertions.assertArrayEquals(new float[LENGTH], grad, 0f);
+
+        a.mul(b).add(a.mul(b)).backward();
+
+        Assertions.assertSame(grad, a.grad().getDataAsFloatArray());
+        for (int i = 0; i < LENGTH; i++) {
+            Assertions.assertEquals(2 * y[i], grad[i], 0.0001f);
+        }
+    }
+
+    @Test
+    public void test_in_place_operations() {
+
+        var a = create(x.clone(), false);
+        var b = create(y.clone(), false);
+
+        float[] data = a.getDataAsFloatArray();
+
+        a.mul_(b).add_(b).relu_().mul_(2f).div_(b).sub_(b);
+
+        Assertions.assertSame(data, a.getDataAsFloatArray());
+        for (int i = 0; i < LENGTH; i++) {
+            Assertions.assertEquals(Math.max(0, x[i] * y[i] + y[i]) * 2 / y[i] - y[i], data[i], 0.0001f);
+        }
+    }
+
+    @Test
+    public void test_mismatched_lengths() {
+
+        var a = create(new float[2], false);
+        var b = create(new float[3], false);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> a.add(b).getDataAsFloatArray());
+    }
+
+    @Test
+    public void test_buffer_pool_recycles_closed_results() {
+
+        SizeBucketedBufferPool<FloatArrayOperations, Integer> pool = FloatArrayAutogradValue.createBufferPool(1024 * 1024);
+
+        var a = create(x.clone(), false, pool);
+        var b = create(y.clone(), false, pool);
+
+        var product = a.mul(b);
+        float[] recycled = product.getDataAsFloatArray();
+        product.close();
+
+        Assertions.assertEquals(LENGTH * Float.BYTES, pool.retainedBytes());
+        Assertions.assertEquals(1, pool.retainedBuffers());
+
+        float[] sum = a.add(b).getDataAsFloatArray();
+
+        Assertions.assertSame(recycled, sum);
+        Assertions.assertEquals(1, pool.hits());
+        Assertions.assertEquals(1, pool.misses());
+        Assertions.assertEquals(0, pool.retainedBytes());
+        for (int i = 0; i < LENGTH; i++) {
+            Assertions.assertEquals(x[i] + y[i], sum[i], 0.0001f);
+        }
+    }
+
+    @Test
+    public void test_buffer_pool_training_steps() {
+
+        SizeBucketedBufferPool<FloatArrayOperations, Integer> pool = FloatArrayAutogradValue.createBufferPool(1024 * 1024);
+
+        var a = create(x.clone(), true, pool);
+        var b = create(y.clone(), false, pool);
+
+        for (int step = 0; step < 3; step++) {
+            a.zero_grad();
+            var loss = a.mul(b).relu();
+            float[] lossData = loss.getDataAsFloatArray();
+            for (int i = 0; i < LENGTH; i++) {
+                Assertions.assertEquals(Math.max(0, x[i] * y[i]), lossData[i], 0.0001f);
+            }
+            loss.backward();
+            loss.close();
+
+            float[] aGrad = a.grad().getDataAsFloatArray();
+            for (int i = 0; i < LENGTH; i++) {
+                Assertions.assertEquals(x[i] * y[i] > 0 ? y[i] : 0f, aGrad[i], 0.0001f);
+            }
+        }
+
+        // The data of each closed loss is recycled by a later result
+        Assertions.assertTrue(pool.hits() >= 3, "Hits:" + pool.hits());
+        Assertions.assertTrue(pool.metrics().hitRate() > 0, "Hit rate:" + pool.metrics().hitRate());
+    }
+
+    @Test
+    public void test_operation_metrics() {
+
+        OperationMetrics metrics = new OperationMetrics();
+        Instrumentation.addListener(metrics);
+        try {
+            var a = create(x.clone(), true);
+            var b = create(y.clone(), false);
+
+            var loss = a.mul(b).relu();
+            loss.getDataAsFloatArray();
+            loss.backward();
+        } finally {
+            Instrumentation.removeListener(metrics);
+        }
+
+        Assertions.assertNull(Instrumentation.listener());
+        Assertions.assertEquals(1, metrics.statistics("relu").getForwardCount());
+        Assertions.assertEquals(1, metrics.statistics("relu").getBackwardCount());
+        Assertions.assertEquals(LENGTH * Float.BYTES, metrics.statistics("relu").getBytes());
+        Assertions.assertEquals(1, metrics.statistics("mult").getBackwardCount());
+        // The backward function of relu multiplies, so mult is evaluated in both passes
+        Assertions.assertTrue(metrics.statistics("mult").getForwardCount() >= 2);
+        Assertions.assertTrue(metrics.toString().contains("relu"));
+    }
+
+    @Test
+    public void test_operation_time_excludes_operands() {
+
+        OperationMetrics metrics = new OperationMetrics();
+        Instrumentation.addListener(metrics);
+        try {
+            // The operand of relu takes at least 200ms to evaluate
+            var slow = new FloatArrayAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry)
+                    .setContext(LENGTH), () -> {
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return new FloatArrayOperations(x.clone());
+                    });
+            slow.mul(2f).relu().getDataAsFloatArray();
+        } finally {
+            Instrumentation.removeListener(metrics);
+        }
+
+        Assertions.assertEquals(1, metrics.statistics("relu").getForwardCount());
+        Assertions.assertTrue(metrics.statistics("relu").getForwardNanos() < 100_000_000L);
+    }
+
+    private FloatArrayAutogradValue create(float[] data, boolean requires_grad, SizeBucketedBufferPool<FloatArrayOperations, Integer> pool) {
+        return new FloatArrayAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry).setRequires_grad(requires_grad)
+                .setContext(data.length), pool, () -> new FloatArrayOperations(data));
+    }
+
+    private FloatArrayAutogradValue create(float[] data, boolean requires_grad) {
+        return new FloatArrayAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry).setRequires_grad(requires_grad), data);
+    }
+}
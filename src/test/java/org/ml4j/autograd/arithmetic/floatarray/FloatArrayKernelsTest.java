@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.arithmetic.floatarray;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * A test for FloatArrayKernels, comparing the kernels in use with the scalar kernels.
+ *
+ * @author Michael Lavelle
+ */
+public class FloatArrayKernelsTest {
+
+    private static final FloatArrayKernels.Kernels SCALAR = new FloatArrayKernels.ScalarKernels();
+
+    @Test
+    public void test_vectorized_when_vector_api_present() {
+        boolean available = Runtime.version().feature() >= 17
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+                && !"false".equals(System.getProperty("org.ml4j.autograd.vector"));
+        Assertions.assertEquals(available, FloatArrayKernels.isVectorized());
+    }
+
+    @Test
+    public void test_kernels_match_scalar_kernels() {
+        Random random = new Random(0);
+        // Lengths either side of whole vectors, so that the tails are exercised for any species
+        for (int n = 0; n <= 70; n++) {
+            int length = n;
+            float[] first = random(random, length);
+            float[] second = random(random, length);
+            if (length > 3) {
+                first[0] = -0f;
+                first[1] = Float.NaN;
+                first[2] = 0.5f;
+                second[3] = 0f;
+            }
+            float scalar = 0.5f;
+
+            assertMatches(first, length, (out) -> FloatArrayKernels.add(first, second, out, length),
+                    (out) -> SCALAR.add(first, second, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.sub(first, second, out, length),
+                    (out) -> SCALAR.sub(first, second, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.mul(first, second, out, length),
+                    (out) -> SCALAR.mul(first, second, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.div(first, second, out, length),
+                    (out) -> SCALAR.div(first, second, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.add(first, scalar, out, length),
+                    (out) -> SCALAR.add(first, scalar, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.mul(first, scalar, out, length),
+                    (out) -> SCALAR.mul(first, scalar, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.div(first, scalar, out, length),
+                    (out) -> SCALAR.div(first, scalar, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.neg(first, out, length),
+                    (out) -> SCALAR.neg(first, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.gt(first, scalar, out, length),
+                    (out) -> SCALAR.gt(first, scalar, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.gte(first, scalar, out, length),
+                    (out) -> SCALAR.gte(first, scalar, out, length));
+            assertMatches(first, length, (out) -> FloatArrayKernels.relu(first, out, length),
+                    (out) -> SCALAR.relu(first, out, length));
+        }
+    }
+
+    @Test
+    public void test_in_place() {
+        float[] data = random(new Random(1), 37);
+        float[] expected = new float[data.length];
+        SCALAR.mul(data, data, expected, data.length);
+        FloatArrayKernels.mul(data, data, data, data.length);
+        Assertions.assertArrayEquals(expected, data, 0f);
+    }
+
+    private static void assertMatches(float[] first, int length, Consumer<float[]> kernel,
+            Consumer<float[]> scalarKernel) {
+        float[] expected = new float[length];
+        float[] actual = new float[length];
+        scalarKernel.accept(expected);
+        kernel.accept(actual);
+        for (int i = 0; i < length; i++) {
+            Assertions.assertEquals(Float.floatToIntBits(expected[i]), Float.floatToIntBits(actual[i]),
+                    "Mismatch at " + i + " of " + length + " for " + first[i]);
+        }
+    }
+
+    private static float[] random(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextFloat() * 4f - 2f;
+        }
+        return values;
+    }
+}
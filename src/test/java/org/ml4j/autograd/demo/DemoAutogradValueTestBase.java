@@ -18,12 +18,25 @@ import org.junit.Assert;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradScope;
 import org.ml4j.autograd.AutogradValue;
 import org.ml4j.autograd.AutogradValueRegistry;
 import org.ml4j.autograd.BackwardConfig;
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.ParameterSet;
+import org.ml4j.autograd.impl.AutogradValueImpl;
+import org.ml4j.autograd.impl.NodeImpl;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * A test for our DemoAutogradValue.
  * 
@@ -134,10 +147,14 @@ public abstract class DemoAutogradValueTestBase<D> {
         }
     
     protected abstract void assertEquals(D value1, D value2);
+
+    protected abstract void assertEquals(D value1, D value2, float delta);
     
     protected abstract D add(D value1, D value2);
     protected abstract D mul(D value1, float value2);
 
+    protected abstract float toFloat(D value);
+
 
     @Test
     public void test_hessian_vector() {
@@ -183,6 +200,434 @@ public abstract class DemoAutogradValueTestBase<D> {
         Assertions.assertArrayEquals(y.grad().getDataAsFloatArray(), y_grad.add(createGradValue(y_hv, false)).getDataAsFloatArray(), 0.001f);
     }
 
+    @Test
+    public void test_scope() {
+
+        var w = createGradValue(2f, true).name_("w");
+        w.properties().setUncloseable(true);
+
+        DemoAutogradValue<D> kept;
+        DemoAutogradValue<D> intermediate;
+        DemoAutogradValue<D> outerIntermediate;
+
+        try (AutogradScope outer = AutogradScope.open()) {
+
+            outerIntermediate = w.mul(3f);
+
+            try (AutogradScope inner = AutogradScope.open()) {
+
+                Assertions.assertSame(inner, AutogradScope.current());
+
+                var x = createGradValue(3f, true).name_("x");
+
+                intermediate = w.mul(x);
+
+                var loss = intermediate.add(x);
+
+                loss.backward();
+
+                kept = inner.keep(loss);
+            }
+
+            Assertions.assertSame(outer, AutogradScope.current());
+            Assertions.assertTrue(intermediate.isClosed());
+            Assertions.assertFalse(kept.isClosed());
+            Assertions.assertFalse(w.isClosed());
+            Assertions.assertFalse(outerIntermediate.isClosed());
+
+            assertEquals(createData(9f), kept.data().get());
+            assertEquals(createData(3f), w.grad().data().get());
+        }
+
+        Assertions.assertNull(AutogradScope.current());
+        Assertions.assertTrue(kept.isClosed());
+        Assertions.assertTrue(outerIntermediate.isClosed());
+        Assertions.assertFalse(w.isClosed());
+
+        w.close();
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void test_no_grad() {
+
+        var w = createGradValue(2f, true).name_("w");
+
+        var x = createGradValue(3f, false).name_("x");
+
+        DemoAutogradValue<D> y;
+
+        try (GradMode.Guard guard = GradMode.no_grad()) {
+
+            Assertions.assertFalse(GradMode.is_enabled());
+
+            y = w.mul(x).add(w).relu();
+
+            Assertions.assertFalse(y.requires_grad());
+            assertEquals(createData(8f), y.data().get());
+        }
+
+        Assertions.assertTrue(GradMode.is_enabled());
+
+        var z = w.mul(y);
+
+        z.backward();
+
+        Assertions.assertTrue(z.requires_grad());
+        assertEquals(createData(8f), w.grad().data().get());
+    }
+
+    @Test
+    public void test_checkpoint() {
+
+        var w = createGradValue(2f, true).name_("w");
+
+        var x = createGradValue(3f, true).name_("x");
+
+        var y = AutogradValueImpl.checkpoint(v -> v.mul(w).add(w).relu(), x.mul(2f));
+
+        assertEquals(createData(14f), y.data().get());
+
+        var z = y.mul(y);
+
+        z.backward();
+
+        assertEquals(createData(196f), z.data().get());
+        // dz/dw = 2y * (2x + 1), dz/dx = 2y * 2w
+        assertEquals(createData(196f), w.grad().data().get());
+        assertEquals(createData(112f), x.grad().data().get());
+    }
+
+    @Test
+    public void test_checkpoint_with_zero_grad() {
+
+        var w = createGradValue(2f, true).name_("w");
+
+        var x = createGradValue(3f, true).name_("x");
+
+        // w is used both inside and outside of the checkpointed segment
+        var y = AutogradValueImpl.checkpoint(v -> v.mul(w).add(w).relu(), x.mul(2f)).mul(w);
+
+        y.backward(new BackwardConfig().with_zero_grad(true));
+
+        // dy/dw = 14 + 2 * (2x + 1)
+        assertEquals(createData(28f), w.grad().data().get());
+    }
+
+    @Test
+    public void test_checkpoint_in_scope_leaves_no_live_values() {
+
+        var w = createGradValue(2f, true).name_("w");
+
+        for (int i = 0; i < 100; i++) {
+            try (AutogradScope scope = AutogradScope.open()) {
+                var x = createGradValue(3f, false).name_("x");
+                var y = AutogradValueImpl.checkpoint(v -> v.mul(w).add(w).relu(), x.mul(2f));
+                y.mul(y).backward();
+            }
+        }
+        var grad = w.grad();
+        assertEquals(createData(19600f), grad.data().get());
+
+        grad.close();
+        w.close();
+
+        Assertions.assertEquals(0L, registry.statistics().getLiveCount());
+    }
+
+    @Test
+    public void test_zero_grad() {
+
+        var w = createGradValue(2f, true).name_("w");
+
+        var b = createGradValue(1f, true).name_("b");
+
+        var x = createGradValue(3f, false).name_("x");
+
+        var parameters = ParameterSet.of(w, b);
+
+        w.mul(x).add(b).backward();
+        w.mul(x).add(b).backward();
+
+        assertEquals(createData(6f), w.grad().data().get());
+        assertEquals(createData(2f), b.grad().data().get());
+
+        parameters.zero_grad();
+
+        w.mul(x).add(b).backward();
+
+        assertEquals(createData(3f), w.grad().data().get());
+        assertEquals(createData(1f), b.grad().data().get());
+
+        w.mul(x).add(b).backward(new BackwardConfig().with_zero_grad(true));
+
+        assertEquals(createData(3f), w.grad().data().get());
+        assertEquals(createData(1f), b.grad().data().get());
+    }
+
+    @Test
+    public void test_parallel_zero_grad() {
+
+        var x = createGradValue(3f, false).name_("x");
+
+        List<DemoAutogradValue<D>> weights = new ArrayList<>();
+        for (int i = 0; i < 2 * ParameterSet.PARALLEL_THRESHOLD + 1; i++) {
+            weights.add(createGradValue(i, true));
+        }
+
+        var parameters = new ParameterSet<>(weights);
+
+        var loss = weights.get(0).mul(x);
+        for (int i = 1; i < weights.size(); i++) {
+            loss = loss.add(weights.get(i).mul(x));
+        }
+        loss.backward();
+
+        parameters.zero_grad(ForkJoinPool.commonPool());
+
+        for (DemoAutogradValue<D> weight : parameters) {
+            var grad = weight.grad();
+            if (grad != null) {
+                Assertions.assertArrayEquals(new float[] {0f}, grad.getDataAsFloatArray(), 0f);
+            }
+        }
+
+        loss.backward();
+
+        for (DemoAutogradValue<D> weight : parameters) {
+            assertEquals(createData(3f), weight.grad().data().get());
+        }
+    }
+
+    @Test
+    public void test_backward_deep_chain() {
+
+        var a = createGradValue(1f, true).name_("a");
+
+        var b = a;
+        for (int i = 0; i < 20000; i++) {
+            b = b.add(1f).name_("b");
+        }
+
+        b.backward();
+
+        assertEquals(createData(1f), a.grad().data().get());
+    }
+
+    @Test
+    public void test_repeated_backward_with_keep_graph() {
+
+        var x = createGradValue(3f, true).name_("x");
+
+        var z = x.mul(x).name_("z");
+
+        z.backward(new BackwardConfig().with_keep_graph(true));
+
+        var reverseTopologicalOrder = z.getValueNode().getReverseTopologicalOrder();
+
+        Assertions.assertNotNull(reverseTopologicalOrder);
+        Assertions.assertSame(z.getValueNode(), reverseTopologicalOrder.get(0));
+
+        assertEquals(createData(6f), x.grad().data().get());
+
+        z.backward(new BackwardConfig().with_keep_graph(true));
+
+        Assertions.assertSame(reverseTopologicalOrder, z.getValueNode().getReverseTopologicalOrder());
+
+        assertEquals(createData(12f), x.grad().data().get());
+    }
+
+    @Test
+    public void test_repeated_backward_after_detaching_interior_node() {
+
+        var w = createGradValue(3f, true).name_("w");
+
+        var x = createGradValue(2f, true).name_("x");
+
+        var y = w.mul(2f).name_("y");
+
+        var z = y.add(x).name_("z");
+
+        z.backward(new BackwardConfig().with_keep_graph(true));
+
+        var reverseTopologicalOrder = z.getValueNode().getReverseTopologicalOrder();
+        Assertions.assertTrue(reverseTopologicalOrder.contains(w.getValueNode()));
+
+        assertEquals(createData(2f), w.grad().data().get());
+        assertEquals(createData(1f), x.grad().data().get());
+
+        // Detach the interior node, cutting w from the graph of z
+        ((NodeImpl<?>) y.getValueNode()).detach();
+
+        Assertions.assertNull(z.getValueNode().getReverseTopologicalOrder());
+
+        z.backward(new BackwardConfig().with_keep_graph(true).with_zero_grad(true));
+
+        Assertions.assertFalse(z.getValueNode().getReverseTopologicalOrder().contains(w.getValueNode()));
+
+        // w is no longer part of the graph, so its gradient is neither zeroed nor accumulated
+        assertEquals(createData(2f), w.grad().data().get());
+        assertEquals(createData(1f), x.grad().data().get());
+    }
+
+    @Test
+    public void test_cached_order_survives_close_of_unrelated_graph() {
+
+        var w = createGradValue(3f, true).name_("w");
+
+        var z = w.mul(w).add(w).name_("z");
+
+        z.backward(new BackwardConfig().with_keep_graph(true));
+
+        var reverseTopologicalOrder = z.getValueNode().getReverseTopologicalOrder();
+        Assertions.assertNotNull(reverseTopologicalOrder);
+
+        // A separate graph, sharing the leaf w, whose intermediates are closed
+        var y = w.mul(2f).name_("y");
+        var u = y.relu().name_("u");
+        u.backward();
+        y.close();
+        u.close();
+
+        Assertions.assertSame(reverseTopologicalOrder, z.getValueNode().getReverseTopologicalOrder());
+
+        z.backward(new BackwardConfig().with_keep_graph(true));
+
+        Assertions.assertSame(reverseTopologicalOrder, z.getValueNode().getReverseTopologicalOrder());
+    }
+
+    @Test
+    public void test_parallel_backward() {
+
+        var a = createGradValue(-4f, true).name_("a");
+
+        var b = createGradValue(2.0f, true).name_("b");
+
+        var c = a.add(b);
+
+        var d = a.mul(b).add(b.mul(b).mul(b));
+
+        c = c.add(c.add(1));
+
+        c = c.add(one().add(c).sub(a));
+
+        d = d.add(d.mul(2).add(b.add(a).relu()));
+
+        d = d.add(d.mul(3).add(b.sub(a).relu()));
+
+        var e = c.sub(d);
+
+        var f = e.mul(e);
+
+        var g = f.div(2f);
+
+        g = g.add(ten().div(f));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            g.backward(new BackwardConfig().with_parallel(true).with_fork_join_pool(pool));
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(createData(138.83f), a.grad().data().get());
+
+        assertEquals(createData(645.58f), b.grad().data().get());
+    }
+
+    @Test
+    public void test_parallel_backward_matches_serial_backward_for_wide_graph() {
+
+        List<DemoAutogradValue<D>> serialInputs = new ArrayList<>();
+        List<DemoAutogradValue<D>> parallelInputs = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            serialInputs.add(createGradValue(i / 10f, true));
+            parallelInputs.add(createGradValue(i / 10f, true));
+        }
+
+        var serial = wideGraph(serialInputs);
+        var parallel = wideGraph(parallelInputs);
+
+        serial.backward();
+        parallel.backward(new BackwardConfig().with_parallel(true));
+
+        // The parallel engine accumulates the 64 branch contributions to the shared input in
+        // completion order, so its float sum may differ from the serial one in the last bits
+        for (int i = 0; i < serialInputs.size(); i++) {
+            D expected = serialInputs.get(i).grad().data().get();
+            assertEquals(expected, parallelInputs.get(i).grad().data().get(),
+                    1e-5f * Math.max(1f, Math.abs(toFloat(expected))));
+        }
+    }
+
+    @Test
+    public void test_concurrent_gradient_accumulation() throws InterruptedException {
+
+        var x = createGradValue(0f, true).name_("x");
+
+        int threads = 8;
+        int deltasPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < deltasPerThread; i++) {
+                    x.getGradNode().add_(createGradValue(1f, false), (f, s) -> f.add(s), (f, s) -> f.add_(s));
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(createData(threads * deltasPerThread), x.grad().data().get());
+    }
+
+    @Test
+    public void test_concurrent_gradient_observation() throws InterruptedException {
+
+        var x = createGradValue(0f, true).name_("x");
+        x.getGradNode().add_(createGradValue(1f, false), (f, s) -> f.add(s), (f, s) -> f.add_(s));
+
+        int threads = 4;
+        int deltasPerThread = 1000;
+        AtomicBoolean observedNull = new AtomicBoolean();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread observer = new Thread(() -> {
+            while (!done.get()) {
+                if (x.getGradNode().getValue().get() == null) {
+                    observedNull.set(true);
+                }
+            }
+        });
+        observer.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < deltasPerThread; i++) {
+                    x.getGradNode().add_(createGradValue(1f, false), (f, s) -> f.add(s), (f, s) -> f.add_(s));
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        done.set(true);
+        observer.join();
+
+        // The accumulated gradient is never emptied while a delta is merged into it
+        Assertions.assertFalse(observedNull.get());
+        assertEquals(createData(threads * deltasPerThread + 1), x.grad().data().get());
+    }
+
+    private DemoAutogradValue<D> wideGraph(List<DemoAutogradValue<D>> inputs) {
+        var shared = inputs.get(0);
+        var sum = shared.mul(shared);
+        for (int i = 1; i < inputs.size(); i++) {
+            var input = inputs.get(i);
+            sum = sum.add(input.mul(input).add(input.mul(shared)).name_("branch")).name_("sum");
+        }
+        return sum;
+    }
+
     private DemoAutogradValue<D> one() {
         return createGradValue(1, false);
     }
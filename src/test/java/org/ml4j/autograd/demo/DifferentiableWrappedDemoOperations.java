@@ -17,12 +17,14 @@ package org.ml4j.autograd.demo;
 import org.ml4j.autograd.AutogradValue;
 import org.ml4j.autograd.Value;
 import org.ml4j.autograd.arithmetic.operations.DifferentiableWrappedArithmeticOperations;
+import org.ml4j.autograd.fusion.ElementwiseOp;
+import org.ml4j.autograd.fusion.ElementwiseUnaryOperator;
 
 public interface DifferentiableWrappedDemoOperations<V extends DemoOperations<V> & Value<V, D, C>, D extends DemoOperations<D>, C> extends DifferentiableWrappedArithmeticOperations<V, D, C>, AutogradValue<V, D, C>, DemoOperations<V> {
 
 	@Override
 	default V relu() {
-        return applyUnaryOperator(D::relu, (g, v) -> g.mul(v.gt(0)), "gt", s -> s);
+        return applyUnaryOperator(new ElementwiseUnaryOperator<>(ElementwiseOp.RELU, 0, D::relu), (g, v) -> g.mul(v.gt(0)), "gt", s -> s);
 	}
 
 }
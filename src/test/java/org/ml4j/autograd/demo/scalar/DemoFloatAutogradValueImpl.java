@@ -35,10 +35,14 @@ public class DemoFloatAutogradValueImpl extends AutogradValueImpl<DemoAutogradVa
 
     }
 
-    protected DemoFloatAutogradValueImpl(AutogradValueProperties<DemoSize> properties, Supplier<Float> data) {
+    public DemoFloatAutogradValueImpl(AutogradValueProperties<DemoSize> properties, Supplier<Float> data) {
 		super(properties, data);
 	}
 
+	protected DemoFloatAutogradValueImpl(DemoAutogradValue<Float> other) {
+		super(other);
+	}
+
 	@Override
     public float[] getDataAsFloatArray() {
         return new float[]{data().get()};
@@ -4,8 +4,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValue;
 import org.ml4j.autograd.AutogradValueRegistry;
 import org.ml4j.autograd.BackwardConfig;
+import org.ml4j.autograd.GradMode;
 import org.ml4j.autograd.demo.DemoAutogradValue;
 import org.ml4j.autograd.demo.DemoSize;
 import org.ml4j.autograd.impl.AutogradValueProperties;
@@ -188,6 +190,24 @@ public class DemoFloatAutogradValueImplTest {
 		Assertions.assertNull(result.grad());
 	}
 	
+	@Test
+	public void testBackwardWithoutKeepGraphDoesNotCreateDetachedOperands() {
+		DemoAutogradValue<Float> first = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size).setRegistry(registry).setRequires_grad(true),() -> 2.6f);
+		DemoAutogradValue<Float> second = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size).setRegistry(registry).setRequires_grad(true),() -> 3.6f);
+
+		DemoAutogradValue<Float> result = first.mul(second).relu();
+
+		result.backward();
+
+		Assertions.assertEquals(3.6f, first.grad().data().get(), 0.0001f);
+		Assertions.assertEquals(2.6f, second.grad().data().get(), 0.0001f);
+
+		for (AutogradValue<?, ?, ?> value : registry) {
+			Assertions.assertFalse(value.name() != null && value.name().matches("(binary|unary)Back\\d"), value.name());
+			Assertions.assertTrue(value.properties().getLinks().isEmpty());
+		}
+	}
+
 	@Test
 	public void testSetGradientDoesNotThrowIllegalStateException_WhenRequiresGradIsFalse_WhenGradNotAlreadySet() {
 		DemoAutogradValue<Float> first = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setRegistry(registry).setContext(size),() -> 2.6f);
@@ -230,4 +250,60 @@ public class DemoFloatAutogradValueImplTest {
 		Assertions.assertThrows(IllegalStateException.class, () -> first.getGradNode().setValue(() -> grad));
 	}
 
+	@Test
+	@SuppressWarnings("try")
+	public void testNoGradResultsAreNotRegistered() {
+		DemoAutogradValue<Float> a = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size).setRegistry(registry).setRequires_grad(true), () -> 2f);
+		DemoAutogradValue<Float> b = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size).setRegistry(registry), () -> 3f);
+		long created = registry.statistics().getCreatedCount();
+
+		DemoAutogradValue<Float> c;
+		try (GradMode.Guard guard = GradMode.no_grad()) {
+			c = a.mul(b).add(a);
+		}
+
+		Assertions.assertEquals(created, registry.statistics().getCreatedCount());
+		Assertions.assertTrue(c.properties().isNo_grad());
+		Assertions.assertEquals(8f, c.data().get());
+
+		// The result takes part in a later graph as a constant.
+		DemoAutogradValue<Float> d = c.mul(a);
+		d.backward();
+		Assertions.assertEquals(8f, a.grad().data().get());
+		Assertions.assertTrue(c.getValueNode().prev().isEmpty());
+
+		long live = registry.statistics().getLiveCount();
+		c.close();
+		Assertions.assertTrue(c.isClosed());
+		Assertions.assertEquals(live, registry.statistics().getLiveCount());
+	}
+
+	@Test
+	public void testBackwardDoesNotRegisterTemporaries() {
+		DemoAutogradValue<Float> a = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size).setRegistry(registry).setRequires_grad(true), () -> 2f);
+		DemoAutogradValue<Float> b = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size).setRegistry(registry).setRequires_grad(true), () -> 3f);
+		DemoAutogradValue<Float> c = a.mul(b).add(a).mul(b);
+		long created = registry.statistics().getCreatedCount();
+
+		c.backward();
+
+		Assertions.assertEquals(created, registry.statistics().getCreatedCount());
+		Assertions.assertEquals(12f, a.grad().data().get());
+		Assertions.assertEquals(14f, b.grad().data().get());
+	}
+
+	@Test
+	public void testValuesSharingNodesAreCountedWhenClosed() {
+		DemoAutogradValue<Float> a = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size).setRegistry(registry), () -> 2f);
+		DemoAutogradValue<Float> b = new DemoFloatAutogradValueImpl(a);
+
+		Assertions.assertEquals(2L, registry.statistics().getLiveCount());
+
+		a.close();
+
+		Assertions.assertTrue(b.isClosed());
+		Assertions.assertEquals(0L, registry.statistics().getLiveCount());
+		Assertions.assertEquals(2L, registry.statistics().getClosedCount());
+		Assertions.assertTrue(registry.statistics().getLiveCountByContext().isEmpty());
+	}
 }
@@ -42,6 +42,11 @@ public class DemoFloatAutogradValueTest extends DemoAutogradValueTestBase<Float>
 		Assertions.assertEquals(value1, value2, 0.01f);
 	}
 
+	@Override
+	protected void assertEquals(Float value1, Float value2, float delta) {
+		Assertions.assertEquals(value1, value2, delta);
+	}
+
 	@Override
 	protected Float add(Float value1, Float value2) {
 		return value1.floatValue() + value2.floatValue();
@@ -52,4 +57,9 @@ public class DemoFloatAutogradValueTest extends DemoAutogradValueTestBase<Float>
 		return value1.floatValue() * value2;
 	}
 
+	@Override
+	protected float toFloat(Float value) {
+		return value;
+	}
+
 }
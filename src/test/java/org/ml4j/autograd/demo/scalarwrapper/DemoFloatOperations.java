@@ -16,8 +16,9 @@ package org.ml4j.autograd.demo.scalarwrapper;
 
 import org.ml4j.autograd.demo.DemoOperations;
 import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.fusion.ElementwiseData;
 
-public class DemoFloatOperations implements DemoOperations<DemoFloatOperations> {
+public class DemoFloatOperations implements DemoOperations<DemoFloatOperations>, ElementwiseData<DemoFloatOperations> {
 	
 	private float value;
 	private DemoSize size;
@@ -44,6 +45,11 @@ public class DemoFloatOperations implements DemoOperations<DemoFloatOperations>
 		return new float[] {value};
 	}
 
+	@Override
+	public DemoFloatOperations fromFloatArray(float[] data) {
+		return create(data[0]);
+	}
+
 	@Override
 	public DemoFloatOperations add(DemoFloatOperations other) {
 		return create(value + other.value);
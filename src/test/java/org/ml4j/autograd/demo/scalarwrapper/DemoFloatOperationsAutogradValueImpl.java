@@ -45,6 +45,12 @@ public class DemoFloatOperationsAutogradValueImpl extends AutogradValueImpl<Demo
 		data.setValue(-1);
 	}
 
+	@Override
+	protected boolean zero_(DemoFloatOperations data) {
+		data.setValue(0);
+		return true;
+	}
+
 	@Override
 	public DemoSize size() {
 		return context();
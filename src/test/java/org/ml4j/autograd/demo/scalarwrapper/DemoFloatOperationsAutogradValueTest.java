@@ -15,6 +15,7 @@
 package org.ml4j.autograd.demo.scalarwrapper;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.ml4j.autograd.demo.DemoAutogradValue;
 import org.ml4j.autograd.demo.DemoAutogradValueTestBase;
 import org.ml4j.autograd.demo.DemoSize;
@@ -42,6 +43,11 @@ public class DemoFloatOperationsAutogradValueTest extends DemoAutogradValueTestB
 		Assertions.assertEquals(value1.getValue(), value2.getValue(), 0.01f);
 	}
 
+	@Override
+	protected void assertEquals(DemoFloatOperations value1, DemoFloatOperations value2, float delta) {
+		Assertions.assertEquals(value1.getValue(), value2.getValue(), delta);
+	}
+
 	@Override
 	protected DemoFloatOperations add(DemoFloatOperations value1, DemoFloatOperations value2) {
 		return value1.add(value2);
@@ -52,4 +58,47 @@ public class DemoFloatOperationsAutogradValueTest extends DemoAutogradValueTestB
 		return value1.mul(value2);
 	}
 
+	@Test
+	public void test_zero_grad_reuses_accumulated_gradient() {
+
+		var w = (DemoFloatOperationsAutogradValueImpl) createGradValue(2f, true).name_("w");
+
+		var x = createGradValue(3f, false).name_("x");
+
+		w.mul(x).add(w.mul(x)).add(w.mul(x)).backward();
+
+		var grad = w.grad();
+
+		assertEquals(createData(9f), grad.data().get());
+
+		w.zero_grad();
+
+		Assertions.assertSame(grad, w.grad());
+		assertEquals(createData(0f), grad.data().get());
+
+		w.mul(x).add(w.mul(x)).backward();
+
+		Assertions.assertSame(grad, w.grad());
+		assertEquals(createData(6f), grad.data().get());
+	}
+
+	@Test
+	public void test_zero_grad_clears_adopted_gradient() {
+
+		var w = (DemoFloatOperationsAutogradValueImpl) createGradValue(2f, true).name_("w");
+
+		w.mul(3f).backward();
+
+		assertEquals(createData(3f), w.grad().data().get());
+
+		w.zero_grad();
+
+		Assertions.assertNull(w.grad());
+	}
+
+	@Override
+	protected float toFloat(DemoFloatOperations value) {
+		return value.getValue();
+	}
+
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.demo.tape;
+
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.demo.scalarwrapper.DemoFloatOperations;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.tape.ArithmeticOperationsTape;
+import org.ml4j.autograd.tape.TapeAutogradValueImpl;
+
+import java.util.function.Supplier;
+
+/**
+ * A tape-based AutogradValue implementation that supports the operations defined by DemoOperations.
+ *
+ * @author Michael Lavelle
+ */
+public class DemoFloatOperationsTapeAutogradValueImpl extends TapeAutogradValueImpl<DemoAutogradValue<DemoFloatOperations>, DemoFloatOperations, DemoSize> implements DemoAutogradValue<DemoFloatOperations> {
+
+    public DemoFloatOperationsTapeAutogradValueImpl(AutogradValueProperties<DemoSize> properties, ArithmeticOperationsTape<DemoFloatOperations> tape, DemoFloatOperations data) {
+        super(properties, tape, data);
+    }
+
+    protected DemoFloatOperationsTapeAutogradValueImpl(ArithmeticOperationsTape<DemoFloatOperations> tape, int index, DemoSize context, AutogradValueRegistry registry) {
+        super(tape, index, context, registry);
+    }
+
+    @Override
+    public DemoSize size() {
+        return context();
+    }
+
+    @Override
+    public DemoAutogradValue<DemoFloatOperations> relu() {
+        return applyUnaryOperator(DemoFloatOperations::relu, (g, v) -> g.mul(v.gt(0)), "relu", s -> s);
+    }
+
+    @Override
+    public DemoAutogradValue<DemoFloatOperations> self() {
+        return this;
+    }
+
+    @Override
+    protected DemoAutogradValue<DemoFloatOperations> createAutogradValue(ArithmeticOperationsTape<DemoFloatOperations> tape, int index, DemoSize context, AutogradValueRegistry registry) {
+        return new DemoFloatOperationsTapeAutogradValueImpl(tape, index, context, registry);
+    }
+
+    @Override
+    protected Supplier<DemoFloatOperations> multiplicativeIdentity() {
+        return () -> new DemoFloatOperations(1, size());
+    }
+
+    @Override
+    public String toString() {
+        return name() + ":" + isClosed();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.demo.tape;
+
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.tape.FloatTape;
+import org.ml4j.autograd.tape.FloatTapeAutogradValueImpl;
+
+/**
+ * A primitive float tape-based AutogradValue implementation that supports the operations defined by DemoOperations.
+ *
+ * @author Michael Lavelle
+ */
+public class DemoFloatTapeAutogradValueImpl extends FloatTapeAutogradValueImpl<DemoAutogradValue<Float>, DemoSize> implements DemoAutogradValue<Float> {
+
+    public DemoFloatTapeAutogradValueImpl(AutogradValueProperties<DemoSize> properties, FloatTape tape, float value) {
+        super(properties, tape, value);
+    }
+
+    protected DemoFloatTapeAutogradValueImpl(FloatTape tape, int index, DemoSize context, AutogradValueRegistry registry) {
+        super(tape, index, context, registry);
+    }
+
+    @Override
+    public DemoSize size() {
+        return context();
+    }
+
+    @Override
+    public DemoAutogradValue<Float> self() {
+        return this;
+    }
+
+    @Override
+    protected DemoAutogradValue<Float> createAutogradValue(FloatTape tape, int index, DemoSize context, AutogradValueRegistry registry) {
+        return new DemoFloatTapeAutogradValueImpl(tape, index, context, registry);
+    }
+
+    @Override
+    public String toString() {
+        return name() + ":" + isClosed();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.demo.tape;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.demo.scalar.DemoFloatAutogradValueImpl;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.tape.FloatTape;
+import org.ml4j.autograd.tape.Tape;
+
+public class DemoFloatTapeAutogradValueTest extends DemoTapeAutogradValueTestBase<Float> {
+
+    private final FloatTape tape = new FloatTape();
+
+    @Override
+    protected Tape tape() {
+        return tape;
+    }
+
+    @Override
+    protected DemoAutogradValue<Float> createGradValue(float value, boolean requires_grad) {
+        return new DemoFloatTapeAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size).setRegistry(registry).setRequires_grad(requires_grad), tape, value);
+    }
+
+    @Override
+    protected DemoAutogradValue<Float> createGradValue(Float value, boolean requires_grad) {
+        return createGradValue(value.floatValue(), requires_grad);
+    }
+
+    @Override
+    protected Float createData(float value) {
+        return value;
+    }
+
+    @Override
+    protected void assertEquals(Float value1, Float value2) {
+        Assertions.assertEquals(value1, value2, 0.01f);
+    }
+
+    @Override
+    protected void assertEquals(Float value1, Float value2, float delta) {
+        Assertions.assertEquals(value1, value2, delta);
+    }
+
+    @Override
+    protected Float add(Float value1, Float value2) {
+        return value1.floatValue() + value2.floatValue();
+    }
+
+    @Override
+    protected Float mul(Float value1, float value2) {
+        return value1.floatValue() * value2;
+    }
+
+    @Test
+    public void test_graph_operation_with_tape_operand() {
+
+        var t = createGradValue(3f, true).name_("t");
+
+        DemoAutogradValue<Float> g = new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>()
+                .setContext(size).setRegistry(registry).setRequires_grad(true), () -> 5f).name_("g");
+
+        var z = g.mul(t).name_("z");
+
+        z.backward();
+
+        assertEquals(15f, z.data().get());
+        assertEquals(5f, t.grad().data().get());
+        assertEquals(3f, g.grad().data().get());
+    }
+
+    @Override
+    protected float toFloat(Float value) {
+        return value;
+    }
+
+}
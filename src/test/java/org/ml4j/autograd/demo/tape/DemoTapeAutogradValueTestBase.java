@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.demo.tape;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.BackwardConfig;
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoAutogradValueTestBase;
+import org.ml4j.autograd.tape.Tape;
+
+import java.util.Optional;
+
+/**
+ * A test for DemoAutogradValues recorded on a Tape.
+ *
+ * @author Michael Lavelle
+ */
+public abstract class DemoTapeAutogradValueTestBase<D> extends DemoAutogradValueTestBase<D> {
+
+    protected abstract Tape tape();
+
+    @Test
+    @Override
+    @Disabled("Gradients of gradients are not supported by tape-based values")
+    public void test_hessian_vector() {
+    }
+
+    @Test
+    @Override
+    @Disabled("Tapes are not thread-safe, so gradients can not be accumulated into a tape entry concurrently")
+    public void test_concurrent_gradient_accumulation() {
+    }
+
+    @Test
+    @Override
+    @Disabled("Tapes are not thread-safe, so gradients can not be observed while accumulating concurrently")
+    public void test_concurrent_gradient_observation() {
+    }
+
+    @Test
+    @Override
+    public void test_repeated_backward_with_keep_graph() {
+
+        var x = createGradValue(3f, true).name_("x");
+
+        var z = x.mul(x).name_("z");
+
+        z.backward(new BackwardConfig().with_keep_graph(true));
+
+        assertEquals(createData(6f), x.grad().data().get());
+
+        z.backward(new BackwardConfig().with_keep_graph(true));
+
+        assertEquals(createData(12f), x.grad().data().get());
+    }
+
+    @Test
+    @Override
+    @Disabled("Tape-based values record operations on a Tape rather than a graph of Nodes, so have no cached ordering to invalidate")
+    public void test_repeated_backward_after_detaching_interior_node() {
+    }
+
+    @Test
+    @Override
+    @Disabled("Tape-based values record operations on a Tape rather than a graph of Nodes, so have no cached ordering to retain")
+    public void test_cached_order_survives_close_of_unrelated_graph() {
+    }
+
+    @Test
+    public void test_truncate() {
+
+        var x = createGradValue(3f, true).name_("x");
+
+        int mark = tape().size();
+
+        for (int i = 0; i < 3; i++) {
+            var z = x.mul(x).add(x.relu().mul(2f)).name_("z");
+            z.backward();
+            assertEquals(createData(8f * (i + 1)), x.grad().data().get());
+            tape().truncate(mark);
+            Assertions.assertEquals(mark, tape().size());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void test_no_grad_does_not_record() {
+
+        var w = createGradValue(2f, true).name_("w");
+
+        var x = createGradValue(3f, false).name_("x");
+
+        DemoAutogradValue<D> y;
+
+        int size = tape().size();
+
+        try (GradMode.Guard guard = GradMode.no_grad()) {
+            for (int i = 0; i < 3; i++) {
+                y = w.mul(x).add(w).relu().mul(createGradValue(1f, false));
+                assertEquals(createData(8f), y.data().get());
+            }
+            y = w.mul(x).add(w).relu();
+            Assertions.assertEquals(size, tape().size());
+        }
+
+        Assertions.assertFalse(y.requires_grad());
+        Assertions.assertNull(y.grad());
+
+        int mark = tape().size();
+
+        for (int i = 0; i < 2; i++) {
+            var z = w.mul(y).name_("z");
+            z.backward();
+            assertEquals(createData(8f * (i + 1)), w.grad().data().get());
+            tape().truncate(mark);
+        }
+    }
+
+    @Test
+    public void test_grad_does_not_record() {
+
+        var x = createGradValue(3f, true).name_("x");
+
+        var z = x.mul(x).name_("z");
+
+        z.backward();
+
+        int size = tape().size();
+
+        assertEquals(createData(6f), x.grad().data().get());
+        assertEquals(createData(6f), x.grad().data().get());
+
+        Assertions.assertEquals(size, tape().size());
+    }
+
+    @Test
+    public void test_zero_grad_leaves_unreachable_entries() {
+
+        var a = createGradValue(3f, true).name_("a");
+
+        a.mul(a).backward();
+
+        var b = createGradValue(2f, true).name_("b");
+
+        b.mul(b).backward(new BackwardConfig().with_zero_grad(true));
+
+        assertEquals(createData(6f), a.grad().data().get());
+        assertEquals(createData(4f), b.grad().data().get());
+    }
+
+    @Test
+    public void test_native_gradient() {
+
+        var x = createGradValue(3f, true).name_("x");
+
+        x.mul(x).backward();
+
+        x.getGradNode().setNativeGradientSupplier(() -> Optional.of(createGradValue(5f, false)));
+
+        assertEquals(createData(5f), x.getGradNode().native_grad().get().data().get());
+        assertEquals(createData(5f), x.grad().data().get());
+
+        x.getGradNode().setDisableNativeGradient(true);
+
+        assertEquals(createData(6f), x.grad().data().get());
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.fusion;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.CachingDataSupplier;
+import org.ml4j.autograd.CachingDataSupplierImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A test for FusedDataSupplier.
+ *
+ * @author Michael Lavelle
+ */
+public class FusedDataSupplierTest {
+
+    private int unfusedOperations;
+
+    @Test
+    public void test_fused_chain() {
+
+        int length = 3000;
+        float[] x = new float[length];
+        float[] y = new float[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = i - 1500;
+            y[i] = 2 * i;
+        }
+        CachingDataSupplier<Vector> a = leaf(x);
+        CachingDataSupplier<Vector> b = leaf(y);
+
+        // relu((a + b) * 2 - a) / 4
+        Supplier<Vector> sum = FusedDataSupplier.of(add(), () -> a, () -> b);
+        Supplier<Vector> doubled = FusedDataSupplier.of(unary(ElementwiseOp.MUL_SCALAR, 2), () -> sum);
+        Supplier<Vector> difference = FusedDataSupplier.of(binary(ElementwiseOp.SUB), () -> doubled, () -> a);
+        Supplier<Vector> relu = FusedDataSupplier.of(unary(ElementwiseOp.RELU, 0), () -> difference);
+        Supplier<Vector> result = FusedDataSupplier.of(unary(ElementwiseOp.DIV_SCALAR, 4), () -> relu);
+
+        float[] data = result.get().data;
+
+        for (int i = 0; i < length; i++) {
+            Assertions.assertEquals(Math.max(0, (x[i] + y[i]) * 2 - x[i]) / 4, data[i], 0.0001f);
+        }
+        Assertions.assertEquals(0, unfusedOperations);
+        Assertions.assertFalse(((FusedDataSupplier<Vector>) sum).isEvaluated());
+        Assertions.assertFalse(((FusedDataSupplier<Vector>) relu).isEvaluated());
+
+        // Intermediates are evaluated separately if requested.
+        Assertions.assertEquals(x[7] + y[7], sum.get().data[7], 0.0001f);
+        Assertions.assertTrue(((FusedDataSupplier<Vector>) sum).isEvaluated());
+    }
+
+    @Test
+    public void test_shared_operands() {
+
+        float[] x = new float[100];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+        }
+        CachingDataSupplier<Vector> a = leaf(x);
+
+        Supplier<Vector> sum = FusedDataSupplier.of(add(), () -> a, () -> a);
+        Supplier<Vector> square = FusedDataSupplier.of(binary(ElementwiseOp.MUL), () -> sum, () -> sum);
+        Supplier<Vector> result = FusedDataSupplier.of(binary(ElementwiseOp.SUB), () -> square, () -> sum);
+
+        float[] data = result.get().data;
+
+        for (int i = 0; i < x.length; i++) {
+            Assertions.assertEquals(4 * x[i] * x[i] - 2 * x[i], data[i], 0.0001f);
+        }
+        Assertions.assertEquals(0, unfusedOperations);
+    }
+
+    @Test
+    public void test_small_data_is_not_fused() {
+
+        CachingDataSupplier<Vector> a = leaf(new float[] {1, 2, 3});
+
+        Supplier<Vector> sum = FusedDataSupplier.of(add(), () -> a, () -> a);
+        Supplier<Vector> result = FusedDataSupplier.of(binary(ElementwiseOp.MUL), () -> sum, () -> a);
+
+        Assertions.assertArrayEquals(new float[] {2, 8, 18}, result.get().data, 0.0001f);
+        Assertions.assertEquals(2, unfusedOperations);
+
+        // Intermediate results of unfused evaluation are cached.
+        Assertions.assertTrue(((FusedDataSupplier<Vector>) sum).isEvaluated());
+    }
+
+    @Test
+    public void test_mismatched_lengths_are_not_fused() {
+
+        CachingDataSupplier<Vector> a = leaf(new float[] {1, 2, 3});
+        CachingDataSupplier<Vector> b = leaf(new float[] {1});
+
+        Supplier<Vector> sum = FusedDataSupplier.of(add(), () -> a, () -> b);
+        Supplier<Vector> result = FusedDataSupplier.of(unary(ElementwiseOp.NEG, 0), () -> sum);
+
+        Assertions.assertArrayEquals(new float[] {-2, -3, -4}, result.get().data, 0.0001f);
+        Assertions.assertEquals(2, unfusedOperations);
+    }
+
+    @Test
+    public void test_fused_relu_of_negative_zero() {
+
+        float[] x = new float[3000];
+        x[0] = -0f;
+        CachingDataSupplier<Vector> a = leaf(x);
+
+        Supplier<Vector> result = FusedDataSupplier.of(unary(ElementwiseOp.RELU, 0), () -> a, () -> null);
+
+        // Bit-identical to the unfused kernel, which is Math.max(x, 0f).
+        Assertions.assertEquals(Float.floatToRawIntBits(Math.max(-0f, 0f)), Float.floatToRawIntBits(result.get().data[0]));
+        Assertions.assertEquals(0, unfusedOperations);
+    }
+
+    @Test
+    public void test_unusable_allocated_data_is_released() {
+
+        CachingDataSupplier<Vector> a = leaf(new float[3000]);
+        Vector recycled = new Vector(new float[10]);
+        List<Vector> released = new ArrayList<>();
+
+        Supplier<Vector> result = FusedDataSupplier.of(unary(ElementwiseOp.NEG, 0), () -> a, new DataAllocator<>() {
+
+            @Override
+            public Vector get() {
+                return recycled;
+            }
+
+            @Override
+            public void release(Vector data) {
+                released.add(data);
+            }
+        });
+
+        Assertions.assertEquals(3000, result.get().data.length);
+        Assertions.assertEquals(List.of(recycled), released);
+    }
+
+    @Test
+    public void test_deep_chain_of_unfusible_data() {
+
+        CachingDataSupplier<Float> a = new CachingDataSupplierImpl<>(() -> 0f);
+
+        Supplier<Float> result = a;
+        for (int i = 0; i < 100000; i++) {
+            Supplier<Float> previous = result;
+            result = FusedDataSupplier.of(new ElementwiseUnaryOperator<Float>(ElementwiseOp.ADD_SCALAR, 1, f -> f + 1), () -> previous);
+        }
+
+        Assertions.assertEquals(100000f, result.get(), 0.0001f);
+    }
+
+    private CachingDataSupplier<Vector> leaf(float[] data) {
+        return new CachingDataSupplierImpl<>(() -> new Vector(data));
+    }
+
+    private ElementwiseBinaryOperator<Vector> add() {
+        return binary(ElementwiseOp.ADD);
+    }
+
+    private ElementwiseBinaryOperator<Vector> binary(ElementwiseOp op) {
+        return new ElementwiseBinaryOperator<>(op, (f, s) -> {
+            unfusedOperations++;
+            float[] result = new float[f.data.length];
+            for (int i = 0; i < result.length; i++) {
+                float other = s.data[s.data.length == 1 ? 0 : i];
+                result[i] = op == ElementwiseOp.ADD ? f.data[i] + other : op == ElementwiseOp.SUB ? f.data[i] - other : f.data[i] * other;
+            }
+            return new Vector(result);
+        });
+    }
+
+    private ElementwiseUnaryOperator<Vector> unary(ElementwiseOp op, float scalar) {
+        return new ElementwiseUnaryOperator<>(op, scalar, f -> {
+            unfusedOperations++;
+            float[] result = new float[f.data.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = op == ElementwiseOp.NEG ? -f.data[i] : f.data[i];
+            }
+            return new Vector(result);
+        });
+    }
+
+    private static class Vector implements ElementwiseData<Vector> {
+
+        private final float[] data;
+
+        Vector(float[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public float[] getDataAsFloatArray() {
+            return data;
+        }
+
+        @Override
+        public Vector fromFloatArray(float[] data) {
+            return new Vector(data);
+        }
+    }
+}
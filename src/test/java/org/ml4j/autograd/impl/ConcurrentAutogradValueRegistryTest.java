@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.demo.scalar.DemoFloatAutogradValueImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A test for ConcurrentAutogradValueRegistry.
+ *
+ * @author Michael Lavelle
+ */
+public class ConcurrentAutogradValueRegistryTest {
+
+    private static final DemoSize SIZE = new DemoSize() { };
+
+    private static final int THREADS = 4;
+    private static final int STEPS = 500;
+
+    @Test
+    public void test_concurrent_graph_construction() throws Exception {
+
+        ConcurrentAutogradValueRegistry registry = new ConcurrentAutogradValueRegistry("test");
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Float>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    DemoAutogradValue<Float> a = create(registry, 1f);
+                    for (int i = 0; i < STEPS; i++) {
+                        DemoAutogradValue<Float> b = create(registry, 1f);
+                        a = a.add(b);
+                    }
+                    return a.data().get();
+                }));
+            }
+            start.countDown();
+
+            // Sweep while the workers are registering values.
+            for (int i = 0; i < 10; i++) {
+                registry.closeLocal();
+                registry.clearLocal();
+            }
+
+            for (Future<Float> result : results) {
+                Assertions.assertEquals(STEPS + 1f, result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        registry.closeLocal();
+        Assertions.assertTrue(registry.allClosedLocal());
+        registry.clearLocal();
+        Assertions.assertEquals(0, registry.size());
+        // The segments of the terminated workers are discarded once cleared.
+        Assertions.assertEquals(0, registry.segmentCount());
+        Assertions.assertEquals(0, registry.statistics().getLiveCount());
+    }
+
+    @Test
+    public void test_segments_are_merged() throws Exception {
+
+        ConcurrentAutogradValueRegistry registry = new ConcurrentAutogradValueRegistry("test");
+
+        DemoAutogradValue<Float> a = create(registry, 1f);
+        Thread worker = new Thread(() -> create(registry, 2f));
+        worker.start();
+        worker.join();
+
+        Assertions.assertEquals(2, registry.size());
+        Assertions.assertEquals(2, registry.segmentCount());
+        Assertions.assertFalse(registry.allClosedLocal());
+        Assertions.assertEquals(2, registry.statistics().getLiveCount());
+        Assertions.assertEquals(Map.of(SIZE.toString(), 2L), registry.statistics().getLiveCountByContext());
+
+        registry.closeLocal();
+        Assertions.assertTrue(a.isClosed());
+        Assertions.assertTrue(registry.allClosedLocal());
+
+        registry.clearLocal();
+        Assertions.assertEquals(0, registry.size());
+        // The segment of the current thread is retained, as it may register further values.
+        Assertions.assertEquals(1, registry.segmentCount());
+        // The counts of the discarded segment are retained by the statistics.
+        Assertions.assertEquals(2, registry.statistics().getCreatedCount());
+        Assertions.assertEquals(0, registry.statistics().getLiveCount());
+        Assertions.assertEquals(0, registry.statistics().getClosedCount());
+        Assertions.assertTrue(registry.statistics().getLiveCountByContext().isEmpty());
+    }
+
+    @Test
+    public void test_create_concurrent() {
+        AutogradValueRegistry registry = AutogradValueRegistry.createConcurrent("test");
+        Assertions.assertTrue(registry instanceof ConcurrentAutogradValueRegistry);
+        Assertions.assertTrue(AutogradValueRegistries.registries().contains(registry));
+    }
+
+    @Test
+    public void test_uncloseable_after_registration() throws Exception {
+
+        ConcurrentAutogradValueRegistry registry = new ConcurrentAutogradValueRegistry("test");
+
+        DemoAutogradValue<Float> a = create(registry, 1f);
+        DemoAutogradValue<Float> b = create(registry, 2f);
+        a.properties().setUncloseable(true);
+
+        Assertions.assertEquals(2L, registry.statistics().getLiveCount());
+        Assertions.assertEquals(1L, registry.statistics().getUncloseableCount());
+
+        // Mark and close on a thread without a segment, so the statistics are updated by their stripes.
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                b.properties().setUncloseable(true);
+                a.close();
+                b.close();
+            }).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertEquals(0L, registry.statistics().getLiveCount());
+        Assertions.assertEquals(0L, registry.statistics().getUncloseableCount());
+    }
+
+    private static DemoAutogradValue<Float> create(AutogradValueRegistry registry, float value) {
+        return new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(SIZE)
+                .setRegistry(registry).setRequires_grad(true), () -> value);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.demo.scalar.DemoFloatAutogradValueImpl;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A test for ExecutionPlan.
+ *
+ * @author Michael Lavelle
+ */
+public class ExecutionPlanTest {
+
+    private static final DemoSize SIZE = new DemoSize() { };
+
+    private final AutogradValueRegistry registry = AutogradValueRegistry.create(ExecutionPlanTest.class.getName());
+
+    @Test
+    public void test_replay_matches_eager_execution() {
+
+        var w = create(SIZE, 0.5f, true);
+        var b = create(SIZE, -1f, false);
+        Function<List<DemoAutogradValue<Float>>, DemoAutogradValue<Float>> step = model(w, b);
+
+        var plan = ExecutionPlan.trace(step, List.of(create(SIZE, 1f, false), create(SIZE, 2f, true)));
+
+        Assertions.assertTrue(plan.isReplayable());
+
+        var x = create(SIZE, 3f, false);
+        var y = create(SIZE, 4f, true);
+        var output = plan.step(List.of(x, y));
+
+        var eagerW = create(SIZE, 0.5f, true);
+        var eagerY = create(SIZE, 4f, true);
+        var eagerOutput = model(eagerW, b).apply(List.of(x, eagerY));
+        eagerOutput.backward();
+
+        Assertions.assertFalse(output.requires_grad());
+        Assertions.assertEquals(eagerOutput.data().get(), output.data().get(), 0.0001f);
+        Assertions.assertEquals(eagerW.grad().data().get(), w.grad().data().get(), 0.0001f);
+        Assertions.assertEquals(eagerY.grad().data().get(), y.grad().data().get(), 0.0001f);
+
+        // Gradients accumulate across replays, as for eager backward passes.
+        plan.step(List.of(x, create(SIZE, 4f, true)));
+        Assertions.assertEquals(2 * eagerW.grad().data().get(), w.grad().data().get(), 0.0001f);
+
+        Assertions.assertEquals(eagerOutput.data().get(), plan.forward(List.of(x, y)).data().get(), 0.0001f);
+    }
+
+    @Test
+    public void test_mismatched_leaves_fall_back_to_eager_execution() {
+
+        var w = create(SIZE, 0.5f, true);
+        var b = create(SIZE, -1f, false);
+
+        var plan = ExecutionPlan.trace(model(w, b), List.of(create(SIZE, 1f, false), create(SIZE, 2f, true)));
+
+        DemoSize otherSize = new DemoSize() { };
+        var x = create(otherSize, 3f, false);
+        var y = create(otherSize, 4f, true);
+
+        Assertions.assertFalse(plan.matches(List.of(x, y)));
+        Assertions.assertFalse(plan.matches(List.of(create(SIZE, 3f, false), create(SIZE, 4f, false))));
+        Assertions.assertFalse(plan.matches(List.of(create(SIZE, 3f, false))));
+
+        var output = plan.step(List.of(x, y));
+
+        Assertions.assertTrue(output.requires_grad());
+        Assertions.assertEquals(18f, output.data().get(), 0.0001f);
+        Assertions.assertEquals(8.5f, y.grad().data().get(), 0.0001f);
+    }
+
+    @Test
+    public void test_in_place_operations_are_not_replayed() {
+
+        var plan = ExecutionPlan.trace(leaves -> leaves.get(0).mul(2f).add_(leaves.get(0)),
+                List.of(create(SIZE, 1f, true)));
+
+        Assertions.assertFalse(plan.isReplayable());
+
+        var x = create(SIZE, 3f, true);
+        Assertions.assertEquals(9f, plan.forward(List.of(x)).data().get(), 0.0001f);
+    }
+
+    private static Function<List<DemoAutogradValue<Float>>, DemoAutogradValue<Float>> model(
+            DemoAutogradValue<Float> w, DemoAutogradValue<Float> b) {
+        // relu(w * x + b) * y + y * y
+        return leaves -> w.mul(leaves.get(0)).add(b).relu().mul(leaves.get(1)).add(leaves.get(1).mul(leaves.get(1)));
+    }
+
+    private DemoAutogradValue<Float> create(DemoSize size, float value, boolean requires_grad) {
+        return new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(size)
+                .setRegistry(registry).setRequires_grad(requires_grad), () -> value);
+    }
+}
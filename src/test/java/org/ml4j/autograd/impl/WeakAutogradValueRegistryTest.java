@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValue;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.demo.DemoAutogradValue;
+import org.ml4j.autograd.demo.DemoSize;
+import org.ml4j.autograd.demo.scalar.DemoFloatAutogradValueImpl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A test for WeakAutogradValueRegistry.
+ *
+ * @author Michael Lavelle
+ */
+public class WeakAutogradValueRegistryTest {
+
+    private static final DemoSize SIZE = new DemoSize() { };
+
+    @Test
+    public void test_counts() {
+
+        WeakAutogradValueRegistry registry = new WeakAutogradValueRegistry("test");
+
+        DemoAutogradValue<Float> a = create(registry, 1f);
+        DemoAutogradValue<Float> b = create(registry, 2f);
+        DemoAutogradValue<Float> c = a.add(b);
+
+        Assertions.assertEquals(3, registry.size());
+        Assertions.assertEquals(0, registry.closedCount());
+        Assertions.assertFalse(registry.allClosedLocal());
+
+        a.close();
+        b.close();
+        Assertions.assertEquals(2, registry.closedCount());
+        Assertions.assertFalse(registry.allClosedLocal());
+
+        registry.clearLocal();
+        Assertions.assertEquals(1, registry.size());
+        Assertions.assertEquals(0, registry.closedCount());
+
+        registry.closeLocal();
+        Assertions.assertTrue(c.isClosed());
+        Assertions.assertTrue(registry.allClosedLocal());
+    }
+
+    @Test
+    public void test_uncloseable_is_read_when_notified() {
+
+        WeakAutogradValueRegistry registry = new WeakAutogradValueRegistry("test");
+
+        DemoAutogradValue<Float> a = create(registry, 1f);
+        a.close();
+
+        Assertions.assertEquals(0L, registry.statistics().getLiveCount());
+
+        a.properties().setUncloseable(true);
+        a.setClosed(false);
+
+        Assertions.assertEquals(1L, registry.statistics().getLiveCount());
+        Assertions.assertEquals(1L, registry.statistics().getUncloseableCount());
+    }
+
+    @Test
+    public void test_unreachable_values_are_collected() {
+
+        WeakAutogradValueRegistry registry = new WeakAutogradValueRegistry("test");
+
+        DemoAutogradValue<Float> retained = create(registry, 1f);
+        List<WeakReference<AutogradValue<?, ?, ?>>> references = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            references.add(new WeakReference<>(create(registry, i)));
+        }
+        Assertions.assertEquals(101, registry.size());
+
+        awaitCollection(references);
+        // Cleared references are enqueued asynchronously by the JVM after collection.
+        await(() -> registry.size() == 1);
+
+        Assertions.assertEquals(1, registry.size());
+        Assertions.assertSame(retained, registry.iterator().next());
+    }
+
+    @Test
+    public void test_graphs_built_from_shared_parameter_are_collected() {
+
+        WeakAutogradValueRegistry registry = new WeakAutogradValueRegistry("test");
+
+        DemoAutogradValue<Float> w = create(registry, 2f);
+        train(registry, w, 1000);
+        await(() -> registry.size() == 1);
+
+        // The size of the registry stays flat, however many graphs the parameter has been used in
+        train(registry, w, 10000);
+        await(() -> registry.size() == 1);
+
+        Assertions.assertSame(w, registry.iterator().next());
+        Assertions.assertTrue(w.getValueNode().next().size() < 10000);
+    }
+
+    @Test
+    public void test_registry_is_collected() {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.createWeak("test");
+        create(registry, 1f);
+        int before = AutogradValueRegistries.weakRegistryCount();
+
+        List<WeakReference<AutogradValue<?, ?, ?>>> references = new ArrayList<>();
+        for (AutogradValue<?, ?, ?> value : registry) {
+            references.add(new WeakReference<>(value));
+        }
+        WeakReference<AutogradValueRegistry> reference = new WeakReference<>(registry);
+        registry = null;
+
+        awaitCollection(List.of(reference));
+        awaitCollection(references);
+
+        Assertions.assertTrue(AutogradValueRegistries.weakRegistryCount() < before);
+    }
+
+    private static void train(AutogradValueRegistry registry, DemoAutogradValue<Float> w, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            DemoAutogradValue<Float> x = create(registry, i);
+            w.mul(x).backward();
+        }
+    }
+
+    private static DemoAutogradValue<Float> create(AutogradValueRegistry registry, float value) {
+        return new DemoFloatAutogradValueImpl(new AutogradValueProperties<DemoSize>().setContext(SIZE)
+                .setRegistry(registry).setRequires_grad(true), () -> value);
+    }
+
+    private static void awaitCollection(List<? extends WeakReference<?>> references) {
+        await(() -> references.stream().allMatch(r -> r.get() == null));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            System.gc();
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Assertions.fail("Values were not garbage collected");
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.instrument;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.arithmetic.floatarray.FloatArrayAutogradValue;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * A test for ChromeTraceRecorder.
+ *
+ * @author Michael Lavelle
+ */
+public class ChromeTraceRecorderTest {
+
+    @Test
+    public void test_trace() throws IOException {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.create(ChromeTraceRecorderTest.class.getName());
+        StringWriter json = new StringWriter();
+
+        try (ChromeTraceRecorder recorder = ChromeTraceRecorder.start()) {
+            var a = new FloatArrayAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry).setRequires_grad(true), new float[] {-1, 0, 1, 2});
+            var b = new FloatArrayAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry), new float[] {1, 2, 3, 4});
+            var loss = a.mul(b).relu();
+            loss.getDataAsFloatArray();
+            loss.backward();
+            a.grad().getDataAsFloatArray();
+
+            Assertions.assertTrue(recorder.size() > 0);
+            recorder.write(json);
+        }
+
+        Assertions.assertNull(Instrumentation.listener());
+
+        String trace = json.toString();
+        Assertions.assertTrue(trace.startsWith("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[{"));
+        Assertions.assertTrue(trace.endsWith("}]}"));
+        Assertions.assertTrue(trace.contains("{\"name\":\"relu\",\"cat\":\"forward\",\"ph\":\"X\""));
+        Assertions.assertTrue(trace.contains("{\"name\":\"relu\",\"cat\":\"backward\",\"ph\":\"X\""));
+        Assertions.assertTrue(trace.contains("\"cat\":\"deferred\",\"ph\":\"b\""));
+        // The gradient of relu is propagated to the product, whose backward execution follows
+        Assertions.assertTrue(trace.contains("\"cat\":\"edge\",\"ph\":\"s\""));
+        Assertions.assertTrue(trace.contains("\"cat\":\"edge\",\"ph\":\"f\",\"bp\":\"e\""));
+        Assertions.assertTrue(trace.contains("\"prev\":["));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.arithmetic.floatarray.FloatArrayAutogradValue;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A test for the Java Flight Recorder events emitted by autograd.
+ *
+ * @author Michael Lavelle
+ */
+public class AutogradEventTest {
+
+    private static final List<Class<? extends AutogradEvent>> EVENTS = List.of(OperationEvent.class, BackwardEvent.class,
+            TopologicalSortEvent.class, GradientAccumulationEvent.class, RegistrySweepEvent.class);
+
+    @Test
+    public void test_events_recorded_when_enabled() throws IOException {
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            for (Class<? extends AutogradEvent> event : EVENTS) {
+                recording.enable(event).withoutThreshold();
+            }
+            recording.start();
+            Assertions.assertNotNull(OperationEvent.start());
+            run("jfrEnabled");
+            recording.stop();
+            events = read(recording);
+        }
+
+        Set<String> types = events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toSet());
+        Assertions.assertEquals(Set.of("org.ml4j.autograd.Operation", "org.ml4j.autograd.Backward",
+                "org.ml4j.autograd.TopologicalSort", "org.ml4j.autograd.GradientAccumulation",
+                "org.ml4j.autograd.RegistrySweep"), types);
+
+        RecordedEvent relu = events.stream().filter(e -> e.getEventType().getName().equals("org.ml4j.autograd.Operation")
+                && "relu".equals(e.getString("op"))).findFirst().orElseThrow();
+        Assertions.assertEquals("4", relu.getString("context"));
+        Assertions.assertEquals(1, relu.getInt("graphSize"));
+
+        RecordedEvent sort = events.stream().filter(e -> e.getEventType().getName().equals("org.ml4j.autograd.TopologicalSort"))
+                .findFirst().orElseThrow();
+        Assertions.assertEquals(4, sort.getInt("graphSize"));
+    }
+
+    @Test
+    public void test_events_disabled_by_default() throws IOException {
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.start();
+            // Hot-path events are not allocated unless they are enabled in a running recording
+            Assertions.assertNull(OperationEvent.start());
+            Assertions.assertNull(GradientAccumulationEvent.start());
+            run("jfrDisabled");
+            recording.stop();
+            events = read(recording);
+        }
+
+        Assertions.assertTrue(events.stream().noneMatch(e -> e.getEventType().getName().startsWith("org.ml4j.autograd")));
+    }
+
+    @Test
+    public void test_events_not_started_without_recording() {
+        Assertions.assertNull(OperationEvent.start());
+        Assertions.assertNull(BackwardEvent.start());
+        Assertions.assertNull(TopologicalSortEvent.start());
+        Assertions.assertNull(GradientAccumulationEvent.start());
+    }
+
+    private void run(String registryName) {
+        AutogradValueRegistry registry = AutogradValueRegistry.create(registryName);
+        var a = new FloatArrayAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry).setRequires_grad(true), new float[] {-1, 0, 1, 2});
+        var b = new FloatArrayAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry), new float[] {1, 2, 3, 4});
+        a.mul(b).relu().backward();
+        a.grad().getDataAsFloatArray();
+        registry.closeLocal();
+        registry.clearLocal();
+    }
+
+    private static List<RecordedEvent> read(Recording recording) throws IOException {
+        Path file = Files.createTempFile("autograd", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
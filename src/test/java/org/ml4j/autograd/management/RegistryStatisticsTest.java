@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.management;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.arithmetic.floatarray.FloatArrayAutogradValue;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.impl.AutogradValueRegistries;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A test for RegistryStatistics.
+ *
+ * @author Michael Lavelle
+ */
+public class RegistryStatisticsTest {
+
+    @Test
+    public void test_default_registry_statistics() throws JMException {
+        test_statistics(AutogradValueRegistry.create("statisticsTest"));
+    }
+
+    @Test
+    public void test_weak_registry_statistics() throws JMException {
+        test_statistics(AutogradValueRegistry.createWeak("weakStatisticsTest"));
+    }
+
+    @Test
+    public void test_default_registry_uncloseable_after_registration() {
+        test_uncloseable_after_registration(AutogradValueRegistry.create("uncloseableTest"));
+    }
+
+    @Test
+    public void test_weak_registry_uncloseable_after_registration() {
+        test_uncloseable_after_registration(AutogradValueRegistry.createWeak("weakUncloseableTest"));
+    }
+
+    @Test
+    public void test_mbean_unregistered_when_registry_removed() {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.create("removedStatisticsTest");
+        RegistryStatistics statistics = registry.statistics();
+        ObjectName name = statistics.getObjectName();
+        int count = statistics.getRegistryCount();
+
+        Assertions.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        Assertions.assertTrue(AutogradValueRegistries.remove(registry));
+
+        Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        Assertions.assertNull(statistics.getObjectName());
+        Assertions.assertFalse(AutogradValueRegistries.registries().contains(registry));
+        Assertions.assertFalse(AutogradValueRegistries.remove(registry));
+        // Weakly referenced registries may also have been collected in the meantime.
+        Assertions.assertTrue(AutogradValueRegistries.registryCount() <= count - 1);
+    }
+
+    @Test
+    public void test_statistics_updated_by_several_threads() throws Exception {
+
+        AutogradValueRegistry registry = AutogradValueRegistry.create("stripedStatisticsTest");
+        RegistryStatistics statistics = registry.statistics();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<FloatArrayAutogradValue>> created = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int length = i % 2 == 0 ? 4 : 10;
+                created.add(executor.submit(() -> create(registry, length, false)));
+            }
+            // Close the values on threads other than those which registered them.
+            List<Future<?>> closed = new ArrayList<>();
+            for (int i = 0; i < 100; i += 4) {
+                FloatArrayAutogradValue value = created.get(i).get();
+                closed.add(executor.submit(value::close));
+            }
+            for (Future<?> future : closed) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertEquals(100L, statistics.getCreatedCount());
+        Assertions.assertEquals(75L, statistics.getLiveCount());
+        Assertions.assertEquals(25L, statistics.getClosedCount());
+        Assertions.assertEquals(Map.of("4", 25L, "10", 50L), statistics.getLiveCountByContext());
+
+        // Reading the creation rate does not reset it.
+        Assertions.assertTrue(statistics.getCreationRate() > 0);
+        Assertions.assertTrue(statistics.getCreationRate() > 0);
+    }
+
+    private void test_statistics(AutogradValueRegistry registry) throws JMException {
+
+        RegistryStatistics statistics = registry.statistics();
+        ObjectName name = statistics.getObjectName();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        Assertions.assertNotNull(name);
+        Assertions.assertTrue(server.isRegistered(name));
+
+        var a = create(registry, 4, false);
+        var b = create(registry, 4, true);
+        var c = create(registry, 10, false);
+        var product = a.mul(b);
+
+        Assertions.assertEquals(4L, server.getAttribute(name, "LiveCount"));
+        Assertions.assertEquals(4L, server.getAttribute(name, "CreatedCount"));
+        Assertions.assertEquals(1L, server.getAttribute(name, "UncloseableCount"));
+        Assertions.assertEquals(Map.of("4", 3L, "10", 1L), statistics.getLiveCountByContext());
+        Assertions.assertEquals(Map.of("4", 48L, "10", 40L), statistics.getEstimatedRetainedBytesByContext());
+        Assertions.assertEquals(88L, server.getAttribute(name, "EstimatedRetainedBytes"));
+        Assertions.assertTrue(statistics.getRegistryCount() >= 1);
+        Assertions.assertTrue(statistics.getCreationRate() > 0);
+
+        product.close();
+        c.close();
+
+        Assertions.assertEquals(2L, statistics.getLiveCount());
+        Assertions.assertEquals(2L, statistics.getClosedCount());
+        Assertions.assertEquals(Map.of("4", 2L), statistics.getLiveCountByContext());
+
+        registry.clearLocal();
+
+        Assertions.assertEquals(2L, statistics.getLiveCount());
+        Assertions.assertEquals(0L, statistics.getClosedCount());
+        Assertions.assertEquals(4L, statistics.getCreatedCount());
+
+        a.close();
+        b.close();
+
+        Assertions.assertEquals(0L, statistics.getLiveCount());
+        Assertions.assertEquals(0L, statistics.getUncloseableCount());
+        Assertions.assertTrue(statistics.getLiveCountByContext().isEmpty());
+    }
+
+    private void test_uncloseable_after_registration(AutogradValueRegistry registry) {
+
+        RegistryStatistics statistics = registry.statistics();
+
+        var a = create(registry, 4, false);
+        var b = create(registry, 4, false);
+        a.properties().setUncloseable(true);
+        b.properties().setUncloseable(true);
+
+        Assertions.assertEquals(2L, statistics.getLiveCount());
+        Assertions.assertEquals(2L, statistics.getUncloseableCount());
+
+        b.properties().setUncloseable(false);
+        Assertions.assertEquals(1L, statistics.getUncloseableCount());
+
+        a.close();
+        b.close();
+
+        Assertions.assertEquals(0L, statistics.getLiveCount());
+        Assertions.assertEquals(0L, statistics.getUncloseableCount());
+    }
+
+    private FloatArrayAutogradValue create(AutogradValueRegistry registry, int length, boolean uncloseable) {
+        return new FloatArrayAutogradValue(new AutogradValueProperties<Integer>().setRegistry(registry)
+                .setUncloseable(uncloseable), new float[length]);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.ml4j.autograd.pool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test for SizeBucketedBufferPool.
+ *
+ * @author Michael Lavelle
+ */
+public class SizeBucketedBufferPoolTest {
+
+    @Test
+    public void test_acquire_and_release() {
+
+        SizeBucketedBufferPool<float[], Integer> pool = new SizeBucketedBufferPool<>(d -> (long) d.length * Float.BYTES, 1024);
+
+        Assertions.assertNull(pool.acquire(10));
+
+        float[] buffer = new float[10];
+        Assertions.assertTrue(pool.release(10, buffer));
+        Assertions.assertEquals(40, pool.retainedBytes());
+        Assertions.assertEquals(1, pool.retainedBuffers());
+
+        Assertions.assertNull(pool.acquire(20));
+        Assertions.assertSame(buffer, pool.acquire(10));
+
+        Assertions.assertEquals(1, pool.hits());
+        Assertions.assertEquals(2, pool.misses());
+        Assertions.assertEquals(0, pool.retainedBytes());
+        Assertions.assertEquals(0, pool.retainedBuffers());
+        Assertions.assertEquals(1d / 3, pool.metrics().hitRate(), 0.0001);
+    }
+
+    @Test
+    public void test_max_retained_bytes() {
+
+        SizeBucketedBufferPool<float[], Integer> pool = new SizeBucketedBufferPool<>(d -> (long) d.length * Float.BYTES, 100);
+
+        Assertions.assertTrue(pool.release(20, new float[20]));
+        Assertions.assertFalse(pool.release(10, new float[10]));
+        Assertions.assertEquals(80, pool.retainedBytes());
+
+        pool.clear();
+
+        Assertions.assertEquals(0, pool.retainedBytes());
+        Assertions.assertEquals(0, pool.retainedBuffers());
+        Assertions.assertNull(pool.acquire(20));
+    }
+}
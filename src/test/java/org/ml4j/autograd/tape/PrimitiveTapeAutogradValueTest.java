@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ml4j.autograd.tape;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ml4j.autograd.AutogradValueRegistry;
+import org.ml4j.autograd.GradMode;
+import org.ml4j.autograd.impl.AutogradValueProperties;
+import org.ml4j.autograd.management.RegistryStatistics;
+import org.ml4j.autograd.operators.DifferentiableUnaryOperator;
+
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * A test for the primitive float and double tape-based AutogradValues.
+ *
+ * @author Michael Lavelle
+ */
+public class PrimitiveTapeAutogradValueTest {
+
+    @Test
+    public void test_float_custom_operations() {
+
+        FloatTape tape = new FloatTape();
+
+        var x = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), tape, 2f);
+
+        var y = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), tape, 3f);
+
+        // z = exp(x) * y^2
+        var z = x.apply(f -> (float) Math.exp(f), f -> (float) Math.exp(f))
+                .apply((f, s) -> f * s * s, (f, s) -> s * s, (f, s) -> 2 * f * s, y);
+
+        Assertions.assertEquals(Math.exp(2) * 9, z.item(), 0.001f);
+
+        z.backward();
+
+        Assertions.assertEquals(Math.exp(2) * 9, x.grad().item(), 0.001f);
+        Assertions.assertEquals(Math.exp(2) * 6, y.grad().item(), 0.001f);
+    }
+
+    @Test
+    public void test_double_example() {
+
+        DoubleTape tape = new DoubleTape();
+
+        var a = new DoubleAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), tape, -4d);
+
+        var b = new DoubleAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), tape, 2d);
+
+        var c = a.mul(b).add(b.mul(b).mul(b)).sub(a.div(b)).add(b.sub(a).relu().mul(3f));
+
+        Assertions.assertEquals(-8d + 8d + 2d + 18d, c.item(), 0.000001d);
+
+        c.backward();
+
+        // dc/da = b - 1/b - 3, dc/db = a + 3b^2 + a/b^2 + 3
+        Assertions.assertEquals(2d - 0.5d - 3d, a.grad().item(), 0.000001d);
+        Assertions.assertEquals(-4d + 12d - 1d + 3d, b.grad().item(), 0.000001d);
+
+        Assertions.assertNull(c.apply(Math::sin, Math::cos).grad());
+    }
+
+    @Test
+    public void test_float_precision_without_grad() {
+
+        FloatTape tape = new FloatTape();
+
+        var big = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), tape, 1e8f);
+        var one = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>(), tape, 1f);
+
+        float withGrad = big.add(one).sub(big).item();
+        float withoutGrad;
+        try (GradMode.Guard guard = GradMode.no_grad()) {
+            withoutGrad = big.add(one).sub(big).item();
+        }
+
+        // 1e8f + 1f rounds to 1e8f in float precision, whether or not gradients are tracked.
+        Assertions.assertEquals(0f, withGrad);
+        Assertions.assertEquals(withGrad, withoutGrad);
+    }
+
+    @Test
+    public void test_uncloseable_after_registration() {
+
+        FloatTape tape = new FloatTape();
+        AutogradValueRegistry registry = AutogradValueRegistry.createWeak("tapeUncloseableTest");
+        RegistryStatistics statistics = registry.statistics();
+
+        var x = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>().setRegistry(registry), tape, 2f);
+        var y = x.mul(x);
+        x.properties().setUncloseable(true);
+        y.properties().setUncloseable(true);
+
+        Assertions.assertEquals(2L, statistics.getUncloseableCount());
+
+        x.close();
+        y.close();
+
+        Assertions.assertEquals(0L, statistics.getLiveCount());
+        Assertions.assertEquals(0L, statistics.getUncloseableCount());
+    }
+
+    @Test
+    public void test_values_created_during_backward_are_not_counted() {
+
+        FloatTape tape = new FloatTape();
+        AutogradValueRegistry registry = AutogradValueRegistry.create("tapeBackwardTest");
+        RegistryStatistics statistics = registry.statistics();
+
+        var x = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>().setRegistry(registry)
+                .setRequires_grad(true), tape, 2f);
+        // The backward function creates and closes a temporary, which is not registered
+        var y = x.apply(new DifferentiableUnaryOperator<FloatAutogradValue<Void>, Float, Void>() {
+
+            @Override
+            public UnaryOperator<Float> getForward() {
+                return f -> f * f;
+            }
+
+            @Override
+            public BiFunction<FloatAutogradValue<Void>, FloatAutogradValue<Void>, FloatAutogradValue<Void>> getBackwardThis() {
+                return (g, v) -> {
+                    FloatAutogradValue<Void> twice = v.mul(2f);
+                    FloatAutogradValue<Void> result = g.mul(twice);
+                    twice.close();
+                    return result;
+                };
+            }
+
+            @Override
+            public UnaryOperator<Void> getContextMapper() {
+                return c -> c;
+            }
+        });
+
+        y.backward();
+
+        // Only x, y and the gradient obtained after the backward pass are registered
+        var grad = x.grad();
+        Assertions.assertEquals(4f, grad.item(), 0.0001f);
+        Assertions.assertEquals(3L, statistics.getCreatedCount());
+        Assertions.assertEquals(3L, statistics.getLiveCount());
+        Assertions.assertEquals(0L, statistics.getClosedCount());
+
+        grad.close();
+        x.close();
+        y.close();
+
+        Assertions.assertEquals(0L, statistics.getLiveCount());
+        Assertions.assertEquals(3L, statistics.getClosedCount());
+    }
+
+    @Test
+    public void test_accumulate_grad() {
+
+        FloatTape tape = new FloatTape();
+
+        var x = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), tape, 2f);
+        var frozen = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>(), tape, 3f);
+
+        x.mul(x).backward();
+        x.accumulate_grad(new FloatAutogradValue<Void>(new AutogradValueProperties<Void>(), tape, 1.5f));
+        frozen.accumulate_grad(new FloatAutogradValue<Void>(new AutogradValueProperties<Void>(), tape, 1.5f));
+
+        Assertions.assertEquals(4f + 1.5f, x.grad().item(), 0.0001f);
+        Assertions.assertNull(frozen.grad());
+    }
+
+    @Test
+    public void test_float_and_double_tapes_agree() {
+
+        FloatTape floatTape = new FloatTape();
+        DoubleTape doubleTape = new DoubleTape();
+
+        var fa = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), floatTape, 1.5f);
+        var fb = new FloatAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), floatTape, -0.5f);
+        var da = new DoubleAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), doubleTape, 1.5d);
+        var db = new DoubleAutogradValue<Void>(new AutogradValueProperties<Void>().setRequires_grad(true), doubleTape, -0.5d);
+
+        var fc = fa.div(fb).mul(fa).sub(fb.neg().relu().div(2f)).add(fa.gt(1f).mul(fb));
+        var dc = da.div(db).mul(da).sub(db.neg().relu().div(2f)).add(da.gt(1f).mul(db));
+
+        Assertions.assertEquals(dc.item(), fc.item(), 0.0001f);
+
+        fc.backward();
+        dc.backward();
+
+        Assertions.assertEquals(da.grad().item(), fa.grad().item(), 0.0001f);
+        Assertions.assertEquals(db.grad().item(), fb.grad().item(), 0.0001f);
+    }
+}